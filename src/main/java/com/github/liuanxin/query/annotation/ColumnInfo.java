@@ -27,4 +27,7 @@ public @interface ColumnInfo {
 
     /** true: this column has default value */
     boolean hasDefault() default false;
+
+    /** true: this column is auto increment(mysql auto_increment, postgresql identity or serial) */
+    boolean autoIncrement() default false;
 }
@@ -0,0 +1,372 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.model.Table;
+import com.github.liuanxin.query.model.TableColumn;
+import com.github.liuanxin.query.model.TableColumnInfo;
+import com.github.liuanxin.query.util.QuerySqlUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * <pre>
+ * 后台归档已经逻辑删除的数据: 定时把 逻辑删除列 &lt;&gt; 未删除值 且 时间列早于保留天数 的行, 按主键从小到大分批
+ * 复制到 表名_archive(不存在时按原表的结构创建) 并从原表物理删除, 每批的复制和删除在同一个事务里.
+ *
+ * 每批处理完把当前的主键(高水位)写到文件, 重启后从这里继续; 一轮扫描到最后时高水位归零, 下一轮从头开始.
+ *
+ * 多个实例都配置了归档时, 每个表先拿数据库的锁(mysql 是 GET_LOCK, postgresql 是 pg_try_advisory_lock), 拿不到就跳过这一轮,
+ * 锁在单独的一个连接上持有到这个表处理完. 归档表只在不存在时创建, 原表之后加的列在归档表里没有时直接报错, 需要手动给归档表加上
+ * </pre>
+ */
+public class QueryArchiver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryArchiver.class);
+
+    private static final String ARCHIVE_SUFFIX = "_archive";
+    private static final String LOCK_PREFIX = "query-archive-";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Supplier<TableColumnInfo> tcInfoSupplier;
+    private final boolean mysql;
+    private final List<String> tableList;
+    private final String timeColumn;
+    private final int retentionDays;
+    private final int chunkSize;
+    private final long sleepMs;
+    private final File markFile;
+
+    /** 表名 -> 已经处理到的主键 */
+    private final Map<String, String> markMap = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong archiveCount = new AtomicLong();
+    private final AtomicLong chunkCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private volatile long lastRunTime;
+
+    public QueryArchiver(JdbcTemplate jdbcTemplate, Supplier<TableColumnInfo> tcInfoSupplier, boolean mysql,
+                         List<String> tableList, String timeColumn, int retentionDays, int chunkSize,
+                         long sleepMs, String markFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tcInfoSupplier = tcInfoSupplier;
+        this.mysql = mysql;
+        this.tableList = tableList;
+        this.timeColumn = timeColumn;
+        this.retentionDays = Math.max(retentionDays, 0);
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.sleepMs = Math.max(sleepMs, 0);
+        this.markFile = QueryUtil.isEmpty(markFile) ? null : new File(markFile);
+        loadMark();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "query-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start(long intervalSeconds) {
+        long interval = Math.max(intervalSeconds, 1);
+        scheduler.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /** 归档所有配置的表, 单个表异常时记录下来继续下一个表 */
+    public void run() {
+        runCount.incrementAndGet();
+        lastRunTime = System.currentTimeMillis();
+        for (String table : tableList) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                archiveWithLock(table);
+            } catch (InterruptedException e) {
+                // shutdownNow 时中断, 不再处理后面的表
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                errorCount.incrementAndGet();
+                if (LOG.isErrorEnabled()) {
+                    LOG.error("archive table({}) exception", table, e);
+                }
+            }
+        }
+    }
+
+    /** 拿到数据库的锁才处理, 别的实例正在处理这个表时跳过 */
+    private void archiveWithLock(String tableName) throws InterruptedException {
+        String lockName = LOCK_PREFIX + tableName;
+        // mysql 的锁名最长 64 个字符
+        if (lockName.length() > 64) {
+            lockName = LOCK_PREFIX + Integer.toHexString(tableName.hashCode());
+        }
+        String lock = lockName;
+        Boolean interrupted = jdbcTemplate.execute((Connection connection) -> {
+            if (!tryLock(connection, lock)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("archive table({}) is running by other instance, skip", tableName);
+                }
+                return false;
+            }
+            try {
+                archive(connection, tableName);
+                return false;
+            } catch (InterruptedException e) {
+                return true;
+            } finally {
+                unlock(connection, lock);
+            }
+        });
+        if (Boolean.TRUE.equals(interrupted)) {
+            throw new InterruptedException("archive table(" + tableName + ") interrupted");
+        }
+    }
+    private boolean tryLock(Connection connection, String lock) throws SQLException {
+        String sql = mysql ? "SELECT GET_LOCK(?, 0)" : "SELECT pg_try_advisory_lock(hashtext(?))";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, lock);
+            try (ResultSet rs = ps.executeQuery()) {
+                // mysql 返回 1, postgresql 返回 true
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+    private void unlock(Connection connection, String lock) {
+        String sql = mysql ? "SELECT RELEASE_LOCK(?)" : "SELECT pg_advisory_unlock(hashtext(?))";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, lock);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("release archive lock({}) exception", lock, e);
+            }
+        }
+    }
+
+    private void archive(Connection connection, String tableName) throws InterruptedException, SQLException {
+        TableColumnInfo tcInfo = tcInfoSupplier.get();
+        Table table = tcInfo.findTable(tableName);
+        if (QueryUtil.isNull(table) || QueryUtil.isEmpty(table.getLogicColumn()) || QueryUtil.isEmpty(table.getLogicValue())
+                || table.getIdKey().size() != 1) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("archive table({}) need defined, has logic delete column and single primary key", tableName);
+            }
+            return;
+        }
+        TableColumn time = tcInfo.findTableColumn(table, timeColumn);
+        if (QueryUtil.isNull(time)) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("archive table({}) has no time column({})", tableName, timeColumn);
+            }
+            return;
+        }
+
+        String name = table.getName();
+        String source = QuerySqlUtil.toSqlField(name);
+        String target = QuerySqlUtil.toSqlField(name + ARCHIVE_SUFFIX);
+        createArchiveTable(source, target);
+
+        // 归档表只在不存在时创建, 原表之后加的列归档表里没有时报错, 不丢数据
+        Set<String> archiveColumnSet = archiveColumnSet(connection, target);
+        List<String> missingList = new ArrayList<>();
+        for (TableColumn column : table.getColumnMap().values()) {
+            if (!archiveColumnSet.contains(column.getName().toLowerCase())) {
+                missingList.add(column.getName());
+            }
+        }
+        if (QueryUtil.isNotEmpty(missingList)) {
+            throw new RuntimeException("archive: table(" + name + ARCHIVE_SUFFIX + ") has no column"
+                    + missingList + ", add them like table(" + name + ") first");
+        }
+
+        String id = QuerySqlUtil.toSqlField(table.getIdKey().get(0));
+        Class<?> idType = table.getColumnMap().get(table.getIdKey().get(0)).getFieldType();
+        String columns = table.getColumnMap().values().stream()
+                .map(column -> QuerySqlUtil.toSqlField(column.getName())).collect(Collectors.joining(", "));
+        // 逻辑删除列 <> 未删除值 且 时间列 < 保留的起始时间
+        String condition = QuerySqlUtil.toSqlField(table.getLogicColumn()) + " <> " + table.getLogicValue()
+                + " AND " + QuerySqlUtil.toSqlField(time.getName()) + " < ?";
+
+        Timestamp before = Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays));
+        while (true) {
+            String mark = markMap.get(name);
+            List<Object> params = new ArrayList<>();
+            params.add(before);
+            String idSql = "SELECT " + id + " FROM " + source + " WHERE " + condition;
+            if (QueryUtil.isNotEmpty(mark)) {
+                idSql += " AND " + id + " > ?";
+                params.add(QuerySqlUtil.toValue(idType, mark));
+            }
+            idSql += " ORDER BY " + id + " LIMIT " + chunkSize;
+            List<Object> ids = jdbcTemplate.queryForList(idSql, Object.class, params.toArray());
+            if (QueryUtil.isEmpty(ids)) {
+                // 一轮到头了, 下一轮从头开始(这期间新逻辑删除的数据主键可能更小)
+                markMap.remove(name);
+                saveMark();
+                return;
+            }
+
+            int count = moveChunk(source, target, columns, id, condition, before, ids);
+            archiveCount.addAndGet(count);
+            chunkCount.incrementAndGet();
+            markMap.put(name, QueryUtil.toStr(ids.get(ids.size() - 1)));
+            saveMark();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("archive table({}) ids({}) move({})", name, ids.size(), count);
+            }
+
+            if (ids.size() < chunkSize) {
+                markMap.remove(name);
+                saveMark();
+                return;
+            }
+            if (sleepMs > 0) {
+                Thread.sleep(sleepMs);
+            }
+        }
+    }
+
+    private void createArchiveTable(String source, String target) {
+        if (mysql) {
+            jdbcTemplate.update("CREATE TABLE IF NOT EXISTS " + target + " LIKE " + source);
+        } else {
+            jdbcTemplate.update("CREATE TABLE IF NOT EXISTS " + target + " (LIKE " + source + " INCLUDING ALL)");
+        }
+    }
+
+    /** 归档表的列名(小写) */
+    private Set<String> archiveColumnSet(Connection connection, String target) throws SQLException {
+        Set<String> columnSet = new HashSet<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT * FROM " + target + " WHERE 1 = 0");
+             ResultSet rs = ps.executeQuery()) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columnSet.add(metaData.getColumnName(i).toLowerCase());
+            }
+        }
+        return columnSet;
+    }
+
+    /** 复制到归档表再从原表删除, 同一个事务 */
+    private int moveChunk(String source, String target, String columns, String id,
+                          String condition, Timestamp before, List<Object> ids) {
+        String in = ids.stream().map(i -> "?").collect(Collectors.joining(", "));
+        String where = " WHERE " + id + " IN (" + in + ") AND " + condition;
+        String copySql = "INSERT INTO " + target + "(" + columns + ") SELECT " + columns + " FROM " + source + where;
+        String deleteSql = "DELETE FROM " + source + where;
+        Integer count = jdbcTemplate.execute((Connection connection) -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                executeUpdate(connection, copySql, ids, before);
+                int delete = executeUpdate(connection, deleteSql, ids, before);
+                connection.commit();
+                return delete;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+        return QueryUtil.isNull(count) ? 0 : count;
+    }
+    private int executeUpdate(Connection connection, String sql, List<Object> ids, Timestamp before) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (Object id : ids) {
+                StatementCreatorUtils.setParameterValue(ps, index++, SqlTypeValue.TYPE_UNKNOWN, id);
+            }
+            ps.setTimestamp(index, before);
+            return ps.executeUpdate();
+        }
+    }
+
+    private void loadMark() {
+        if (QueryUtil.isNull(markFile) || !markFile.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = new InputStreamReader(new FileInputStream(markFile), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("load archive mark({}) exception", markFile, e);
+            }
+            return;
+        }
+        for (String name : properties.stringPropertyNames()) {
+            markMap.put(name, properties.getProperty(name));
+        }
+    }
+    private void saveMark() {
+        if (QueryUtil.isNull(markFile)) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.putAll(markMap);
+        // 先写临时文件再改名, 避免写一半时中断
+        File tmp = new File(markFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            properties.store(writer, "query archive mark");
+        } catch (IOException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("save archive mark({}) exception", markFile, e);
+            }
+            return;
+        }
+        if (!tmp.renameTo(markFile) && (!markFile.delete() || !tmp.renameTo(markFile))) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("save archive mark({}) fail", markFile);
+            }
+        }
+    }
+
+    public long getRunCount() {
+        return runCount.get();
+    }
+    /** 累计归档(从原表删除)的行数 */
+    public long getArchiveCount() {
+        return archiveCount.get();
+    }
+    public long getChunkCount() {
+        return chunkCount.get();
+    }
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+    public long getLastRunTime() {
+        return lastRunTime;
+    }
+    /** 表名 -> 当前这一轮已经处理到的主键 */
+    public Map<String, String> getMarkMap() {
+        return Collections.unmodifiableMap(markMap);
+    }
+}
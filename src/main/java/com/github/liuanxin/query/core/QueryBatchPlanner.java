@@ -0,0 +1,136 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.model.Table;
+import com.github.liuanxin.query.model.TableColumn;
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 批量写入时计算每条 sql(或每次 executeBatch)写入的行数:
+ *   拼成一条 INSERT ... VALUES (...), (...) 时, 占位符的个数不能超过 65535
+ *   估算的 sql 大小不能超过数据库的 max_allowed_packet(启动时读一次, 读不到则不限制)
+ *   调用方指定了行数时取其跟上面两者中小的, 没有指定(&lt;= 0)时最多 1000 行
+ * </pre>
+ */
+public class QueryBatchPlanner {
+
+    /** jdbc 单条语句占位符的最大个数 */
+    private static final int MAX_PLACEHOLDER = 65535;
+    /** 没有指定行数时单次的最大行数 */
+    private static final int DEFAULT_MAX_ROWS = 1000;
+    /** 估算行的大小时最多取样的行数 */
+    private static final int SAMPLE_ROWS = 100;
+    /** sql 的大小最多使用 max_allowed_packet 的比例, 留一些给语句头及估算的误差 */
+    private static final double PACKET_RATIO = 0.8;
+
+    /** 0 表示未知, 不按 sql 的大小限制 */
+    private final long maxAllowedPacket;
+
+    private final AtomicLong planCount = new AtomicLong();
+    private final AtomicLong placeholderLimitCount = new AtomicLong();
+    private final AtomicLong packetLimitCount = new AtomicLong();
+    /** 表名 -> 最近一次计算出来的行数 */
+    private final Map<String, Integer> lastRowsMap = new ConcurrentHashMap<>();
+
+    public QueryBatchPlanner(long maxAllowedPacket) {
+        this.maxAllowedPacket = Math.max(maxAllowedPacket, 0);
+    }
+
+    /**
+     * @param sampleList 要写入的数据(按 columnMap 的顺序), 只取前面的一部分来估算行的大小
+     * @param singleCount 调用方指定的行数, &lt;= 0 表示自动计算
+     * @param multiValues true 表示拼成一条多 VALUES 的 sql, false 表示 jdbc 批量(每行一条单行的语句)
+     */
+    public int rowsPerStatement(Table table, List<Object[]> sampleList, int singleCount, boolean multiValues) {
+        int rows = (singleCount > 0) ? singleCount : DEFAULT_MAX_ROWS;
+
+        int columnCount = Math.max(table.getColumnMap().size(), 1);
+        if (multiValues) {
+            int placeholderRows = MAX_PLACEHOLDER / columnCount;
+            if (placeholderRows < rows) {
+                rows = placeholderRows;
+                placeholderLimitCount.incrementAndGet();
+            }
+        }
+
+        if (maxAllowedPacket > 0) {
+            long rowBytes = estimateRowBytes(table, sampleList);
+            long packetRows = (long) (maxAllowedPacket * PACKET_RATIO) / rowBytes;
+            if (packetRows < rows) {
+                rows = (int) packetRows;
+                packetLimitCount.incrementAndGet();
+            }
+        }
+
+        rows = Math.max(rows, 1);
+        planCount.incrementAndGet();
+        lastRowsMap.put(table.getName(), rows);
+        return rows;
+    }
+
+    /** 取样的行里最大的那行, 字符串的长度不超过列定义的长度(超过的在写入前就会被拒绝) */
+    private long estimateRowBytes(Table table, List<Object[]> sampleList) {
+        List<TableColumn> columnList = new ArrayList<>(table.getColumnMap().values());
+        long maxBytes = 0;
+        int sampleSize = Math.min(sampleList.size(), SAMPLE_ROWS);
+        for (int i = 0; i < sampleSize; i++) {
+            Object[] row = sampleList.get(i);
+            // "( " + ", " 分隔 + " )"
+            long bytes = 4;
+            for (int j = 0; j < row.length && j < columnList.size(); j++) {
+                bytes += estimateBytes(columnList.get(j), row[j]) + 2;
+            }
+            maxBytes = Math.max(maxBytes, bytes);
+        }
+        return Math.max(maxBytes, 1);
+    }
+    private long estimateBytes(TableColumn column, Object value) {
+        if (QueryUtil.isNull(value)) {
+            return 4;
+        }
+        if (value instanceof CharSequence) {
+            int len = ((CharSequence) value).length();
+            int strLen = QueryUtil.toInt(column.getStrLen());
+            if (strLen > 0) {
+                len = Math.min(len, strLen);
+            }
+            // utf8mb4 单个字符最多 4 字节, 再加上引号
+            return len * 4L + 2;
+        }
+        if (value instanceof byte[]) {
+            // 二进制以十六进制传输
+            return ((byte[]) value).length * 2L + 3;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return 24;
+        }
+        if (value instanceof Date || value instanceof TemporalAccessor) {
+            return 32;
+        }
+        return QueryUtil.toStr(value).length() * 4L + 2;
+    }
+
+    public long getMaxAllowedPacket() {
+        return maxAllowedPacket;
+    }
+    public long getPlanCount() {
+        return planCount.get();
+    }
+    /** 因为占位符个数而减少行数的次数 */
+    public long getPlaceholderLimitCount() {
+        return placeholderLimitCount.get();
+    }
+    /** 因为 max_allowed_packet 而减少行数的次数 */
+    public long getPacketLimitCount() {
+        return packetLimitCount.get();
+    }
+    /** 表名 -> 最近一次计算出来的行数 */
+    public Map<String, Integer> getLastRowsMap() {
+        return Collections.unmodifiableMap(lastRowsMap);
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.model.Table;
+import com.github.liuanxin.query.model.TableColumn;
+import com.github.liuanxin.query.util.QueryJsonUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.*;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * <pre>
+ * 将查询出来的数据(未做字符串及日期格式化处理)直接设置到对象上, 不再经过 json 序列化及反序列化.
+ * 按 (类, 列) 生成一次: 每一列对应的字段及类型转换在生成时确定, 字段使用 MethodHandle 赋值
+ * </pre>
+ */
+public final class QueryBeanMapper<T> {
+
+    /** 类名 -> { 以逗号隔开的列 -> 映射 } */
+    private static final Map<Class<?>, Map<String, QueryBeanMapper<?>>> MAPPER_CACHE = new ConcurrentHashMap<>();
+
+    private final Class<T> clazz;
+    private final MethodHandle constructor;
+    private final String[] labels;
+    private final MethodHandle[] setters;
+    private final Function<Object, Object>[] converters;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private QueryBeanMapper(Class<T> clazz, Table table, Collection<String> columns) {
+        this.clazz = clazz;
+        try {
+            Constructor<T> con = clazz.getDeclaredConstructor();
+            con.setAccessible(true);
+            this.constructor = MethodHandles.lookup().unreflectConstructor(con);
+        } catch (Exception e) {
+            throw new RuntimeException("query: class(" + clazz.getName() + ") need no-args constructor", e);
+        }
+
+        Map<String, String> aliasFieldMap = new HashMap<>();
+        if (QueryUtil.isNotNull(table)) {
+            for (TableColumn tableColumn : table.getColumnMap().values()) {
+                aliasFieldMap.put(tableColumn.getAlias().toLowerCase(), tableColumn.getFieldName());
+            }
+        }
+        List<String> labelList = new ArrayList<>();
+        List<MethodHandle> setterList = new ArrayList<>();
+        List<Function<Object, Object>> converterList = new ArrayList<>();
+        for (String column : columns) {
+            // 优先用表结构里列的别名找字段, 找不到(比如函数的返回列)则用同名的字段
+            String fieldName = QueryUtil.defaultIfBlank(aliasFieldMap.get(column.toLowerCase()), column);
+            Field field = QueryUtil.getField(clazz, fieldName);
+            if (QueryUtil.isNotNull(field) && !Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                try {
+                    field.setAccessible(true);
+                    setterList.add(MethodHandles.lookup().unreflectSetter(field));
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException("query: class(" + clazz.getName() + ") field(" + fieldName + ") can't set value", e);
+                }
+                labelList.add(column);
+                converterList.add(converter(field.getType()));
+            }
+        }
+        this.labels = labelList.toArray(new String[0]);
+        this.setters = setterList.toArray(new MethodHandle[0]);
+        this.converters = converterList.toArray(new Function[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> QueryBeanMapper<T> of(Class<T> clazz, Table table, Collection<String> columns) {
+        Map<String, QueryBeanMapper<?>> mapperMap = MAPPER_CACHE.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>());
+        return (QueryBeanMapper<T>) mapperMap.computeIfAbsent(String.join(",", columns), k -> new QueryBeanMapper<>(clazz, table, columns));
+    }
+
+    /** 所有行的列都一样, 用第一行的列生成映射 */
+    public static <T> List<T> mapList(Class<T> clazz, Table table, List<Map<String, Object>> dataList) {
+        if (QueryUtil.isEmpty(dataList)) {
+            return new ArrayList<>();
+        }
+        QueryBeanMapper<T> mapper = of(clazz, table, dataList.get(0).keySet());
+        List<T> returnList = new ArrayList<>(dataList.size());
+        for (Map<String, Object> data : dataList) {
+            returnList.add(mapper.map(data));
+        }
+        return returnList;
+    }
+
+    public static <T> T mapOne(Class<T> clazz, Table table, Map<String, Object> data) {
+        if (QueryUtil.isEmpty(data)) {
+            return null;
+        }
+        return of(clazz, table, data.keySet()).map(data);
+    }
+
+    public T map(Map<String, Object> data) {
+        Object obj;
+        try {
+            obj = constructor.invoke();
+        } catch (Throwable e) {
+            throw new RuntimeException("query: class(" + clazz.getName() + ") instance exception", e);
+        }
+        for (int i = 0; i < labels.length; i++) {
+            Object value = data.get(labels[i]);
+            if (QueryUtil.isNotNull(value)) {
+                Object fieldValue = converters[i].apply(value);
+                if (QueryUtil.isNotNull(fieldValue)) {
+                    try {
+                        setters[i].invoke(obj, fieldValue);
+                    } catch (Throwable e) {
+                        throw new RuntimeException("query: class(" + clazz.getName() + ") column("
+                                + labels[i] + ") set value(" + value + ") exception", e);
+                    }
+                }
+            }
+        }
+        return clazz.cast(obj);
+    }
+
+
+    private static Function<Object, Object> converter(Class<?> type) {
+        if (type == String.class) {
+            return value -> {
+                if (value instanceof Date) {
+                    return QueryUtil.format((Date) value);
+                } else if (value instanceof TemporalAccessor) {
+                    return QueryUtil.format((TemporalAccessor) value);
+                } else {
+                    return QueryUtil.toStr(value);
+                }
+            };
+        } else if (type == Integer.class || type == int.class) {
+            return value -> (value instanceof Integer) ? value : QueryUtil.toInteger(value);
+        } else if (type == Long.class || type == long.class) {
+            return value -> (value instanceof Long) ? value : QueryUtil.toLonger(value);
+        } else if (type == Boolean.class || type == boolean.class) {
+            return value -> (value instanceof Boolean) ? value : QueryUtil.toBoolean(value);
+        } else if (type == BigDecimal.class) {
+            return value -> (value instanceof BigDecimal) ? value : QueryUtil.toDecimal(value);
+        } else if (type == Short.class || type == short.class) {
+            return value -> (value instanceof Number) ? (Object) ((Number) value).shortValue() : QueryUtil.toInteger(value).shortValue();
+        } else if (type == Byte.class || type == byte.class) {
+            return value -> (value instanceof Number) ? (Object) ((Number) value).byteValue() : QueryUtil.toInteger(value).byteValue();
+        } else if (type == Double.class || type == double.class) {
+            return value -> (value instanceof Number) ? (Object) ((Number) value).doubleValue() : QueryUtil.toDecimal(value).doubleValue();
+        } else if (type == Float.class || type == float.class) {
+            return value -> (value instanceof Number) ? (Object) ((Number) value).floatValue() : QueryUtil.toDecimal(value).floatValue();
+        } else if (type == BigInteger.class) {
+            return value -> (value instanceof BigInteger) ? value : QueryUtil.toDecimal(value).toBigInteger();
+        } else if (type == LocalDateTime.class) {
+            return value -> (value instanceof Timestamp) ? ((Timestamp) value).toLocalDateTime() : toTemporal(type, value);
+        } else if (type == LocalDate.class) {
+            return value -> (value instanceof java.sql.Date) ? ((java.sql.Date) value).toLocalDate() : toTemporal(type, value);
+        } else if (type == LocalTime.class) {
+            return value -> (value instanceof java.sql.Time) ? ((java.sql.Time) value).toLocalTime() : toTemporal(type, value);
+        } else if (Date.class.isAssignableFrom(type)) {
+            return value -> type.isInstance(value) ? value : QueryUtil.toDate(value);
+        } else {
+            // 枚举等其他类型, 类型一样时直接赋值, 否则使用 json 转换
+            return value -> type.isInstance(value) ? value : QueryJsonUtil.convert(value, type);
+        }
+    }
+    private static Object toTemporal(Class<?> type, Object value) {
+        if (type.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof java.sql.Date) {
+            LocalDate date = ((java.sql.Date) value).toLocalDate();
+            return (type == LocalDateTime.class) ? date.atStartOfDay() : (type == LocalDate.class ? date : null);
+        }
+        if (value instanceof java.sql.Time) {
+            return (type == LocalTime.class) ? ((java.sql.Time) value).toLocalTime() : null;
+        }
+        if (value instanceof Date) {
+            LocalDateTime dateTime = LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault());
+            if (type == LocalDate.class) {
+                return dateTime.toLocalDate();
+            } else if (type == LocalTime.class) {
+                return dateTime.toLocalTime();
+            } else {
+                return dateTime;
+            }
+        }
+        TemporalAccessor date = QueryUtil.toLocalDate(value);
+        return type.isInstance(date) ? date : null;
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.util.QueryJsonUtil;
+import com.github.liuanxin.query.util.QuerySqlUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.*;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * <pre>
+ * 游标分页时返回给调用方的 cursor: 上一页最后一行的排序列及主键的值(都转成字符串, 日期使用 ISO 格式保留精度), 再 base64
+ * 调用方不需要关心里面的内容, 下一页时原样传回来即可
+ * </pre>
+ */
+public final class QueryCursor {
+
+    private QueryCursor() {}
+
+    public static String encode(List<Object> values) {
+        List<String> list = new ArrayList<>(values.size());
+        for (Object value : values) {
+            list.add(toCursorValue(value));
+        }
+        String json = QueryJsonUtil.toJson(list);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+    private static String toCursorValue(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime().toString();
+        } else if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate().toString();
+        } else if (value instanceof java.sql.Time) {
+            return ((java.sql.Time) value).toLocalTime().toString();
+        } else if (value instanceof Date) {
+            return LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault()).toString();
+        } else {
+            return QueryUtil.toStr(value);
+        }
+    }
+
+    /** 解析 cursor, 跟列的个数不一致或无法转换成列的类型则抛出异常 */
+    public static List<Object> decode(String cursor, List<Class<?>> fieldTypeList) {
+        List<?> list;
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            list = QueryJsonUtil.toObject(json, List.class);
+        } catch (IllegalArgumentException e) {
+            list = null;
+        }
+        if (QueryUtil.isNull(list) || list.size() != fieldTypeList.size()) {
+            throw new RuntimeException("param: cursor(" + cursor + ") error");
+        }
+
+        List<Object> values = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            Object value = toValue(fieldTypeList.get(i), QueryUtil.toStr(list.get(i)));
+            if (QueryUtil.isNull(value)) {
+                throw new RuntimeException("param: cursor(" + cursor + ") error");
+            }
+            values.add(value);
+        }
+        return values;
+    }
+    private static Object toValue(Class<?> fieldType, String value) {
+        if (QueryUtil.isNull(value)) {
+            return null;
+        }
+        if (Date.class.isAssignableFrom(fieldType) || TemporalAccessor.class.isAssignableFrom(fieldType)) {
+            TemporalAccessor date = parseDate(value);
+            if (QueryUtil.isNotNull(date) && Date.class.isAssignableFrom(fieldType)) {
+                if (date instanceof LocalDateTime) {
+                    return Timestamp.valueOf((LocalDateTime) date);
+                } else if (date instanceof LocalDate) {
+                    return java.sql.Date.valueOf((LocalDate) date);
+                } else {
+                    return java.sql.Time.valueOf((LocalTime) date);
+                }
+            }
+            return date;
+        }
+        return QuerySqlUtil.toValue(fieldType, value);
+    }
+    private static TemporalAccessor parseDate(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeException ignore) {
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeException ignore) {
+        }
+        try {
+            return LocalTime.parse(value);
+        } catch (DateTimeException ignore) {
+        }
+        return null;
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.util.QueryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * <pre>
+ * 并行查询用的线程池: 运行在 jdk 21 及以上时使用虚拟线程, 否则使用有界的线程池(队列满了则由调用方的线程执行)
+ *
+ * 其他线程拿不到当前线程绑定的数据库连接, 当前线程处在事务中时不并行, 直接在当前线程执行
+ * </pre>
+ */
+public class QueryExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryExecutor.class);
+
+    private final ExecutorService executor;
+
+    public QueryExecutor(int threadSize) {
+        ExecutorService virtual = virtualExecutor();
+        if (QueryUtil.isNotNull(virtual)) {
+            this.executor = virtual;
+        } else {
+            int size = Math.max(threadSize, 1);
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(size * 16),
+                    r -> {
+                        Thread thread = new Thread(r, "query-parallel-" + threadIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    private static ExecutorService virtualExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** 当前线程在事务中时不能并行 */
+    public boolean canParallel() {
+        return !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /** 提交到线程池, 不能并行时直接在当前线程执行 */
+    public <T> Future<T> submit(Supplier<T> supplier) {
+        if (canParallel()) {
+            return executor.submit(supplier::get);
+        }
+        return CompletableFuture.completedFuture(supplier.get());
+    }
+
+    /**
+     * 并行执行所有任务, 同时执行的任务最多 parallelism 个, 返回的顺序跟任务的顺序一致.
+     * 不能并行或只有一个任务时直接在当前线程依次执行, 有任务异常时取消其他未完成的任务并抛出
+     */
+    public <T> List<T> invokeAll(List<Supplier<T>> taskList, int parallelism) {
+        List<T> returnList = new ArrayList<>(taskList.size());
+        if (parallelism <= 1 || taskList.size() <= 1 || !canParallel()) {
+            for (Supplier<T> task : taskList) {
+                returnList.add(task.get());
+            }
+            return returnList;
+        }
+
+        Semaphore semaphore = new Semaphore(parallelism);
+        List<Future<T>> futureList = new ArrayList<>(taskList.size());
+        try {
+            for (Supplier<T> task : taskList) {
+                semaphore.acquire();
+                try {
+                    futureList.add(executor.submit(() -> {
+                        try {
+                            return task.get();
+                        } finally {
+                            semaphore.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    semaphore.release();
+                    throw e;
+                }
+            }
+            for (Future<T> future : futureList) {
+                returnList.add(get(future));
+            }
+            return returnList;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("query interrupted", e);
+        } finally {
+            if (returnList.size() < futureList.size()) {
+                for (Future<T> future : futureList) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个请求并行查询时同时使用的连接数: 配置的值跟连接池最大连接数的一半取小的, 避免一个请求把连接池用完.
+     * 连接池的最大连接数从 HikariCP(getMaximumPoolSize) dbcp2(getMaxTotal) druid/tomcat(getMaxActive) 上获取, 获取不到则使用配置的值
+     */
+    public static int calcParallelism(int parallelism, DataSource dataSource) {
+        int size = Math.max(parallelism, 1);
+        if (QueryUtil.isNull(dataSource)) {
+            return size;
+        }
+        for (String methodName : new String[] { "getMaximumPoolSize", "getMaxTotal", "getMaxActive" }) {
+            try {
+                Object poolSize = dataSource.getClass().getMethod(methodName).invoke(dataSource);
+                if (poolSize instanceof Number && ((Number) poolSize).intValue() > 0) {
+                    return Math.max(Math.min(size, ((Number) poolSize).intValue() / 2), 1);
+                }
+            } catch (Exception ignore) {
+            }
+        }
+        return size;
+    }
+
+    /** 等待结果, 执行时的异常原样抛出 */
+    public static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("query interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("query parallel executor shutdown");
+        }
+    }
+}
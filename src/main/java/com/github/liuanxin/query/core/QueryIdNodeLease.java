@@ -0,0 +1,172 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.util.IdGenerator;
+import com.github.liuanxin.query.util.IdUtil;
+import com.github.liuanxin.query.util.QuerySqlUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 从数据库的租约表里租用 id 的节点(0 ~ 1023), 多个实例之间不会重复: 表不存在时创建
+ *   node_id(节点, 主键) owner(持有者) expire_ms(租约到期的毫秒数)
+ * 没有记录的节点直接写入, 过期超过 CLOCK_BACK_MS 的节点按读到的到期时间做条件更新, 成功的就是自己的.
+ *
+ * 租到后替换 IdUtil 的生成器, 每隔租约时间的 1/3 续约一次; 续约失败(租约已经被别人拿走)时重新租用一个节点.
+ * 生成器在本地记录的到期时间(提前 SAFETY_MS)之后拒绝生成 id, 续约一直异常(比如数据库连不上)时不会跟拿到这个节点的实例重复;
+ * 释放时只把到期时间改成当前时间, 跟过期的节点一样要再过 CLOCK_BACK_MS 才能被别人拿走.
+ * 到期时间使用各实例自己的时钟, 实例之间的时钟偏差要远小于租约时间
+ * </pre>
+ */
+public class QueryIdNodeLease {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryIdNodeLease.class);
+
+    /** 本地停止使用节点的时间比租约到期提前的毫秒数 */
+    private static final long SAFETY_MS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final long leaseMs;
+    private final String owner;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile long nodeId = -1;
+    private volatile IdGenerator generator;
+    private final AtomicLong renewCount = new AtomicLong();
+    private final AtomicLong acquireCount = new AtomicLong();
+
+    public QueryIdNodeLease(JdbcTemplate jdbcTemplate, String table, long leaseSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.table = QuerySqlUtil.toSqlField(table);
+        this.leaseMs = TimeUnit.SECONDS.toMillis(Math.max(leaseSeconds, 3));
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "query-id-node-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** 租用节点并替换 IdUtil 的生成器, 之后定时续约. 租不到时抛出异常 */
+    public void start() {
+        jdbcTemplate.update("CREATE TABLE IF NOT EXISTS " + table + " (node_id INT NOT NULL PRIMARY KEY,"
+                + " owner VARCHAR(128) NOT NULL, expire_ms BIGINT NOT NULL)");
+        acquire();
+        long interval = leaseMs / 3;
+        scheduler.scheduleWithFixedDelay(this::renew, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** 停止续约并释放节点 */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        IdGenerator currentGenerator = generator;
+        if (QueryUtil.isNotNull(currentGenerator)) {
+            currentGenerator.setExpireMs(0);
+        }
+        long current = nodeId;
+        if (current >= 0) {
+            try {
+                jdbcTemplate.update("UPDATE " + table + " SET expire_ms = ? WHERE node_id = ? AND owner = ?",
+                        System.currentTimeMillis(), current, owner);
+            } catch (DataAccessException e) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn("release id node({}) exception", current, e);
+                }
+            }
+        }
+    }
+
+    private void acquire() {
+        long now = System.currentTimeMillis();
+        Map<Long, Long> expireMap = new HashMap<>();
+        List<Map<String, Object>> list = jdbcTemplate.queryForList("SELECT node_id, expire_ms FROM " + table);
+        for (Map<String, Object> map : list) {
+            expireMap.put(QueryUtil.toLong(map.get("node_id")), QueryUtil.toLong(map.get("expire_ms")));
+        }
+
+        for (long node = 0; node <= IdGenerator.MAX_NODE_ID; node++) {
+            Long expire = expireMap.get(node);
+            if (tryAcquire(node, expire, now)) {
+                IdGenerator idGenerator = new IdGenerator(node);
+                idGenerator.setExpireMs(now + leaseMs - SAFETY_MS);
+                nodeId = node;
+                generator = idGenerator;
+                acquireCount.incrementAndGet();
+                IdUtil.setGenerator(idGenerator);
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("acquire id node({}) owner({})", node, owner);
+                }
+                return;
+            }
+        }
+        throw new RuntimeException("id node lease: no free node in table(" + table + ")");
+    }
+    private boolean tryAcquire(long node, Long expire, long now) {
+        long newExpire = now + leaseMs;
+        if (QueryUtil.isNull(expire)) {
+            try {
+                return jdbcTemplate.update("INSERT INTO " + table + "(node_id, owner, expire_ms) VALUES (?, ?, ?)",
+                        node, owner, newExpire) == 1;
+            } catch (DataAccessException e) {
+                // 别的实例刚好写入了这个节点
+                return false;
+            }
+        }
+        // 过期(或释放)之后再等 CLOCK_BACK_MS, 之前的持有者在这个时间之后不会再用它生成 id
+        if (expire + IdGenerator.CLOCK_BACK_MS >= now) {
+            return false;
+        }
+        return jdbcTemplate.update("UPDATE " + table + " SET owner = ?, expire_ms = ? WHERE node_id = ? AND expire_ms = ?",
+                owner, newExpire, node, expire) == 1;
+    }
+
+    private void renew() {
+        try {
+            long current = nodeId;
+            // 到期时间用续约之前的时间算, 本地记录的不会比数据库里的晚
+            long now = System.currentTimeMillis();
+            int count = jdbcTemplate.update("UPDATE " + table + " SET expire_ms = ? WHERE node_id = ? AND owner = ?",
+                    now + leaseMs, current, owner);
+            if (count == 1) {
+                generator.setExpireMs(now + leaseMs - SAFETY_MS);
+                renewCount.incrementAndGet();
+                return;
+            }
+            if (LOG.isErrorEnabled()) {
+                LOG.error("id node({}) lease lost, acquire again", current);
+            }
+            // 节点已经是别人的了, 重新租到之前不再生成 id
+            generator.setExpireMs(0);
+            acquire();
+        } catch (Exception e) {
+            if (LOG.isErrorEnabled()) {
+                LOG.error("renew id node({}) exception", nodeId, e);
+            }
+        }
+    }
+
+    /** 当前租到的节点, 还没租到时是 -1 */
+    public long getNodeId() {
+        return nodeId;
+    }
+    public long getRenewCount() {
+        return renewCount.get();
+    }
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.constant.QueryConst;
+import com.github.liuanxin.query.enums.TableRelationType;
+import com.github.liuanxin.query.model.Table;
+import com.github.liuanxin.query.model.TableColumn;
+import com.github.liuanxin.query.model.TableColumnInfo;
+import com.github.liuanxin.query.model.TableColumnRelation;
+import com.github.liuanxin.query.util.QuerySqlUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * <pre>
+ * 把从数据库构建的表结构(TableColumnInfo)连同表结构的指纹保存到本地文件, 下次启动时直接读取, 不用再全量查 information_schema.
+ *
+ * 文件里依次是: 格式标识, 配置(表前缀 别名规则 逻辑删除等, 变了则不使用快照), 表结构指纹, TableColumnInfo.
+ * 读取后由调用方在后台用指纹 sql 校验, 跟数据库不一致时再重新构建.
+ *
+ * 格式标识里有快照里的类的结构(字段名和类型)的哈希, 升级后类加了或改了字段时旧快照不再使用;
+ * 读取时只允许本项目的 model 和 enums、java.lang、java.util 及列类型里用到的类, 其他的类直接拒绝
+ * </pre>
+ */
+public class QueryMetadataSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryMetadataSnapshot.class);
+
+    private static final String FORMAT = "query-metadata-snapshot-2-"
+            + structureHash(TableColumnInfo.class, Table.class, TableColumn.class, TableColumnRelation.class);
+
+    private static final String MODEL_PACKAGE = TableColumnInfo.class.getPackage().getName() + ".";
+    private static final String ENUM_PACKAGE = TableRelationType.class.getPackage().getName() + ".";
+    /** 列类型(TableColumn 的 fieldType)用到的 java.lang 和 java.util 之外的类 */
+    private static final Set<String> ALLOW_CLASS_SET = new HashSet<>();
+    static {
+        for (Class<?> clazz : QueryConst.DB_TYPE_MAP.values()) {
+            ALLOW_CLASS_SET.add(clazz.getName());
+        }
+    }
+
+    private final File file;
+    private final String configKey;
+
+    /** 最近一次读取或保存的快照的指纹 */
+    private volatile String fingerprint;
+
+    public QueryMetadataSnapshot(String file, String configKey) {
+        this.file = new File(file);
+        this.configKey = configKey;
+    }
+
+    /** 表结构的指纹, 只返回一行, 比查询所有的表和列要轻 */
+    public static String fingerprint(JdbcTemplate jdbcTemplate, String dialect) {
+        return QueryUtil.toStr(jdbcTemplate.queryForObject(QuerySqlUtil.getSchemaFingerprintSql(dialect), Object.class));
+    }
+
+    /** 读取快照, 文件不存在, 格式不对或者配置变了时返回 null */
+    public TableColumnInfo load() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            // 整个文件一次读进来再反序列化, 避免小块的读取
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    if (!allowClass(desc.getName())) {
+                        throw new InvalidClassException(desc.getName(), "not allowed in metadata snapshot");
+                    }
+                    return super.resolveClass(desc);
+                }
+            }) {
+                if (!FORMAT.equals(input.readUTF()) || !configKey.equals(input.readUTF())) {
+                    if (LOG.isInfoEnabled()) {
+                        LOG.info("metadata snapshot({}) format or config changed, ignore", file);
+                    }
+                    return null;
+                }
+                String snapshotFingerprint = input.readUTF();
+                TableColumnInfo tcInfo = (TableColumnInfo) input.readObject();
+                fingerprint = snapshotFingerprint;
+                return tcInfo;
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("load metadata snapshot({}) exception", file, e);
+            }
+            return null;
+        }
+    }
+
+    /** 先写临时文件再改名, 避免写一半时中断. 写失败只记录日志 */
+    public void save(String snapshotFingerprint, TableColumnInfo tcInfo) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            output.writeUTF(FORMAT);
+            output.writeUTF(configKey);
+            output.writeUTF(snapshotFingerprint);
+            output.writeObject(tcInfo);
+        } catch (IOException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("save metadata snapshot({}) exception", file, e);
+            }
+            return;
+        }
+        if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("save metadata snapshot({}) fail", file);
+            }
+            return;
+        }
+        fingerprint = snapshotFingerprint;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    private static boolean allowClass(String name) {
+        // 数组: [Ljava.lang.String; 或者 [I 这样的基本类型
+        String className = name;
+        while (className.startsWith("[")) {
+            className = className.substring(1);
+        }
+        if (className.startsWith("L") && className.endsWith(";")) {
+            className = className.substring(1, className.length() - 1);
+        }
+        // 基本类型(int 或数组里的 I)
+        if (!className.contains(".")) {
+            return true;
+        }
+        if (className.startsWith("java.lang.")) {
+            // 不含 java.lang.invoke 等子包
+            return className.indexOf('.', "java.lang.".length()) < 0;
+        }
+        return className.startsWith("java.util.") || className.startsWith(MODEL_PACKAGE)
+                || className.startsWith(ENUM_PACKAGE) || ALLOW_CLASS_SET.contains(className);
+    }
+
+    /** 类里参与序列化的字段(名及类型)按名字排序后的哈希 */
+    private static String structureHash(Class<?>... classes) {
+        StringBuilder sbd = new StringBuilder();
+        for (Class<?> clazz : classes) {
+            List<String> fieldList = new ArrayList<>();
+            for (Field field : clazz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                    fieldList.add(field.getName() + ":" + field.getGenericType().getTypeName());
+                }
+            }
+            Collections.sort(fieldList);
+            sbd.append(clazz.getName()).append(fieldList);
+        }
+        return Integer.toHexString(sbd.toString().hashCode());
+    }
+}
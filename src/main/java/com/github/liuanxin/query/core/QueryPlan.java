@@ -0,0 +1,287 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.enums.QueryOrder;
+import com.github.liuanxin.query.model.*;
+import com.github.liuanxin.query.util.QuerySqlUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.util.*;
+
+/**
+ * <pre>
+ * 同一种形态(表、条件里的列及条件类型、出参、排序、是否分页、表关系都一样, 只有条件上的值不同)的请求编译后的查询计划.
+ * 校验及 FROM WHERE SELECT GROUP HAVING ORDER 等 sql 只在编译时处理一次, 之后只需要将请求上的值绑定到占位符上
+ *
+ * 编译好之后不再修改, 可以被多个线程同时使用
+ * </pre>
+ */
+public final class QueryPlan {
+
+    /** 编译时使用的表结构, 执行(包括查询子表)时都用它, 不受之后刷新的影响 */
+    private final TableColumnInfo tcInfo;
+    /** 主表(请求里的表名或别名) */
+    private final String mainTable;
+    /** 主表的表名 */
+    private final String mainTableName;
+    /** 校验过的出参 */
+    private final ReqResult result;
+    private final boolean needAlias;
+    /** true 表示查询出来的数据直接映射成对象, 不转字符串也不格式化日期 */
+    private final boolean raw;
+    private final boolean hasDistinct;
+    private final boolean needGroup;
+
+    /** FROM ... */
+    private final String fromSql;
+    /** FROM ... WHERE ... */
+    private final String fromAndWhere;
+    /** 条件里的列, 跟占位符的顺序保持一致 */
+    private final List<TableColumn> conditionColumnList;
+
+    /** ORDER BY ... */
+    private final String orderSql;
+    /** SELECT ... FROM ... WHERE ... GROUP BY ... HAVING ... */
+    private final String selectGroupSql;
+    /** HAVING 上的值, 在出参里, 跟请求的值无关 */
+    private final List<Object> havingParams;
+    /** 分页时查询总条数的 sql */
+    private final String countSql;
+    /** count 的 sql 是否需要 HAVING 上的值 */
+    private final boolean countWithHaving;
+    /** SELECT ... FROM ... WHERE ... ORDER BY ... (不分组时的分页) */
+    private final String pageSql;
+    /** SELECT id FROM ... WHERE ... ORDER BY ... (深分页时先查 id) */
+    private final String idPageSql;
+    /** SELECT ... FROM ... WHERE id IN (深分页时再用 id 查数据) */
+    private final String selectWithIdSql;
+    /** 只为了关联子表而查询的列, 返回前需要删除 */
+    private final Set<String> removeColumn;
+    /** 出参里的子表 */
+    private final Map<String, ReqResult> innerResultMap;
+    /** SELECT ..., 游标列 FROM ... WHERE ( ... ) AND ( 游标条件 ) ORDER BY 排序列, 主键 (游标分页) */
+    private final String cursorPageSql;
+    /** 游标列(排序列 + 主键)的类型, 用来解析 cursor */
+    private final List<Class<?>> cursorFieldTypeList;
+    /** 游标列查询时的别名, 生成下一页的 cursor 之后删除 */
+    private final List<String> cursorAliasList;
+    /** 读取结果时的转换规则: 小写的列名 -> 规则 */
+    private final Map<String, QueryRowMapper.Rule> rowRuleMap;
+
+    QueryPlan(TableColumnInfo tcInfo, ReqInfo req, Set<TableJoinRelation> useRelationSet,
+              Set<String> useTableSet, boolean hasDistinct, boolean force, boolean raw) {
+        this.tcInfo = tcInfo;
+        String mainTable = req.getTable();
+        ReqParam param = req.getParam();
+        ReqResult result = req.getResult();
+        boolean needAlias = QueryUtil.isNotEmpty(useTableSet);
+        Table table = tcInfo.findTable(mainTable);
+
+        this.mainTable = mainTable;
+        this.mainTableName = table.getName();
+        this.result = result;
+        this.needAlias = needAlias;
+        this.raw = raw;
+        this.hasDistinct = hasDistinct;
+        this.needGroup = result.needGroup();
+
+        this.fromSql = QuerySqlUtil.toFromSql(tcInfo, mainTable, useRelationSet);
+        String whereSql = param.generateWhereSql(mainTable, tcInfo, needAlias, new ArrayList<>(), useTableSet, force, new StringBuilder());
+        this.fromAndWhere = fromSql + whereSql;
+        List<TableColumn> conditionColumnList = new ArrayList<>();
+        ReqQuery query = param.getQuery();
+        if (QueryUtil.isNotNull(query)) {
+            query.collectColumn(mainTable, tcInfo, conditionColumnList);
+        }
+        this.conditionColumnList = Collections.unmodifiableList(conditionColumnList);
+
+        this.orderSql = param.generateOrderSql(mainTable, needAlias, tcInfo);
+        List<Object> havingParams = new ArrayList<>();
+        this.selectGroupSql = QuerySqlUtil.toSelectGroupSql(tcInfo, fromAndWhere, mainTable, result, needAlias, force, hasDistinct, havingParams);
+        this.havingParams = Collections.unmodifiableList(havingParams);
+        if (needGroup) {
+            this.countSql = QuerySqlUtil.toCountGroupSql(selectGroupSql);
+            this.countWithHaving = true;
+        } else {
+            this.countSql = QuerySqlUtil.toCountWithoutGroupSql(tcInfo, fromAndWhere, mainTable, needAlias, hasDistinct);
+            this.countWithHaving = false;
+        }
+        String selectColumn = result.generateAllSelectSql(mainTable, tcInfo, needAlias, force);
+        this.pageSql = QueryUtil.isEmpty(selectColumn) ? ""
+                : QuerySqlUtil.toOrderSelectSql(selectColumn, fromAndWhere, orderSql, hasDistinct);
+        this.idPageSql = QuerySqlUtil.toOrderSelectSql(table.idSelect(needAlias), fromAndWhere, orderSql, hasDistinct);
+        this.selectWithIdSql = "SELECT " + selectColumn + fromSql + " WHERE " + table.idWhere(needAlias) + " IN (";
+
+        List<Class<?>> cursorFieldTypeList = new ArrayList<>();
+        List<String> cursorAliasList = new ArrayList<>();
+        this.cursorPageSql = param.needCursorPage()
+                ? cursorSql(tcInfo, param, table, selectColumn, whereSql, cursorFieldTypeList, cursorAliasList) : "";
+        this.cursorFieldTypeList = Collections.unmodifiableList(cursorFieldTypeList);
+        this.cursorAliasList = Collections.unmodifiableList(cursorAliasList);
+
+        this.removeColumn = Collections.unmodifiableSet(result.needRemoveColumn(mainTableName, tcInfo, needAlias, force));
+        this.innerResultMap = Collections.unmodifiableMap(result.innerResult(tcInfo, force));
+        this.rowRuleMap = Collections.unmodifiableMap(QueryRowMapper.compile(result, mainTableName, needAlias, tcInfo, force, raw));
+    }
+
+
+    /**
+     * <pre>
+     * 排序列后面再加上主键(保证顺序唯一), 非第一页时加上跟上一页最后一行比较的条件:
+     * ORDER BY a DESC, id ASC  ->  ( ( a < ? ) OR ( a = ? AND id > ? ) )
+     * </pre>
+     */
+    private String cursorSql(TableColumnInfo tcInfo, ReqParam param, Table table, String selectColumn, String whereSql,
+                             List<Class<?>> cursorFieldTypeList, List<String> cursorAliasList) {
+        if (needGroup) {
+            throw new RuntimeException("param: cursor page can't be used with function(group by)");
+        }
+        List<String> columnList = new ArrayList<>();
+        List<Boolean> descList = new ArrayList<>();
+        Map<String, String> sort = param.getSort();
+        if (QueryUtil.isNotEmpty(sort)) {
+            for (Map.Entry<String, String> entry : sort.entrySet()) {
+                String column = entry.getKey();
+                columnList.add(QueryUtil.getColumnOrder(needAlias, column, mainTable, tcInfo));
+                descList.add(QueryOrder.deserializer(entry.getValue()) == QueryOrder.DESC);
+                TableColumn tableColumn = tcInfo.findTableColumn(QueryUtil.getTableName(column, mainTable), QueryUtil.getColumnName(column));
+                cursorFieldTypeList.add(tableColumn.getFieldType());
+            }
+        }
+        for (String id : table.getIdKey()) {
+            String idColumn = QueryUtil.getColumnOrder(needAlias, id, mainTableName, tcInfo);
+            if (!columnList.contains(idColumn)) {
+                columnList.add(idColumn);
+                descList.add(false);
+                cursorFieldTypeList.add(tcInfo.findTableColumn(table, id).getFieldType());
+            }
+        }
+
+        StringJoiner selectSj = new StringJoiner(", ");
+        StringJoiner orderSj = new StringJoiner(", ");
+        StringJoiner seekSj = new StringJoiner(" OR ");
+        for (int i = 0; i < columnList.size(); i++) {
+            String column = columnList.get(i);
+            boolean desc = descList.get(i);
+            String alias = "_cursor_" + i;
+            cursorAliasList.add(alias);
+            selectSj.add(column + " AS " + QuerySqlUtil.toSqlField(alias));
+            orderSj.add(column + (desc ? " DESC" : " ASC"));
+
+            StringJoiner andSj = new StringJoiner(" AND ");
+            for (int j = 0; j < i; j++) {
+                andSj.add(columnList.get(j) + " = ?");
+            }
+            andSj.add(column + (desc ? " < ?" : " > ?"));
+            seekSj.add("( " + andSj + " )");
+        }
+
+        String where;
+        if (param.hasCursorValue()) {
+            String seek = "( " + seekSj + " )";
+            where = QueryUtil.isEmpty(whereSql) ? (" WHERE " + seek)
+                    : (" WHERE ( " + whereSql.substring(" WHERE ".length()) + " ) AND " + seek);
+        } else {
+            where = whereSql;
+        }
+        String select = QueryUtil.isEmpty(selectColumn) ? selectSj.toString() : (selectColumn + ", " + selectSj);
+        return QuerySqlUtil.toOrderSelectSql(select, fromSql + where, " ORDER BY " + orderSj, hasDistinct);
+    }
+
+
+    public TableColumnInfo getTcInfo() {
+        return tcInfo;
+    }
+    public String getMainTable() {
+        return mainTable;
+    }
+    public String getMainTableName() {
+        return mainTableName;
+    }
+    public ReqResult getResult() {
+        return result;
+    }
+    public boolean isNeedAlias() {
+        return needAlias;
+    }
+    public boolean isRaw() {
+        return raw;
+    }
+    public boolean isHasDistinct() {
+        return hasDistinct;
+    }
+    public boolean isNeedGroup() {
+        return needGroup;
+    }
+    public String getFromSql() {
+        return fromSql;
+    }
+    public String getFromAndWhere() {
+        return fromAndWhere;
+    }
+    public String getOrderSql() {
+        return orderSql;
+    }
+    public String getSelectGroupSql() {
+        return selectGroupSql;
+    }
+    public List<Object> getHavingParams() {
+        return havingParams;
+    }
+    public String getCountSql() {
+        return countSql;
+    }
+    public boolean isCountWithHaving() {
+        return countWithHaving;
+    }
+    public String getPageSql() {
+        return pageSql;
+    }
+    public String getIdPageSql() {
+        return idPageSql;
+    }
+    public String getSelectWithIdSql() {
+        return selectWithIdSql;
+    }
+    public String getCursorPageSql() {
+        return cursorPageSql;
+    }
+    public List<String> getCursorAliasList() {
+        return cursorAliasList;
+    }
+    public Set<String> getRemoveColumn() {
+        return removeColumn;
+    }
+    public Map<String, ReqResult> getInnerResultMap() {
+        return innerResultMap;
+    }
+
+
+    /** 游标分页的非第一页: 解析 cursor 并按游标条件里占位符的顺序绑定 */
+    public void bindCursor(ReqParam param, List<Object> params) {
+        if (param.hasCursorValue()) {
+            List<Object> values = QueryCursor.decode(param.getCursor(), cursorFieldTypeList);
+            for (int i = 0; i < values.size(); i++) {
+                for (int j = 0; j < i; j++) {
+                    params.add(values.get(j));
+                }
+                params.add(values.get(i));
+            }
+        }
+    }
+
+    /** 列的下标在读取第一行时确定, 每次查询都需要一个新的 */
+    public QueryRowMapper newRowMapper() {
+        return new QueryRowMapper(rowRuleMap);
+    }
+
+    /** 校验请求上的值(类型、长度、个数及分页)并绑定到 WHERE 的占位符上 */
+    public List<Object> bindWhere(ReqParam param, int maxListCount) {
+        param.checkPage(maxListCount);
+        List<Object> params = new ArrayList<>();
+        ReqQuery query = param.getQuery();
+        if (QueryUtil.isNotNull(query)) {
+            query.bindParam(conditionColumnList.iterator(), maxListCount, params);
+        }
+        return params;
+    }
+}
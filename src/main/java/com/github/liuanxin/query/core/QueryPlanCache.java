@@ -0,0 +1,118 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * <pre>
+ * 以请求的形态为 key 缓存编译好的查询计划, 数量超出上限时淘汰最久没有使用的那个.
+ * 上限 &lt;= 0 时不缓存, 每次都重新编译. 计划依赖表结构, 表结构的版本变了时清空
+ * </pre>
+ */
+public class QueryPlanCache {
+
+    private final int maxSize;
+    private final Map<String, Node> cache = new ConcurrentHashMap<>();
+    /** 缓存里的计划使用的表结构版本 */
+    private volatile long version;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public QueryPlanCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public QueryPlan get(long tcInfoVersion, String shape, Supplier<QueryPlan> compiler) {
+        if (tcInfoVersion != version) {
+            synchronized (this) {
+                if (tcInfoVersion > version) {
+                    cache.clear();
+                    version = tcInfoVersion;
+                }
+            }
+        }
+        // 刷新之前开始的请求使用的是旧版本, 编译后不放进缓存
+        if (maxSize <= 0 || tcInfoVersion != version) {
+            missCount.incrementAndGet();
+            return compiler.get();
+        }
+
+        Node node = cache.get(shape);
+        if (QueryUtil.isNotNull(node) && node.plan.getTcInfo().getVersion() == tcInfoVersion) {
+            hitCount.incrementAndGet();
+            node.lastAccess = System.nanoTime();
+            return node.plan;
+        }
+
+        missCount.incrementAndGet();
+        // 编译失败(校验不通过)会直接抛出异常, 不会放进缓存
+        QueryPlan plan = compiler.get();
+        // 编译期间版本又变了(已经清空过)时不放进缓存
+        if (tcInfoVersion == version) {
+            cache.put(shape, new Node(plan));
+            evict();
+        }
+        return plan;
+    }
+
+    private void evict() {
+        while (cache.size() > maxSize) {
+            String eldestKey = null;
+            long eldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<String, Node> entry : cache.entrySet()) {
+                long lastAccess = entry.getValue().lastAccess;
+                if (lastAccess < eldestAccess) {
+                    eldestAccess = lastAccess;
+                    eldestKey = entry.getKey();
+                }
+            }
+            if (QueryUtil.isNull(eldestKey)) {
+                return;
+            }
+            if (QueryUtil.isNotNull(cache.remove(eldestKey))) {
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /** 缓存里的计划使用的表结构版本 */
+    public long getVersion() {
+        return version;
+    }
+    public int getMaxSize() {
+        return maxSize;
+    }
+    public int size() {
+        return cache.size();
+    }
+    public long getHitCount() {
+        return hitCount.get();
+    }
+    public long getMissCount() {
+        return missCount.get();
+    }
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+
+    private static class Node {
+        private final QueryPlan plan;
+        private volatile long lastAccess;
+
+        private Node(QueryPlan plan) {
+            this.plan = plan;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+}
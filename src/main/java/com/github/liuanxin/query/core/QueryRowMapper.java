@@ -0,0 +1,258 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.enums.ResultGroup;
+import com.github.liuanxin.query.model.ReqResult;
+import com.github.liuanxin.query.model.ReqResultColumn;
+import com.github.liuanxin.query.model.TableColumnInfo;
+import com.github.liuanxin.query.util.QueryUtil;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+
+/**
+ * <pre>
+ * 读取 ResultSet 时一次完成: 按下标取值、数字转成字符串、日期格式化、函数列换成接口响应的属性.
+ * 转换规则按出参编译一次(QueryPlan 中缓存), 列的下标在每次查询的第一行时确定, 因此每次查询都需要 new 一个.
+ *
+ * 表里的列按列的类型使用对应的 getXxx 取值(字符串 数字), 其他的用 getObject; 列名在第一行时按规则确定成最终的属性
+ * (postgresql 返回的是小写的列名), 每行一个预设了大小的 LinkedHashMap
+ * </pre>
+ */
+public class QueryRowMapper implements RowMapper<Map<String, Object>> {
+
+    /** 小写的列名 -> 规则 */
+    private final Map<String, Rule> ruleMap;
+
+    private String[] labels;
+    private Rule[] rules;
+    private int capacity;
+
+    QueryRowMapper(Map<String, Rule> ruleMap) {
+        this.ruleMap = ruleMap;
+    }
+
+    @Override
+    public Map<String, Object> mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (QueryUtil.isNull(labels)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int count = metaData.getColumnCount();
+            labels = new String[count];
+            rules = new Rule[count];
+            for (int i = 0; i < count; i++) {
+                String label = JdbcUtils.lookupColumnName(metaData, i + 1);
+                labels[i] = label;
+                rules[i] = ruleMap.get(label.toLowerCase());
+            }
+            capacity = (int) (count / 0.75F) + 1;
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>(capacity);
+        for (int i = 0; i < labels.length; i++) {
+            Rule rule = rules[i];
+            if (QueryUtil.isNull(rule)) {
+                data.put(labels[i], JdbcUtils.getResultSetValue(rs, i + 1));
+            } else {
+                rule.handle(labels[i], rule.read(rs, i + 1), data);
+            }
+        }
+        return data;
+    }
+
+
+    /** 出参编译成规则, 没有规则的列原样返回. raw 为 true 时(直接映射成对象)不转字符串也不格式化日期, 只处理函数列的别名 */
+    static Map<String, Rule> compile(ReqResult result, String mainTable, boolean needAlias,
+                                     TableColumnInfo tcInfo, boolean force, boolean raw) {
+        Map<String, Rule> ruleMap = new HashMap<>();
+        String currentTable = QueryUtil.isEmpty(result.getTable()) ? mainTable : result.getTable();
+        for (ReqResultColumn resultColumn : result.projection(mainTable, tcInfo, force)) {
+            if (raw && resultColumn.getType() == ReqResultColumn.Type.DATE) {
+                continue;
+            }
+            switch (resultColumn.getType()) {
+                case COLUMN: {
+                    String column = resultColumn.getColumn();
+                    String columnName = QueryUtil.getColumnName(column);
+                    Class<?> fieldType = tcInfo.findTableColumn(QueryUtil.getTableName(column, currentTable), columnName).getFieldType();
+                    ReadType readType = ReadType.of(fieldType);
+                    if (raw) {
+                        ruleMap.putIfAbsent(columnName.toLowerCase(), new Rule(RuleType.PUT, readType, columnName, null));
+                    } else if (QueryUtil.serializableToStr(fieldType)) {
+                        ruleMap.putIfAbsent(column.toLowerCase(), new Rule(RuleType.STR, readType, columnName, null));
+                    } else if (Date.class.isAssignableFrom(fieldType)) {
+                        ruleMap.putIfAbsent(columnName.toLowerCase(), new Rule(RuleType.DATE, columnName, null));
+                    } else if (TemporalAccessor.class.isAssignableFrom(fieldType)) {
+                        ruleMap.putIfAbsent(columnName.toLowerCase(), new Rule(RuleType.LOCAL_DATE, columnName, null));
+                    } else {
+                        ruleMap.putIfAbsent(columnName.toLowerCase(), new Rule(RuleType.PUT, readType, columnName, null));
+                    }
+                    break;
+                }
+                case FUNCTION: {
+                    ResultGroup group = resultColumn.getGroup();
+                    String column = resultColumn.getColumn();
+                    String useColumn = group.needCheckColumn(column)
+                            ? QueryUtil.getQueryColumn(needAlias, column, mainTable, tcInfo) : column;
+                    ruleMap.putIfAbsent(group.generateAlias(useColumn).toLowerCase(), new Rule(raw ? RuleType.RENAME : RuleType.FUNCTION,
+                            resultColumn.getReturnColumn(), resultColumn.getFormatter()));
+                    break;
+                }
+                case DATE: {
+                    if (QueryUtil.isNotNull(resultColumn.getFormatter())) {
+                        String column = resultColumn.getColumn();
+                        ruleMap.put(column.toLowerCase(), new Rule(RuleType.FORMAT, column, resultColumn.getFormatter()));
+                    }
+                    break;
+                }
+                default: {
+                    // 子表的数据在外面单独处理
+                }
+            }
+        }
+        return ruleMap;
+    }
+
+    public static QueryRowMapper create(ReqResult result, String mainTable, boolean needAlias,
+                                        TableColumnInfo tcInfo, boolean force, boolean raw) {
+        return new QueryRowMapper(compile(result, mainTable, needAlias, tcInfo, force, raw));
+    }
+
+
+    enum RuleType { PUT, STR, DATE, LOCAL_DATE, FORMAT, FUNCTION, RENAME }
+
+    /** 取值的方式, 由列的类型决定 */
+    enum ReadType {
+        OBJECT, STRING, LONG, INT, DECIMAL;
+
+        static ReadType of(Class<?> fieldType) {
+            if (fieldType == String.class) {
+                return STRING;
+            } else if (fieldType == Long.class || fieldType == long.class) {
+                return LONG;
+            } else if (fieldType == Integer.class || fieldType == int.class) {
+                return INT;
+            } else if (fieldType == BigDecimal.class) {
+                return DECIMAL;
+            } else {
+                return OBJECT;
+            }
+        }
+
+        Object read(ResultSet rs, int index) throws SQLException {
+            switch (this) {
+                case STRING: {
+                    return rs.getString(index);
+                }
+                case LONG: {
+                    long value = rs.getLong(index);
+                    return rs.wasNull() ? null : value;
+                }
+                case INT: {
+                    // 无符号的 int 可能超出 int 的范围
+                    long value = rs.getLong(index);
+                    if (rs.wasNull()) {
+                        return null;
+                    }
+                    return (value == (int) value) ? (Object) (int) value : (Object) value;
+                }
+                case DECIMAL: {
+                    return rs.getBigDecimal(index);
+                }
+                default: {
+                    return JdbcUtils.getResultSetValue(rs, index);
+                }
+            }
+        }
+    }
+
+    static class Rule {
+        private final RuleType type;
+        private final ReadType readType;
+        /** 转换后放进返回数据里的属性 */
+        private final String key;
+        private final DateTimeFormatter formatter;
+
+        Rule(RuleType type, String key, DateTimeFormatter formatter) {
+            this(type, ReadType.OBJECT, key, formatter);
+        }
+        Rule(RuleType type, ReadType readType, String key, DateTimeFormatter formatter) {
+            this.type = type;
+            this.readType = readType;
+            this.key = key;
+            this.formatter = formatter;
+        }
+
+        Object read(ResultSet rs, int index) throws SQLException {
+            return readType.read(rs, index);
+        }
+
+        void handle(String label, Object value, Map<String, Object> data) {
+            switch (type) {
+                case PUT: {
+                    data.put(key, value);
+                    return;
+                }
+                case STR: {
+                    String str = QueryUtil.toStr(value);
+                    if (QueryUtil.isNotEmpty(str)) {
+                        data.put(key, str);
+                    } else {
+                        data.put(label, value);
+                    }
+                    return;
+                }
+                case DATE: {
+                    Date date = QueryUtil.toDate(value);
+                    if (QueryUtil.isNotNull(date)) {
+                        data.put(key, QueryUtil.format(date));
+                    } else {
+                        data.put(label, value);
+                    }
+                    return;
+                }
+                case LOCAL_DATE: {
+                    TemporalAccessor date = QueryUtil.toLocalDate(value);
+                    if (QueryUtil.isNotNull(date)) {
+                        data.put(key, QueryUtil.format(date));
+                    } else {
+                        data.put(label, value);
+                    }
+                    return;
+                }
+                case FORMAT: {
+                    TemporalAccessor date = QueryUtil.toLocalDate(value);
+                    if (QueryUtil.isNotNull(date)) {
+                        data.put(key, QueryUtil.format(date, formatter));
+                    } else {
+                        data.put(label, value);
+                    }
+                    return;
+                }
+                case RENAME: {
+                    if (QueryUtil.isNotNull(value)) {
+                        data.put(key, value);
+                    }
+                    return;
+                }
+                default: {
+                    // 函数: 查询时的别名换成接口响应的属性, 没有值则不返回
+                    if (QueryUtil.isNotNull(value)) {
+                        TemporalAccessor date = QueryUtil.toLocalDate(value);
+                        if (QueryUtil.isNotNull(date)) {
+                            String dateInfo = QueryUtil.format(date, formatter);
+                            data.put(key, QueryUtil.isEmpty(dateInfo) ? QueryUtil.format(date) : dateInfo);
+                        } else {
+                            data.put(key, value);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
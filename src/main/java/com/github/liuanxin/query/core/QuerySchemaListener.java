@@ -0,0 +1,15 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.model.SchemaChangeEvent;
+
+/**
+ * <pre>
+ * 表结构刷新(手动调用 refreshWithDatabase 或者后台检测到表结构变化)并发布了新版本之后回调, 用来清理依赖表结构的缓存.
+ * 在刷新的线程里同步调用, 抛出的异常只记录日志
+ * </pre>
+ */
+@FunctionalInterface
+public interface QuerySchemaListener {
+
+    void onSchemaChange(SchemaChangeEvent event);
+}
@@ -0,0 +1,108 @@
+package com.github.liuanxin.query.core;
+
+import com.github.liuanxin.query.util.QueryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * <pre>
+ * 后台定时查询表结构的指纹(只返回一行), 跟上次不一样时随机等待一段时间(避免多个实例同时刷新)再刷新表结构.
+ * 刷新之前取的指纹作为下次比较的基准, 刷新期间又有变化时下次还会再刷新; 刷新失败时基准不变, 下次重试
+ * </pre>
+ */
+public class QuerySchemaWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QuerySchemaWatcher.class);
+
+    private final Supplier<String> fingerprintSupplier;
+    private final Runnable refresher;
+    private final long jitterMs;
+    private final ScheduledExecutorService scheduler;
+
+    /** 当前表结构对应的指纹 */
+    private volatile String fingerprint;
+
+    private final AtomicLong checkCount = new AtomicLong();
+    private final AtomicLong changeCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private volatile long lastCheckTime;
+
+    public QuerySchemaWatcher(Supplier<String> fingerprintSupplier, Runnable refresher, long jitterMs) {
+        this.fingerprintSupplier = fingerprintSupplier;
+        this.refresher = refresher;
+        this.jitterMs = Math.max(jitterMs, 0);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "query-schema-watch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** @param baseFingerprint 当前表结构对应的指纹, 为空时第一次检查只记录不刷新 */
+    public void start(String baseFingerprint, long intervalSeconds) {
+        this.fingerprint = baseFingerprint;
+        long interval = Math.max(intervalSeconds, 1);
+        scheduler.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void check() {
+        checkCount.incrementAndGet();
+        lastCheckTime = System.currentTimeMillis();
+        try {
+            String current = fingerprintSupplier.get();
+            if (QueryUtil.isNull(fingerprint)) {
+                fingerprint = current;
+                return;
+            }
+            if (Objects.equals(current, fingerprint)) {
+                return;
+            }
+
+            if (LOG.isInfoEnabled()) {
+                LOG.info("schema fingerprint changed({} -> {}), refresh with database", fingerprint, current);
+            }
+            if (jitterMs > 0) {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(jitterMs + 1));
+            }
+            refresher.run();
+            fingerprint = current;
+            changeCount.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            errorCount.incrementAndGet();
+            if (LOG.isErrorEnabled()) {
+                LOG.error("watch schema exception", e);
+            }
+        }
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+    public long getCheckCount() {
+        return checkCount.get();
+    }
+    /** 检测到变化并刷新成功的次数 */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+    public long getLastCheckTime() {
+        return lastCheckTime;
+    }
+}
@@ -1,30 +1,44 @@
 package com.github.liuanxin.query.core;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.github.liuanxin.query.constant.QueryConst;
 import com.github.liuanxin.query.enums.AliasGenerateRule;
+import com.github.liuanxin.query.enums.ConditionType;
 import com.github.liuanxin.query.enums.OneToOneHasManyRule;
 import com.github.liuanxin.query.enums.ResultType;
 import com.github.liuanxin.query.enums.TableRelationType;
 import com.github.liuanxin.query.model.*;
+import com.github.liuanxin.query.util.IdGenerator;
+import com.github.liuanxin.query.util.IdUtil;
 import com.github.liuanxin.query.util.QueryInfoUtil;
 import com.github.liuanxin.query.util.QueryJsonUtil;
 import com.github.liuanxin.query.util.QuerySqlUtil;
 import com.github.liuanxin.query.util.QueryUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.Serializable;
-import java.sql.SQLException;
+import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @SuppressWarnings({"unchecked", "DuplicatedCode", "SqlSourceToSinkFlow"})
-public class TableColumnTemplate implements InitializingBean {
+public class TableColumnTemplate implements InitializingBean, DisposableBean {
 
     private static final Logger LOG = LoggerFactory.getLogger(TableColumnTemplate.class);
 
@@ -73,10 +87,89 @@ public class TableColumnTemplate implements InitializingBean {
     @Value("${query.logic-delete-long-value:}")
     private String logicDeleteLongValue;
 
-    private TableColumnInfo tcInfo;
+    @Value("${query.plan-cache-size:256}")
+    private int planCacheSize;
+
+    @Value("${query.parallel-count-page:false}")
+    private boolean parallelCountPage;
+
+    @Value("${query.parallel-thread-size:8}")
+    private int parallelThreadSize;
+
+    @Value("${query.parallel-relation:false}")
+    private boolean parallelRelation;
+
+    @Value("${query.parallel-relation-size:4}")
+    private int parallelRelationSize;
+
+    @Value("${query.jdbc-batch-insert:false}")
+    private boolean jdbcBatchInsert;
+
+    @Value("${query.batch-update-case-rows:100}")
+    private int batchUpdateCaseRows;
+
+    @Value("${query.chunk-write-size:1000}")
+    private int chunkWriteSize;
+
+    @Value("${query.archive-tables:}")
+    private String archiveTables;
+
+    @Value("${query.archive-time-column:update_time}")
+    private String archiveTimeColumn;
+
+    @Value("${query.archive-retention-days:30}")
+    private int archiveRetentionDays;
+
+    @Value("${query.archive-chunk-size:500}")
+    private int archiveChunkSize;
+
+    @Value("${query.archive-sleep-ms:100}")
+    private long archiveSleepMs;
+
+    @Value("${query.archive-interval-seconds:3600}")
+    private long archiveIntervalSeconds;
+
+    @Value("${query.archive-mark-file:query-archive-mark.properties}")
+    private String archiveMarkFile;
+
+    @Value("${query.id-node:-1}")
+    private long idNode;
+
+    @Value("${query.id-node-lease-table:}")
+    private String idNodeLeaseTable;
+
+    @Value("${query.id-node-lease-seconds:300}")
+    private long idNodeLeaseSeconds;
+
+    @Value("${query.metadata-snapshot-file:}")
+    private String metadataSnapshotFile;
+
+    @Value("${query.schema-watch-seconds:0}")
+    private long schemaWatchSeconds;
+
+    @Value("${query.schema-watch-jitter-ms:3000}")
+    private long schemaWatchJitterMs;
+
+    /** 当前的表结构, 刷新时构建好新的再整个替换, 查询过程中使用开始时拿到的那个 */
+    private final AtomicReference<TableColumnInfo> tcInfoRef = new AtomicReference<>();
+    /** 当前表结构对应的每个表的签名, 增量刷新时用来判断哪些表变了, 还没有时刷新则全量加载 */
+    private volatile Map<String, String> tableSignMap;
+    private QueryPlanCache planCache;
+    private QueryExecutor queryExecutor;
+    private QueryBatchPlanner batchPlanner;
+    /** 数据库的产品名, 比如 MySQL PostgreSQL */
+    private String dbDialect;
+    private QueryArchiver archiver;
+    private QueryIdNodeLease idNodeLease;
+    private QueryMetadataSnapshot metadataSnapshot;
+    private QuerySchemaWatcher schemaWatcher;
+    private final List<QuerySchemaListener> schemaListenerList = new CopyOnWriteArrayList<>();
+    /** 单个请求并行查询子表时同时使用的连接数 */
+    private int relationParallelism;
 
     private final List<TableColumnRelation> tableRelationList;
     private final Map<String, ReqAliasTemplate> queryAliasMap;
+    private volatile Map<String, ReqAliasCompiled> compiledAliasMap;
     private final JdbcTemplate jdbcTemplate;
     public TableColumnTemplate(JdbcTemplate jdbcTemplate,
                                List<TableColumnRelation> tableRelationList,
@@ -88,25 +181,185 @@ public class TableColumnTemplate implements InitializingBean {
 
     @Override
     public void afterPropertiesSet() {
+        planCache = new QueryPlanCache(planCacheSize);
+        if (parallelCountPage || parallelRelation) {
+            queryExecutor = new QueryExecutor(parallelThreadSize);
+            relationParallelism = QueryExecutor.calcParallelism(parallelRelationSize, jdbcTemplate.getDataSource());
+        }
+        dbDialect = getDatabaseDialect();
+        String baseFingerprint = null;
         if (QueryUtil.isEmpty(scanPackages)) {
-            loadDatabase();
+            TableColumnInfo snapshotInfo = null;
+            if (QueryUtil.isNotEmpty(metadataSnapshotFile)) {
+                metadataSnapshot = new QueryMetadataSnapshot(metadataSnapshotFile, metadataConfigKey());
+                snapshotInfo = metadataSnapshot.load();
+            }
+            if (QueryUtil.isNull(snapshotInfo)) {
+                boolean watch = schemaWatchSeconds > 0;
+                baseFingerprint = (watch || QueryUtil.isNotNull(metadataSnapshot)) ? QueryMetadataSnapshot.fingerprint(jdbcTemplate, dbDialect) : null;
+                // 检测表结构变化时记下每个表的签名, 之后的刷新只重新加载变了的表
+                Map<String, String> signMap = watch ? loadTableSign() : null;
+                TableColumnInfo info = loadDatabase();
+                publish(info);
+                tableSignMap = signMap;
+                saveSnapshot(baseFingerprint, info);
+            } else {
+                publish(snapshotInfo);
+                baseFingerprint = metadataSnapshot.getFingerprint();
+                verifySnapshot();
+            }
         } else {
-            tcInfo = QueryInfoUtil.infoWithScan(tablePrefix, tableSuffix, aliasGenerateRule, scanPackages, tableRelationList,
+            TableColumnInfo info = QueryInfoUtil.infoWithScan(tablePrefix, tableSuffix, aliasGenerateRule, scanPackages, tableRelationList,
                     logicDeleteColumn, logicValue, logicDeleteBooleanValue, logicDeleteIntValue, logicDeleteLongValue);
-            if (QueryUtil.isNull(tcInfo)) {
+            if (QueryUtil.isNull(info)) {
                 throw new RuntimeException(String.format("class not found in(%s)", scanPackages));
             }
+            publish(info);
+        }
+        batchPlanner = new QueryBatchPlanner(loadMaxAllowedPacket());
+        if (QueryUtil.isNotEmpty(archiveTables)) {
+            List<String> tableList = new ArrayList<>(handleTable(archiveTables));
+            archiver = new QueryArchiver(jdbcTemplate, this::getTcInfo, isMysql(), tableList, archiveTimeColumn,
+                    archiveRetentionDays, archiveChunkSize, archiveSleepMs, archiveMarkFile);
+            archiver.start(archiveIntervalSeconds);
+        }
+        if (idNode >= 0) {
+            IdUtil.setGenerator(new IdGenerator(idNode));
+        } else if (QueryUtil.isNotEmpty(idNodeLeaseTable)) {
+            idNodeLease = new QueryIdNodeLease(jdbcTemplate, idNodeLeaseTable, idNodeLeaseSeconds);
+            idNodeLease.start();
+        }
+        if (QueryUtil.isEmpty(scanPackages) && schemaWatchSeconds > 0) {
+            schemaWatcher = new QuerySchemaWatcher(() -> QueryMetadataSnapshot.fingerprint(jdbcTemplate, dbDialect),
+                    this::refreshWithDatabase, schemaWatchJitterMs);
+            schemaWatcher.start(baseFingerprint, schemaWatchSeconds);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (QueryUtil.isNotNull(queryExecutor)) {
+            queryExecutor.shutdown();
+        }
+        if (QueryUtil.isNotNull(archiver)) {
+            archiver.shutdown();
+        }
+        if (QueryUtil.isNotNull(idNodeLease)) {
+            idNodeLease.shutdown();
+        }
+        if (QueryUtil.isNotNull(schemaWatcher)) {
+            schemaWatcher.shutdown();
         }
-        QueryInfoUtil.checkAndSetRelation(tableRelationList, tcInfo);
     }
-    private void loadDatabase() {
+
+    private TableColumnInfo loadDatabase() {
         List<Map<String, Object>> tableList = new ArrayList<>();
         List<Map<String, Object>> tableColumnList = new ArrayList<>();
         loadDatabase(tableList, tableColumnList);
-        tcInfo = QueryInfoUtil.infoWithDb(tablePrefix, aliasGenerateRule, tableList, tableColumnList,
+        return QueryInfoUtil.infoWithDb(tablePrefix, aliasGenerateRule, tableList, tableColumnList,
                 logicDeleteColumn, logicValue, logicDeleteBooleanValue, logicDeleteIntValue, logicDeleteLongValue);
     }
 
+    /** 只重新加载签名变了(或新增)的表(changeList), 没变的表直接复用, 签名里没有的表去掉 */
+    private TableColumnInfo loadChangedTable(TableColumnInfo current, List<String> changeList, Map<String, String> signMap) {
+        Map<String, Table> changeMap = new HashMap<>();
+        if (QueryUtil.isNotEmpty(changeList)) {
+            List<Map<String, Object>> tableList = jdbcTemplate.queryForList(
+                    QuerySqlUtil.getTableSql(dbDialect, changeList.size()), changeList.toArray());
+            List<Map<String, Object>> tableColumnList = jdbcTemplate.queryForList(
+                    QuerySqlUtil.getColumnSql(dbDialect, changeList.size()), changeList.toArray());
+            TableColumnInfo changeInfo = QueryInfoUtil.infoWithDb(tablePrefix, aliasGenerateRule, tableList, tableColumnList,
+                    logicDeleteColumn, logicValue, logicDeleteBooleanValue, logicDeleteIntValue, logicDeleteLongValue);
+            for (Table table : changeInfo.allTable()) {
+                changeMap.put(table.getName(), table);
+            }
+        }
+        Map<String, Table> currentMap = new HashMap<>();
+        for (Table table : current.allTable()) {
+            currentMap.put(table.getName(), table);
+        }
+
+        Map<String, Table> tableMap = new LinkedHashMap<>();
+        for (String tableName : signMap.keySet()) {
+            Table table = changeMap.containsKey(tableName) ? changeMap.get(tableName) : currentMap.get(tableName);
+            if (QueryUtil.isNotNull(table)) {
+                tableMap.put(tableName, table);
+            }
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("refresh table({}), table count({} -> {})", changeList, currentMap.size(), tableMap.size());
+        }
+        return QueryInfoUtil.infoWithTable(tableMap);
+    }
+    /** 表名 -> 签名 */
+    private Map<String, String> loadTableSign() {
+        Map<String, String> signMap = new LinkedHashMap<>();
+        for (Map<String, Object> map : jdbcTemplate.queryForList(QuerySqlUtil.getTableSignSql(dbDialect))) {
+            signMap.put(QueryUtil.toStr(map.get("tn")), QueryUtil.toStr(map.get("ts")));
+        }
+        return signMap;
+    }
+
+    /**
+     * 设置关系并编译别名模板(有误时抛出异常, 当前的表结构不变), 都通过之后再整个替换, 版本加 1.
+     * 设置关系时会把表名和列名改成实际的, 每个版本使用一份复制的关系, 不改动当前版本在用的
+     */
+    private void publish(TableColumnInfo info) {
+        List<TableColumnRelation> relationList = new ArrayList<>(tableRelationList.size());
+        for (TableColumnRelation relation : tableRelationList) {
+            relationList.add(new TableColumnRelation(relation.getOneTable(), relation.getOneColumn(),
+                    relation.getType(), relation.getOneOrManyTable(), relation.getOneOrManyColumn()));
+        }
+        QueryInfoUtil.checkAndSetRelation(relationList, info);
+        Map<String, ReqAliasCompiled> aliasMap = compileAlias(info);
+        TableColumnInfo current = tcInfoRef.get();
+        info.setVersion(QueryUtil.isNull(current) ? 1 : (current.getVersion() + 1));
+        tcInfoRef.set(info);
+        compiledAliasMap = aliasMap;
+    }
+
+    /** 指纹在读表结构之前取, 这期间表结构有变化时下次校验会不一致而重新构建. 没有配置快照时返回 null */
+    private String snapshotFingerprint() {
+        return QueryUtil.isNull(metadataSnapshot) ? null : QueryMetadataSnapshot.fingerprint(jdbcTemplate, dbDialect);
+    }
+    private void saveSnapshot(String fingerprint, TableColumnInfo info) {
+        if (QueryUtil.isNotNull(metadataSnapshot) && QueryUtil.isNotNull(fingerprint)) {
+            metadataSnapshot.save(fingerprint, info);
+        }
+    }
+
+    /** 快照里的表结构依赖的配置, 变了则不使用快照 */
+    private String metadataConfigKey() {
+        return String.join("|", dbDialect, QueryUtil.toStr(tablePrefix), QueryUtil.toStr(aliasGenerateRule),
+                QueryUtil.toStr(logicDeleteColumn), QueryUtil.toStr(logicValue), QueryUtil.toStr(logicDeleteBooleanValue),
+                QueryUtil.toStr(logicDeleteIntValue), QueryUtil.toStr(logicDeleteLongValue));
+    }
+
+    /** 在后台用指纹 sql 校验启动时读取的快照, 跟数据库不一致时重新构建 */
+    private void verifySnapshot() {
+        Thread thread = new Thread(() -> {
+            try {
+                // 签名在指纹之前取: 指纹跟快照一致时, 签名对应的就是快照里的表结构
+                Map<String, String> signMap = loadTableSign();
+                String fingerprint = QueryMetadataSnapshot.fingerprint(jdbcTemplate, dbDialect);
+                if (Objects.equals(fingerprint, metadataSnapshot.getFingerprint())) {
+                    initTableSign(signMap);
+                } else {
+                    if (LOG.isInfoEnabled()) {
+                        LOG.info("metadata snapshot fingerprint changed, refresh with database");
+                    }
+                    refreshWithDatabase();
+                }
+            } catch (Exception e) {
+                if (LOG.isErrorEnabled()) {
+                    LOG.error("verify metadata snapshot exception", e);
+                }
+            }
+        }, "query-metadata-verify");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     private String getDatabaseDialect() {
         try {
             return jdbcTemplate.execute((java.sql.Connection connection) -> {
@@ -123,6 +376,24 @@ public class TableColumnTemplate implements InitializingBean {
             return "UNKNOWN";
         }
     }
+    /** mysql(mariadb) 单个包的最大字节数, 批量写入时单条 sql 不能超过它, 获取不到时返回 0 */
+    private long loadMaxAllowedPacket() {
+        if (!isMysql()) {
+            return 0;
+        }
+        try {
+            Long maxAllowedPacket = jdbcTemplate.queryForObject("SELECT @@max_allowed_packet", Long.class);
+            return QueryUtil.isNull(maxAllowedPacket) ? 0 : maxAllowedPacket;
+        } catch (DataAccessException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("get max_allowed_packet exception", e);
+            }
+            return 0;
+        }
+    }
+    private boolean isMysql() {
+        return "mysql".equalsIgnoreCase(dbDialect) || "mariadb".equalsIgnoreCase(dbDialect);
+    }
     private void loadDatabase(List<Map<String, Object>> tableList, List<Map<String, Object>> tableColumnList) {
         String dbDialect = getDatabaseDialect();
         // table_name, table_comment
@@ -138,19 +409,137 @@ public class TableColumnTemplate implements InitializingBean {
     }
 
 
+    /** 编译别名模板并检查跟表结构是否匹配, 有误直接抛出异常 */
+    private Map<String, ReqAliasCompiled> compileAlias(TableColumnInfo tcInfo) {
+        Map<String, ReqAliasCompiled> aliasMap = new HashMap<>();
+        if (QueryUtil.isNotEmpty(queryAliasMap)) {
+            for (Map.Entry<String, ReqAliasTemplate> entry : queryAliasMap.entrySet()) {
+                ReqAliasCompiled compiled = new ReqAliasCompiled(entry.getKey(), entry.getValue());
+                compiled.check(tcInfo);
+                aliasMap.put(entry.getKey(), compiled);
+            }
+        }
+        return Collections.unmodifiableMap(aliasMap);
+    }
+
     public TableColumnInfo getTcInfo() {
-        return tcInfo;
+        return tcInfoRef.get();
+    }
+
+    /** 归档逻辑删除数据的后台任务, 没有配置 query.archive-tables 时是 null */
+    public QueryArchiver getArchiver() {
+        return archiver;
     }
 
+    /** 从数据库租用 id 节点的任务, 没有配置 query.id-node-lease-table(或者配置了 query.id-node)时是 null */
+    public QueryIdNodeLease getIdNodeLease() {
+        return idNodeLease;
+    }
 
-    public boolean refreshWithDatabase() {
-        if (QueryUtil.isEmpty(scanPackages)) {
-            loadDatabase();
-            QueryInfoUtil.checkAndSetRelation(tableRelationList, tcInfo);
-            return true;
-        } else {
+    /** 批量写入时每条 sql 行数的计算, 可以从这里拿到最近计算出的行数及被限制的次数 */
+    public QueryBatchPlanner getBatchPlanner() {
+        return batchPlanner;
+    }
+
+
+    /**
+     * 只重新加载有变化的表, 跟没变的表一起构建新的表结构后整个替换(版本加 1), 进行中的查询继续使用旧的.
+     * 查询计划按版本失效, 发布后回调 addSchemaListener 添加的监听. 第一次刷新(还没有每个表的签名)时全量加载
+     */
+    public synchronized boolean refreshWithDatabase() {
+        if (QueryUtil.isNotEmpty(scanPackages)) {
             return false;
         }
+        String fingerprint = snapshotFingerprint();
+        Map<String, String> signMap = loadTableSign();
+        Map<String, String> lastSignMap = tableSignMap;
+        TableColumnInfo current = getTcInfo();
+        Set<String> currentTableSet = new LinkedHashSet<>();
+        for (Table table : current.allTable()) {
+            currentTableSet.add(table.getName());
+        }
+
+        boolean full = QueryUtil.isEmpty(lastSignMap);
+        List<String> addList = new ArrayList<>();
+        List<String> changeList = new ArrayList<>();
+        List<String> removeList = new ArrayList<>();
+        TableColumnInfo info;
+        if (full) {
+            info = loadDatabase();
+            for (Table table : info.allTable()) {
+                if (currentTableSet.contains(table.getName())) {
+                    changeList.add(table.getName());
+                } else {
+                    addList.add(table.getName());
+                }
+            }
+        } else {
+            for (Map.Entry<String, String> entry : signMap.entrySet()) {
+                String tableName = entry.getKey();
+                String lastSign = lastSignMap.get(tableName);
+                if (QueryUtil.isNull(lastSign)) {
+                    addList.add(tableName);
+                } else if (!lastSign.equals(entry.getValue())) {
+                    changeList.add(tableName);
+                }
+            }
+            List<String> loadList = new ArrayList<>(addList);
+            loadList.addAll(changeList);
+            boolean hasRemove = !signMap.keySet().containsAll(lastSignMap.keySet());
+            info = (QueryUtil.isEmpty(loadList) && !hasRemove) ? null : loadChangedTable(current, loadList, signMap);
+        }
+        if (QueryUtil.isNotNull(info)) {
+            Set<String> tableSet = new HashSet<>();
+            for (Table table : info.allTable()) {
+                tableSet.add(table.getName());
+            }
+            for (String tableName : currentTableSet) {
+                if (!tableSet.contains(tableName)) {
+                    removeList.add(tableName);
+                }
+            }
+            publish(info);
+            saveSnapshot(fingerprint, info);
+        }
+        tableSignMap = signMap;
+        if (QueryUtil.isNotNull(info)) {
+            notifySchemaChange(new SchemaChangeEvent(current.getVersion(), info.getVersion(), full, addList, changeList, removeList));
+        }
+        return true;
+    }
+    private synchronized void initTableSign(Map<String, String> signMap) {
+        if (QueryUtil.isNull(tableSignMap)) {
+            tableSignMap = signMap;
+        }
+    }
+    private void notifySchemaChange(SchemaChangeEvent event) {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("schema changed: {}", event);
+        }
+        for (QuerySchemaListener listener : schemaListenerList) {
+            try {
+                listener.onSchemaChange(event);
+            } catch (Exception e) {
+                if (LOG.isErrorEnabled()) {
+                    LOG.error("schema listener({}) exception", listener, e);
+                }
+            }
+        }
+    }
+
+    /** 表结构刷新并发布新版本之后回调 */
+    public void addSchemaListener(QuerySchemaListener listener) {
+        if (QueryUtil.isNotNull(listener)) {
+            schemaListenerList.add(listener);
+        }
+    }
+    public void removeSchemaListener(QuerySchemaListener listener) {
+        schemaListenerList.remove(listener);
+    }
+
+    /** 后台检测表结构变化的任务, 没有配置 query.schema-watch-seconds 时是 null */
+    public QuerySchemaWatcher getSchemaWatcher() {
+        return schemaWatcher;
     }
 
 
@@ -197,6 +586,7 @@ public class TableColumnTemplate implements InitializingBean {
 
         Set<String> tableSet = handleTable(tables);
         List<QueryInfo> queryList = new ArrayList<>();
+        TableColumnInfo tcInfo = getTcInfo();
         for (Table table : tcInfo.allTable()) {
             String tableAlias = table.getAlias();
             if (QueryUtil.isEmpty(tableSet) || tableSet.contains(tableAlias.toLowerCase())) {
@@ -229,6 +619,17 @@ public class TableColumnTemplate implements InitializingBean {
 
 
 
+    /**
+     * <pre>
+     * 写入一整个聚合的数据, 比如:
+     * { "order": { "orderNo": "x", ..., "orderAddress": { ... }, "orderItem": [ { ... } ], "orderLog": [ { ... } ] } }
+     *
+     * 1. 行里的 key 是子表(表名或别名, 跟当前表有配置关联关系)时当成子表的数据, 其他的 key 当成列
+     * 2. 按表之间的关联关系排序, 主表先写入, 子表关联的列没有值时使用主表行里对应列的值
+     * 3. 主表被子表关联的列是单主键且没有值时: 自增列则写入后取数据库生成的主键, 否则是 long 类型时使用 IdUtil 生成
+     * 4. 同一个表的行合在一起批量写入, 每个表一次(行数太多时按批量写入的规则拆分)
+     * </pre>
+     */
     @Transactional
     public boolean insertData(Object data) {
         Map<String, Object> dataMap = QueryJsonUtil.convertData(data);
@@ -236,32 +637,161 @@ public class TableColumnTemplate implements InitializingBean {
             throw new RuntimeException("insert dynamic data: data error");
         }
 
+        // 表名 -> 表的所有行
+        Map<String, List<InsertNode>> tableNodeMap = new LinkedHashMap<>();
         for (Map.Entry<String, Object> entry : dataMap.entrySet()) {
-            String values = QueryJsonUtil.toJson(entry.getValue());
-            if (QueryUtil.isNotEmpty(values)) {
-                String table = entry.getKey();
-                if (values.startsWith("{") && values.endsWith("}")) {
-                    Map<String, Object> map = QueryJsonUtil.convertData(values);
-                    if (QueryUtil.isEmpty(map)) {
-                        return false;
-                    }
-                    addData(table, map);
-                } else if (values.startsWith("[") && values.endsWith("]")) {
-                    List<Map<String, Object>> list = QueryJsonUtil.convertDataList(values);
-                    if (QueryUtil.isEmpty(list)) {
-                        return false;
-                    }
+            collectInsertNode(entry.getKey(), entry.getValue(), null, tableNodeMap);
+        }
+        if (QueryUtil.isEmpty(tableNodeMap)) {
+            return false;
+        }
 
-                    for (Map<String, Object> obj : list) {
-                        addData(table, obj);
-                    }
+        for (String tableName : sortInsertTable(tableNodeMap.keySet())) {
+            insertTableNode(getTcInfo().findTable(tableName), tableNodeMap.get(tableName));
+        }
+        return true;
+    }
+    private void collectInsertNode(String tableKey, Object value, InsertNode parent, Map<String, List<InsertNode>> tableNodeMap) {
+        TableColumnInfo tcInfo = getTcInfo();
+        Table table = tcInfo.findTable(tableKey);
+        if (QueryUtil.isNull(table)) {
+            throw new RuntimeException("insert dynamic data: table(" + tableKey + ") has no defined");
+        }
+        TableColumnRelation relation = null;
+        if (QueryUtil.isNotNull(parent)) {
+            relation = tcInfo.findRelationByMasterChild(parent.table.getName(), table.getName());
+            if (QueryUtil.isNull(relation)) {
+                throw new RuntimeException("insert dynamic data: table(" + parent.table.getName() + ") has no relation with(" + tableKey + ")");
+            }
+        }
+
+        List<Map<String, Object>> rowList = new ArrayList<>();
+        if (value instanceof Map<?, ?>) {
+            rowList.add((Map<String, Object>) value);
+        } else if (value instanceof Collection<?>) {
+            for (Object obj : (Collection<?>) value) {
+                if (obj instanceof Map<?, ?>) {
+                    rowList.add((Map<String, Object>) obj);
                 }
             }
         }
-        return true;
+
+        Set<String> aliasSet = new HashSet<>();
+        for (TableColumn column : table.getColumnMap().values()) {
+            aliasSet.add(column.getAlias());
+        }
+        for (Map<String, Object> row : rowList) {
+            if (QueryUtil.isEmpty(row)) {
+                continue;
+            }
+            InsertNode node = new InsertNode(table, parent, relation);
+            if (QueryUtil.isNotNull(parent)) {
+                parent.childList.add(node);
+            }
+            tableNodeMap.computeIfAbsent(table.getName(), (k) -> new ArrayList<>()).add(node);
+
+            Map<String, Object> childMap = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                String key = entry.getKey();
+                Object obj = entry.getValue();
+                if (!aliasSet.contains(key) && (obj instanceof Map<?, ?> || obj instanceof Collection<?>)) {
+                    childMap.put(key, obj);
+                } else {
+                    node.data.put(key, obj);
+                }
+            }
+            for (Map.Entry<String, Object> entry : childMap.entrySet()) {
+                collectInsertNode(entry.getKey(), entry.getValue(), node, tableNodeMap);
+            }
+        }
     }
-    private void addData(String table, Map<String, Object> data) {
-        // todo
+    /** 按表之间的关联关系排序, 主表在子表的前面 */
+    private List<String> sortInsertTable(Set<String> tableSet) {
+        Map<String, Set<String>> childMap = new LinkedHashMap<>();
+        Map<String, Integer> masterCountMap = new LinkedHashMap<>();
+        for (String table : tableSet) {
+            masterCountMap.put(table, 0);
+        }
+        for (String master : tableSet) {
+            for (String child : tableSet) {
+                if (!master.equals(child) && QueryUtil.isNotNull(getTcInfo().findRelationByMasterChild(master, child))) {
+                    childMap.computeIfAbsent(master, (k) -> new LinkedHashSet<>()).add(child);
+                    masterCountMap.merge(child, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<String> tableList = new ArrayList<>();
+        Deque<String> queue = new ArrayDeque<>();
+        for (Map.Entry<String, Integer> entry : masterCountMap.entrySet()) {
+            if (entry.getValue() == 0) {
+                queue.add(entry.getKey());
+            }
+        }
+        while (!queue.isEmpty()) {
+            String table = queue.poll();
+            tableList.add(table);
+            for (String child : childMap.getOrDefault(table, Collections.emptySet())) {
+                if (masterCountMap.merge(child, -1, Integer::sum) == 0) {
+                    queue.add(child);
+                }
+            }
+        }
+        if (tableList.size() != tableSet.size()) {
+            throw new RuntimeException("insert dynamic data: table relation has cycle in " + tableSet);
+        }
+        return tableList;
+    }
+    private void insertTableNode(Table table, List<InsertNode> nodeList) {
+        TableColumnInfo tcInfo = getTcInfo();
+        // 子表关联的列没有值时用主表行里的值
+        for (InsertNode node : nodeList) {
+            if (QueryUtil.isNotNull(node.parent)) {
+                TableColumn column = tcInfo.findTableColumn(table, node.relation.getOneOrManyColumn());
+                TableColumn masterColumn = tcInfo.findTableColumn(node.parent.table, node.relation.getOneColumn());
+                if (QueryUtil.isNull(node.data.get(column.getAlias()))) {
+                    node.data.put(column.getAlias(), node.parent.data.get(masterColumn.getAlias()));
+                }
+            }
+        }
+
+        // 被子表关联的列是单主键且没有值: 自增列写入后取生成的主键, long 类型则用 IdUtil 生成
+        TableColumn idColumn = (table.getIdKey().size() == 1) ? table.getColumnMap().get(table.getIdKey().get(0)) : null;
+        boolean needKey = false;
+        for (InsertNode node : nodeList) {
+            for (InsertNode child : node.childList) {
+                TableColumn masterColumn = tcInfo.findTableColumn(table, child.relation.getOneColumn());
+                if (masterColumn == idColumn && QueryUtil.isNull(node.data.get(idColumn.getAlias()))) {
+                    Class<?> fieldType = idColumn.getFieldType();
+                    if (idColumn.isAutoIncrement()) {
+                        needKey = true;
+                    } else if (fieldType == Long.class || fieldType == long.class) {
+                        node.data.put(idColumn.getAlias(), IdUtil.getId());
+                    }
+                }
+            }
+        }
+
+        List<Map<String, Object>> rowList = new ArrayList<>(nodeList.size());
+        for (InsertNode node : nodeList) {
+            rowList.add(node.data);
+        }
+        if (!needKey) {
+            insertBatch(table.getName(), rowList, 0, false);
+            return;
+        }
+
+        checkInsertMapList(table.getName(), rowList);
+        List<Object> keyList = batchInsert(table, mapRowList(table, rowList), 0, false, true).getKeyList();
+        if (keyList.size() != rowList.size()) {
+            throw new RuntimeException("insert dynamic data: table(" + table.getName() + ") can't get generated key");
+        }
+        for (int i = 0; i < rowList.size(); i++) {
+            Map<String, Object> row = rowList.get(i);
+            if (QueryUtil.isNull(row.get(idColumn.getAlias()))) {
+                row.put(idColumn.getAlias(), keyList.get(i));
+            }
+        }
     }
 
     @Transactional
@@ -275,7 +805,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table tableInfo = tcInfo.findTable(table.trim());
+        Table tableInfo = getTcInfo().findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             throw new RuntimeException("insert: table(" + table + ") has no defined");
         }
@@ -318,7 +848,7 @@ public class TableColumnTemplate implements InitializingBean {
 
     @Transactional
     public int insertBatch(String table, List<Map<String, Object>> list) {
-        return insertBatch(table, list, 500);
+        return insertBatch(table, list, 0);
     }
 
     @Transactional
@@ -332,7 +862,35 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table tableInfo = tcInfo.findTable(table);
+        Table tableInfo = checkInsertMapList(table, list);
+        if (jdbcBatchInsert) {
+            return (int) batchInsert(tableInfo, mapRowList(tableInfo, list), singleCount, generateNullField, false).getCount();
+        }
+
+        int sampleSize = Math.min(list.size(), 100);
+        int rows = batchPlanner.rowsPerStatement(tableInfo, mapRowList(tableInfo, list.subList(0, sampleSize)), singleCount, true);
+        int flag = 0;
+        for (List<Map<String, Object>> lt : QueryUtil.split(list, rows)) {
+            StringBuilder printSql = new StringBuilder();
+            List<Object> params = new ArrayList<>();
+            String batchInsertSql = tableInfo.generateBatchInsertMap(lt, generateNullField, params, printSql);
+            if (QueryUtil.isNotEmpty(batchInsertSql)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("batch insert-map sql: [{}]", printSql);
+                }
+                long start = System.currentTimeMillis();
+                int update = jdbcTemplate.update(batchInsertSql, params.toArray());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("batch insert-map sql use time {} ms, change({})", (System.currentTimeMillis() - start), update);
+                }
+                flag += update;
+            }
+        }
+        return flag;
+    }
+
+    private Table checkInsertMapList(String table, List<Map<String, Object>> list) {
+        Table tableInfo = getTcInfo().findTable(table);
         if (QueryUtil.isNull(tableInfo)) {
             throw new RuntimeException("batch insert-map: table(" + table + ") has no defined");
         }
@@ -357,25 +915,29 @@ public class TableColumnTemplate implements InitializingBean {
                 throw new RuntimeException("batch insert-map: table(" + table + ") " + QueryUtil.toStr(columnMap) + " can't be null");
             }
         }
+        return tableInfo;
+    }
+    private List<Object[]> mapRowList(Table table, List<Map<String, Object>> list) {
+        List<Object[]> rowList = new ArrayList<>(list.size());
+        for (Map<String, Object> data : list) {
+            rowList.add(table.mapValues(data));
+        }
+        return rowList;
+    }
 
-        int flag = 0;
-        for (List<Map<String, Object>> lt : QueryUtil.split(list, singleCount)) {
-            StringBuilder printSql = new StringBuilder();
-            List<Object> params = new ArrayList<>();
-            String batchInsertSql = tableInfo.generateBatchInsertMap(lt, generateNullField, params, printSql);
-            if (QueryUtil.isNotEmpty(batchInsertSql)) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("batch insert-map sql: [{}]", printSql);
-                }
-                long start = System.currentTimeMillis();
-                int update = jdbcTemplate.update(batchInsertSql, params.toArray());
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("batch insert-map sql use time {} ms, change({})", (System.currentTimeMillis() - start), update);
-                }
-                flag += update;
-            }
+    /** 使用 jdbc 批量写入(单行的 INSERT 语句 + addBatch), 返回每一行的影响条数及驱动支持时数据库生成的主键 */
+    @Transactional
+    public BatchReturn insertBatchReturn(String table, List<Map<String, Object>> list) {
+        return insertBatchReturn(table, list, 0, false);
+    }
+
+    @Transactional
+    public BatchReturn insertBatchReturn(String table, List<Map<String, Object>> list, int singleCount, boolean generateNullField) {
+        if (QueryUtil.isEmpty(table) || QueryUtil.isEmpty(list)) {
+            return new BatchReturn();
         }
-        return flag;
+        Table tableInfo = checkInsertMapList(table, list);
+        return batchInsert(tableInfo, mapRowList(tableInfo, list), singleCount, generateNullField, true);
     }
 
     @Transactional
@@ -390,40 +952,30 @@ public class TableColumnTemplate implements InitializingBean {
         }
 
         Class<?> clazz = obj.getClass();
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             throw new RuntimeException("insert: table(" + clazz + ") has no defined");
         }
 
-        Set<String> needCheckFieldSet = new HashSet<>();
-        for (TableColumn tc : table.getColumnMap().values()) {
-            if (tc.isNotNull() && tc.notDefault()) {
-                needCheckFieldSet.add(tc.getFieldName());
-            }
-        }
-        if (QueryUtil.isNotEmpty(needCheckFieldSet)) {
+        // 字段值只读一次, 非空检查及生成 sql 都用这一份
+        Object[] values = table.fieldAccessor(clazz).read(obj);
+        List<Integer> needCheckIndexList = notNullIndex(table);
+        if (QueryUtil.isNotEmpty(needCheckIndexList)) {
             List<String> nullColumnList = new ArrayList<>();
-            List<String> errorList = new ArrayList<>();
-            for (String field : needCheckFieldSet) {
-                try {
-                    if (QueryUtil.isNull(QueryUtil.getFieldData(clazz, field, obj))) {
-                        nullColumnList.add(field);
-                    }
-                } catch (IllegalAccessException e) {
-                    errorList.add(field);
+            List<TableColumn> columnList = new ArrayList<>(table.getColumnMap().values());
+            for (Integer index : needCheckIndexList) {
+                if (QueryUtil.isNull(values[index])) {
+                    nullColumnList.add(columnList.get(index).getFieldName());
                 }
             }
             if (QueryUtil.isNotEmpty(nullColumnList)) {
                 throw new RuntimeException("insert: table(" + clazz + ") field" + QueryUtil.toStr(nullColumnList) + " can't be null");
             }
-            if (QueryUtil.isNotEmpty(errorList)) {
-                throw new RuntimeException("insert: table(" + clazz + ") get field" + QueryUtil.toStr(errorList) + " data error");
-            }
         }
 
         StringBuilder printSql = new StringBuilder();
         List<Object> params = new ArrayList<>();
-        String insertSql = table.generateInsert(obj, generateNullField, params, printSql);
+        String insertSql = table.generateInsertValues(values, generateNullField, params, printSql);
         if (QueryUtil.isEmpty(insertSql)) {
             return 0;
         }
@@ -441,7 +993,7 @@ public class TableColumnTemplate implements InitializingBean {
 
     @Transactional
     public <T> int insertBatch(List<T> list) {
-        return insertBatch(list, 500);
+        return insertBatch(list, 0);
     }
 
     @Transactional
@@ -455,60 +1007,309 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
+        Table table = getTcInfo().findTableByClass(list.get(0).getClass());
+        List<Object[]> rowList = readInsertList(table, list);
+        if (jdbcBatchInsert) {
+            return (int) batchInsert(table, rowList, singleCount, generateNullField, false).getCount();
+        }
+
+        int rows = batchPlanner.rowsPerStatement(table, rowList, singleCount, true);
+        int flag = 0;
+        for (List<Object[]> lt : QueryUtil.split(rowList, rows)) {
+            StringBuilder printSql = new StringBuilder();
+            List<Object> params = new ArrayList<>();
+            String batchInsertSql = table.generateBatchInsertValues(lt, generateNullField, params, printSql);
+            if (QueryUtil.isNotEmpty(batchInsertSql)) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("batch insert sql: [{}]", printSql);
+                }
+                long start = System.currentTimeMillis();
+                int update = jdbcTemplate.update(batchInsertSql, params.toArray());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("batch insert sql use time {} ms, change({})", (System.currentTimeMillis() - start), update);
+                }
+                flag += update;
+            }
+        }
+        return flag;
+    }
+    private <T> List<Object[]> readInsertList(Table table, List<T> list) {
         Class<?> clazz = list.get(0).getClass();
-        Table table = tcInfo.findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             throw new RuntimeException("batch insert: table(" + clazz + ") has no defined");
         }
 
-        Set<String> needCheckFieldSet = new HashSet<>();
-        for (TableColumn tc : table.getColumnMap().values()) {
-            if (tc.isNotNull() && tc.notDefault()) {
-                needCheckFieldSet.add(tc.getFieldName());
+        List<Object[]> rowList = table.fieldAccessor(clazz).readAll(list);
+        List<Integer> needCheckIndexList = notNullIndex(table);
+        if (QueryUtil.isNotEmpty(needCheckIndexList)) {
+            Map<Integer, List<String>> nullColumnMap = new LinkedHashMap<>();
+            List<TableColumn> columnList = new ArrayList<>(table.getColumnMap().values());
+            int size = rowList.size();
+            for (int i = 0; i < size; i++) {
+                Object[] values = rowList.get(i);
+                for (Integer index : needCheckIndexList) {
+                    if (QueryUtil.isNull(values[index])) {
+                        nullColumnMap.computeIfAbsent(i + 1, (k) -> new ArrayList<>()).add(columnList.get(index).getFieldName());
+                    }
+                }
+            }
+            if (QueryUtil.isNotEmpty(nullColumnMap)) {
+                throw new RuntimeException("batch insert: table(" + table + ") " + QueryUtil.toStr(nullColumnMap) + " can't be null");
             }
         }
-        if (QueryUtil.isNotEmpty(needCheckFieldSet)) {
-            Map<Integer, List<String>> nullColumnMap = new LinkedHashMap<>();
-            Map<Integer, List<String>> errorColumnMap = new LinkedHashMap<>();
-            int size = list.size();
-            for (String field : needCheckFieldSet) {
-                for (int i = 0; i < size; i++) {
-                    int index = i + 1;
-                    try {
-                        if (QueryUtil.isNull(QueryUtil.getFieldData(clazz, field, list.get(i)))) {
-                            nullColumnMap.computeIfAbsent(index, (k) -> new ArrayList<>()).add(field);
+        return rowList;
+    }
+
+    /** 使用 jdbc 批量写入(单行的 INSERT 语句 + addBatch), 返回每一行的影响条数及驱动支持时数据库生成的主键 */
+    @Transactional
+    public <T> BatchReturn insertBatchReturn(List<T> list) {
+        return insertBatchReturn(list, 0, false);
+    }
+
+    @Transactional
+    public <T> BatchReturn insertBatchReturn(List<T> list, int singleCount, boolean generateNullField) {
+        if (QueryUtil.isEmpty(list)) {
+            return new BatchReturn();
+        }
+        Table table = getTcInfo().findTableByClass(list.get(0).getClass());
+        return batchInsert(table, readInsertList(table, list), singleCount, generateNullField, true);
+    }
+
+    /**
+     * 批量写入, 主键(mysql 是任意唯一键)冲突时更新 updateColumns 里的列(列名、别名或字段名, 为空时更新写入的所有非主键列).
+     * mysql(mariadb) 使用 ON DUPLICATE KEY UPDATE, postgresql 使用 ON CONFLICT (主键) DO UPDATE.
+     * 返回数据库的影响条数(mysql 中更新的行算 2 条). postgresql 中主键一样的行只写入最后一行
+     */
+    @Transactional
+    public int upsertBatch(String table, List<Map<String, Object>> rows, Set<String> updateColumns) {
+        if (QueryUtil.isEmpty(table) || QueryUtil.isEmpty(rows)) {
+            return 0;
+        }
+        Table tableInfo = checkInsertMapList(table, rows);
+        return upsert(tableInfo, mapRowList(tableInfo, rows), updateColumns);
+    }
+
+    @Transactional
+    public <T> int upsertBatch(List<T> list, Set<String> updateColumns) {
+        if (QueryUtil.isEmpty(list)) {
+            return 0;
+        }
+        Table table = getTcInfo().findTableByClass(list.get(0).getClass());
+        return upsert(table, readInsertList(table, list), updateColumns);
+    }
+
+    private int upsert(Table table, List<Object[]> rowList, Set<String> updateColumns) {
+        boolean mysql = isMysql();
+        if (!mysql && !"postgresql".equalsIgnoreCase(dbDialect)) {
+            throw new RuntimeException("upsert: database(" + dbDialect + ") not support");
+        }
+        if (QueryUtil.isEmpty(table.getIdKey())) {
+            throw new RuntimeException("upsert: table(" + table.getName() + ") has no primary key");
+        }
+        table.checkDataLength(rowList);
+
+        BitSet updateSet;
+        if (QueryUtil.isEmpty(updateColumns)) {
+            updateSet = new BitSet();
+            updateSet.set(0, table.getColumnMap().size());
+        } else {
+            updateSet = table.columnSet(updateColumns);
+        }
+
+        int flag = 0;
+        int size = rowList.size();
+        int start = 0;
+        while (start < size) {
+            BitSet insertSet = table.insertColumnSet(rowList.get(start), false);
+            int end = start + 1;
+            while (end < size && insertSet.equals(table.insertColumnSet(rowList.get(end), false))) {
+                end++;
+            }
+            if (!insertSet.isEmpty()) {
+                List<Object[]> runList = rowList.subList(start, end);
+                if (!mysql) {
+                    // pg 的一条语句里同一个主键出现多次会报错(command cannot affect row a second time)
+                    runList = lastById(table, runList);
+                }
+                int rows = batchPlanner.rowsPerStatement(table, runList, 0, true);
+                for (List<Object[]> lt : QueryUtil.split(runList, rows)) {
+                    String sql = table.generateUpsert(insertSet, updateSet, lt.size(), mysql);
+                    List<Object> params = new ArrayList<>();
+                    for (Object[] row : lt) {
+                        for (int i = insertSet.nextSetBit(0); i >= 0; i = insertSet.nextSetBit(i + 1)) {
+                            params.add(row[i]);
                         }
-                    } catch (IllegalAccessException e) {
-                        errorColumnMap.computeIfAbsent(index, (k) -> new ArrayList<>()).add(field);
+                    }
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("upsert sql: [{}], rows({})", table.generateUpsert(insertSet, updateSet, 1, mysql), lt.size());
+                    }
+                    long startTime = System.currentTimeMillis();
+                    int update = jdbcTemplate.update(sql, params.toArray());
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("upsert sql use time {} ms, change({})", (System.currentTimeMillis() - startTime), update);
+                    }
+                    flag += update;
+                }
+            }
+            start = end;
+        }
+        return flag;
+    }
+
+    /** 主键一样的行只保留最后一行(跟逐条执行的结果一样), 主键有空值的行不处理 */
+    private List<Object[]> lastById(Table table, List<Object[]> rowList) {
+        int[] idIndex = table.idIndex();
+        Map<List<String>, Object[]> rowMap = new LinkedHashMap<>();
+        List<Object[]> noIdList = new ArrayList<>();
+        for (Object[] row : rowList) {
+            List<String> id = new ArrayList<>(idIndex.length);
+            for (int index : idIndex) {
+                if (QueryUtil.isNull(row[index])) {
+                    id = null;
+                    break;
+                }
+                id.add(QueryUtil.toStr(row[index]));
+            }
+            if (QueryUtil.isNull(id)) {
+                noIdList.add(row);
+            } else {
+                rowMap.remove(id);
+                rowMap.put(id, row);
+            }
+        }
+        if (rowMap.size() + noIdList.size() == rowList.size()) {
+            return rowList;
+        }
+        List<Object[]> returnList = new ArrayList<>(noIdList);
+        returnList.addAll(rowMap.values());
+        return returnList;
+    }
+
+    /**
+     * 相邻且要写入的列一样的行使用同一条单行的 INSERT 语句, 每次 executeBatch 的行数由 batchPlanner 计算.
+     * sql 的文本不随条数变化, 驱动及数据库端的预编译缓存可以命中
+     */
+    private BatchReturn batchInsert(Table table, List<Object[]> rowList, int singleCount,
+                                    boolean generateNullField, boolean needKey) {
+        table.checkDataLength(rowList);
+
+        BatchReturn batchReturn = new BatchReturn();
+        int size = rowList.size();
+        int start = 0;
+        while (start < size) {
+            BitSet columnSet = table.insertColumnSet(rowList.get(start), generateNullField);
+            int end = start + 1;
+            while (end < size && columnSet.equals(table.insertColumnSet(rowList.get(end), generateNullField))) {
+                end++;
+            }
+            String sql = table.generateSingleInsert(columnSet);
+            if (QueryUtil.isNotEmpty(sql)) {
+                int[] columnIndex = columnSet.stream().toArray();
+                List<Object[]> runList = rowList.subList(start, end);
+                int rows = batchPlanner.rowsPerStatement(table, runList, singleCount, false);
+                for (List<Object[]> lt : QueryUtil.split(runList, rows)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("batch insert sql: [{}], rows({})", sql, lt.size());
+                    }
+                    long startTime = System.currentTimeMillis();
+                    int[] counts = executeBatch(sql, lt, columnIndex, table.getIdKey(), needKey ? batchReturn.getKeyList() : null);
+                    long change = 0;
+                    for (int count : counts) {
+                        batchReturn.getRowCountList().add(count);
+                        change += (count == Statement.SUCCESS_NO_INFO) ? 1 : Math.max(count, 0);
+                    }
+                    batchReturn.setCount(batchReturn.getCount() + change);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("batch insert sql use time {} ms, change({})", (System.currentTimeMillis() - startTime), change);
                     }
                 }
             }
-            if (QueryUtil.isNotEmpty(nullColumnMap)) {
-                throw new RuntimeException("batch insert: table(" + table + ") " + QueryUtil.toStr(nullColumnMap) + " can't be null");
+            start = end;
+        }
+        return batchReturn;
+    }
+    private boolean hasRepeatId(List<Object[]> rowList, int[] idIndex) {
+        Set<List<String>> idSet = new HashSet<>();
+        for (Object[] row : rowList) {
+            List<String> id = new ArrayList<>(idIndex.length);
+            for (int index : idIndex) {
+                id.add(QueryUtil.toStr(row[index]));
             }
-            if (QueryUtil.isNotEmpty(errorColumnMap)) {
-                throw new RuntimeException("batch insert: table(" + table + ") get field " + QueryUtil.toStr(errorColumnMap) + " data error");
+            if (!idSet.add(id)) {
+                return true;
             }
         }
-
-        int flag = 0;
-        for (List<T> lt : QueryUtil.split(list, singleCount)) {
-            StringBuilder printSql = new StringBuilder();
-            List<Object> params = new ArrayList<>();
-            String batchInsertSql = table.generateBatchInsert(lt, generateNullField, params, printSql);
-            if (QueryUtil.isNotEmpty(batchInsertSql)) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("batch insert sql: [{}]", printSql);
+        return false;
+    }
+    private int[] executeBatch(String sql, List<Object[]> rowList, int[] columnIndex,
+                               List<String> idKey, List<Object> keyList) {
+        if (QueryUtil.isNull(keyList)) {
+            return jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setRowValues(ps, rowList.get(i), columnIndex);
                 }
-                long start = System.currentTimeMillis();
-                int update = jdbcTemplate.update(batchInsertSql, params.toArray());
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("batch insert sql use time {} ms, change({})", (System.currentTimeMillis() - start), update);
+                @Override
+                public int getBatchSize() {
+                    return rowList.size();
                 }
-                flag += update;
+            });
+        }
+
+        // 要返回生成的主键时 JdbcTemplate 的 batchUpdate 不支持, 直接使用连接.
+        // 指定主键列名: pg 的驱动对 RETURN_GENERATED_KEYS 是 RETURNING *, 第一列不一定是主键
+        String keyColumn = QueryUtil.isEmpty(idKey) ? null : idKey.get(0);
+        return jdbcTemplate.execute((Connection connection) -> {
+            try (PreparedStatement ps = QueryUtil.isNull(keyColumn)
+                    ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(sql, idKey.toArray(new String[0]))) {
+                int[] counts;
+                if (JdbcUtils.supportsBatchUpdates(connection)) {
+                    for (Object[] row : rowList) {
+                        setRowValues(ps, row, columnIndex);
+                        ps.addBatch();
+                    }
+                    counts = ps.executeBatch();
+                    readKey(ps, keyColumn, keyList);
+                } else {
+                    counts = new int[rowList.size()];
+                    for (int i = 0; i < counts.length; i++) {
+                        setRowValues(ps, rowList.get(i), columnIndex);
+                        counts[i] = ps.executeUpdate();
+                        readKey(ps, keyColumn, keyList);
+                    }
+                }
+                return counts;
             }
+        });
+    }
+    private void setRowValues(PreparedStatement ps, Object[] row, int[] columnIndex) throws SQLException {
+        for (int i = 0; i < columnIndex.length; i++) {
+            StatementCreatorUtils.setParameterValue(ps, i + 1, SqlTypeValue.TYPE_UNKNOWN, row[columnIndex[i]]);
         }
-        return flag;
+    }
+    /** 只返回一列时直接取(mysql 的列名是 GENERATED_KEY), 多列时按主键列名取 */
+    private void readKey(PreparedStatement ps, String keyColumn, List<Object> keyList) throws SQLException {
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            int index = (QueryUtil.isNull(keyColumn) || rs.getMetaData().getColumnCount() == 1) ? 1 : rs.findColumn(keyColumn);
+            while (rs.next()) {
+                keyList.add(rs.getObject(index));
+            }
+        } catch (SQLFeatureNotSupportedException ignore) {
+        }
+    }
+
+    /** 非空且没有默认值的列在 columnMap 中的下标 */
+    private List<Integer> notNullIndex(Table table) {
+        List<Integer> indexList = new ArrayList<>();
+        int index = 0;
+        for (TableColumn tc : table.getColumnMap().values()) {
+            if (tc.isNotNull() && tc.notDefault()) {
+                indexList.add(index);
+            }
+            index++;
+        }
+        return indexList;
     }
 
 
@@ -527,7 +1328,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table tableInfo = tcInfo.findTable(table.trim());
+        Table tableInfo = getTcInfo().findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("delete: has no table({}) defined", table);
@@ -550,7 +1351,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table tableInfo = tcInfo.findTable(table.trim());
+        Table tableInfo = getTcInfo().findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("delete: has no table({}) defined", table);
@@ -573,7 +1374,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table tableInfo = tcInfo.findTable(table.trim());
+        Table tableInfo = getTcInfo().findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("delete: has no table({}) defined", table);
@@ -596,7 +1397,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("delete: class({}) has no table defined", clazz.getName());
@@ -619,7 +1420,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("delete: class({}) has no table defined", clazz.getName());
@@ -642,7 +1443,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("delete: class({}) has no table defined", clazz.getName());
@@ -656,10 +1457,132 @@ public class TableColumnTemplate implements InitializingBean {
         return delete(clazz, query, false);
     }
 
+    /**
+     * <pre>
+     * 按条件分批删除: 按主键从小到大每次取一批满足条件的主键, 再用主键删除(有逻辑删除时是逻辑删除), 避免一条 sql 锁住大范围的数据.
+     * 每批是单独的一条 sql 自动提交, 不能在事务中调用. 表需要是单主键, 返回累计影响的行数
+     * </pre>
+     */
+    public long deleteInChunks(String table, ReqQuery query, ChunkOption option) {
+        return chunkWrite(table, query, option, false, (tableInfo, chunkQuery) -> doDelete(chunkQuery, tableInfo, false));
+    }
+
+    public long forceDeleteInChunks(String table, ReqQuery query, ChunkOption option) {
+        return chunkWrite(table, query, option, true, (tableInfo, chunkQuery) -> doDelete(chunkQuery, tableInfo, true));
+    }
+
+    /** 按条件分批更新, 规则同 deleteInChunks */
+    public long updateInChunks(String table, Map<String, Object> updateObj, ReqQuery query, ChunkOption option) {
+        if (QueryUtil.isEmpty(updateObj)) {
+            return 0;
+        }
+        return chunkWrite(table, query, option, false, (tableInfo, chunkQuery) -> update(tableInfo.getName(), updateObj, chunkQuery));
+    }
+
+    /** 按条件分批更新, 取主键时不加逻辑删除条件 */
+    public long forceUpdateInChunks(String table, Map<String, Object> updateObj, ReqQuery query, ChunkOption option) {
+        if (QueryUtil.isEmpty(updateObj)) {
+            return 0;
+        }
+        return chunkWrite(table, query, option, true, (tableInfo, chunkQuery) -> update(tableInfo.getName(), updateObj, chunkQuery));
+    }
+
+    private long chunkWrite(String table, ReqQuery query, ChunkOption option, boolean force,
+                            BiFunction<Table, ReqQuery, Integer> writer) {
+        if (QueryUtil.isEmpty(table) || QueryUtil.isNull(query) || QueryUtil.isEmpty(query.getConditions())) {
+            return 0;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new RuntimeException("chunk write: table(" + table + ") can't run in transaction, every chunk commit by itself");
+        }
+        TableColumnInfo tcInfo = getTcInfo();
+        Table tableInfo = tcInfo.findTable(table.trim());
+        if (QueryUtil.isNull(tableInfo)) {
+            throw new RuntimeException("chunk write: table(" + table + ") has no defined");
+        }
+        if (tableInfo.getIdKey().size() != 1) {
+            throw new RuntimeException("chunk write: table(" + table + ") need single primary key");
+        }
+
+        ChunkOption chunkOption = QueryUtil.isNull(option) ? new ChunkOption() : option;
+        int chunkSize = chunkOption.getChunkSize() > 0 ? chunkOption.getChunkSize() : Math.max(chunkWriteSize, 1);
+        String idColumn = tableInfo.getIdKey().get(0);
+        Object lastId = null;
+        long total = 0;
+        while (true) {
+            if (QueryUtil.isNotNull(lastId)) {
+                throttle(chunkOption);
+            }
+
+            // 原条件 AND id > 上一批最后的主键
+            List<Object> conditions = new ArrayList<>();
+            conditions.add(query);
+            if (QueryUtil.isNotNull(lastId)) {
+                conditions.add(Arrays.asList(idColumn, ConditionType.$GT, lastId));
+            }
+            List<Object> params = new ArrayList<>();
+            String idSql = tableInfo.generateIdChunkSelect(new ReqQuery(null, conditions), tcInfo, force, chunkSize, params);
+            if (QueryUtil.isEmpty(idSql)) {
+                return total;
+            }
+            List<Object> ids = jdbcTemplate.queryForList(idSql, Object.class, params.toArray());
+            if (QueryUtil.isEmpty(ids)) {
+                return total;
+            }
+            lastId = ids.get(ids.size() - 1);
+
+            List<Object> chunkConditions = new ArrayList<>();
+            chunkConditions.add(query);
+            chunkConditions.add(Arrays.asList(idColumn, ConditionType.$IN, ids));
+            int flag = writer.apply(tableInfo, new ReqQuery(null, chunkConditions));
+            total += flag;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("chunk write table({}) ids({}) change({}) total({})", table, ids.size(), flag, total);
+            }
+            if (QueryUtil.isNotNull(chunkOption.getProgress())) {
+                chunkOption.getProgress().accept(flag, total);
+            }
+            if (ids.size() < chunkSize) {
+                return total;
+            }
+        }
+    }
+    private void throttle(ChunkOption option) {
+        try {
+            if (option.getSleepMs() > 0) {
+                Thread.sleep(option.getSleepMs());
+            }
+            if (QueryUtil.isNotNull(option.getReplicationLag()) && option.getMaxLagMs() > 0) {
+                long wait = Math.max(option.getSleepMs(), 100);
+                long start = System.currentTimeMillis();
+                long lag;
+                while ((lag = replicationLag(option)) > option.getMaxLagMs()) {
+                    long waited = System.currentTimeMillis() - start;
+                    if (waited >= option.getMaxLagWaitMs()) {
+                        throw new RuntimeException(String.format("chunk write: replication lag(%d ms) still over %d ms after wait %d ms",
+                                lag, option.getMaxLagMs(), waited));
+                    }
+                    Thread.sleep(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("chunk write interrupted", e);
+        }
+    }
+
+    private long replicationLag(ChunkOption option) {
+        try {
+            return option.getReplicationLag().getAsLong();
+        } catch (RuntimeException e) {
+            throw new RuntimeException("chunk write: get replication lag exception, stop", e);
+        }
+    }
+
     private int doDelete(ReqQuery query, Table table, boolean force) {
         StringBuilder printSql = new StringBuilder();
         List<Object> params = new ArrayList<>();
-        String deleteSql = table.generateDelete(query, tcInfo, params, printSql, force);
+        String deleteSql = table.generateDelete(query, getTcInfo(), params, printSql, force);
         if (QueryUtil.isEmpty(deleteSql)) {
             return 0;
         }
@@ -688,7 +1611,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table tableInfo = tcInfo.findTable(table.trim());
+        Table tableInfo = getTcInfo().findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("update-map: has no table({}) defined", table);
@@ -704,7 +1627,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table tableInfo = tcInfo.findTable(table.trim());
+        Table tableInfo = getTcInfo().findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("update-map: has no table({}) defined", table);
@@ -725,6 +1648,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
+        TableColumnInfo tcInfo = getTcInfo();
         Table tableInfo = tcInfo.findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
@@ -758,7 +1682,7 @@ public class TableColumnTemplate implements InitializingBean {
         }
 
         Class<?> clazz = updateObj.getClass();
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("update: class({}) has no table defined", clazz.getName());
@@ -775,7 +1699,7 @@ public class TableColumnTemplate implements InitializingBean {
         }
 
         Class<?> clazz = updateObj.getClass();
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("update: class({}) has no table defined", clazz.getName());
@@ -797,6 +1721,7 @@ public class TableColumnTemplate implements InitializingBean {
         }
 
         Class<?> clazz = updateObj.getClass();
+        TableColumnInfo tcInfo = getTcInfo();
         Table table = tcInfo.findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
@@ -824,11 +1749,184 @@ public class TableColumnTemplate implements InitializingBean {
     }
 
 
+    /** 每一行按各自的主键更新成各自的值, 行里需要有主键, 返回的每一行影响条数跟传入的顺序一致 */
+    @Transactional
+    public BatchReturn updateBatchById(String table, List<Map<String, Object>> rows) {
+        return updateBatchById(table, rows, false);
+    }
+
+    @Transactional
+    public BatchReturn updateBatchById(String table, List<Map<String, Object>> rows, boolean generateNullField) {
+        if (QueryUtil.isEmpty(table) || QueryUtil.isEmpty(rows)) {
+            return new BatchReturn();
+        }
+
+        Table tableInfo = getTcInfo().findTable(table.trim());
+        if (QueryUtil.isNull(tableInfo)) {
+            throw new RuntimeException("batch update-map: table(" + table + ") has no defined");
+        }
+        return batchUpdateById(tableInfo, mapRowList(tableInfo, rows), generateNullField, null);
+    }
+
+    @Transactional
+    public <T> BatchReturn updateBatchById(List<T> list) {
+        return updateBatchById(list, false);
+    }
+
+    @Transactional
+    public <T> BatchReturn updateBatchById(List<T> list, boolean generateNullField) {
+        if (QueryUtil.isEmpty(list)) {
+            return new BatchReturn();
+        }
+
+        Class<?> clazz = list.get(0).getClass();
+        Table table = getTcInfo().findTableByClass(clazz);
+        if (QueryUtil.isNull(table)) {
+            throw new RuntimeException("batch update: table(" + clazz + ") has no defined");
+        }
+        TableFieldAccessor accessor = table.fieldAccessor(clazz);
+        // 类里没有的字段不更新
+        BitSet fieldSet = new BitSet();
+        for (int i = 0; i < table.getColumnMap().size(); i++) {
+            if (accessor.hasField(i)) {
+                fieldSet.set(i);
+            }
+        }
+        return batchUpdateById(table, accessor.readAll(list), generateNullField, fieldSet);
+    }
+
+    /**
+     * 按要更新的列分组(有重复 id 时只把相邻且要更新的列一样的行分成一组, 跟逐条执行的结果一样),
+     * 组里的行数不少于 batch-update-case-rows 且是单主键的 mysql 时使用一条 UPDATE ... CASE id WHEN ... END,
+     * 否则使用 jdbc 批量(UPDATE ... WHERE id = ?). CASE 方式只能拿到总的影响条数, 这些行的影响条数是 -2(SUCCESS_NO_INFO)
+     */
+    private BatchReturn batchUpdateById(Table table, List<Object[]> rowList, boolean generateNullField, BitSet fieldSet) {
+        if (QueryUtil.isEmpty(table.getIdKey())) {
+            throw new RuntimeException("batch update: table(" + table.getName() + ") has no primary key");
+        }
+        table.checkDataLength(rowList);
+
+        int[] idIndex = table.idIndex();
+        List<BitSet> columnSetList = new ArrayList<>(rowList.size());
+        List<Integer> noIdList = new ArrayList<>();
+        for (int i = 0; i < rowList.size(); i++) {
+            Object[] row = rowList.get(i);
+            for (int index : idIndex) {
+                if (QueryUtil.isNull(row[index])) {
+                    noIdList.add(i + 1);
+                    break;
+                }
+            }
+            BitSet columnSet = table.updateColumnSet(row, generateNullField);
+            if (QueryUtil.isNotNull(fieldSet)) {
+                columnSet.and(fieldSet);
+            }
+            columnSetList.add(columnSet);
+        }
+        if (QueryUtil.isNotEmpty(noIdList)) {
+            throw new RuntimeException("batch update: table(" + table.getName() + ") " + QueryUtil.toStr(noIdList) + " has no id");
+        }
+
+        // 同一个 id 在不同的组里时按组执行会打乱顺序, 这时只合并相邻的行
+        boolean adjacent = hasRepeatId(rowList, idIndex);
+        List<Map.Entry<BitSet, List<Integer>>> entryList = new ArrayList<>();
+        Map<BitSet, List<Integer>> groupMap = new LinkedHashMap<>();
+        for (int i = 0; i < columnSetList.size(); i++) {
+            BitSet columnSet = columnSetList.get(i);
+            if (adjacent) {
+                int last = entryList.size() - 1;
+                if (last >= 0 && entryList.get(last).getKey().equals(columnSet)) {
+                    entryList.get(last).getValue().add(i);
+                } else {
+                    entryList.add(new AbstractMap.SimpleEntry<>(columnSet, new ArrayList<>(Collections.singletonList(i))));
+                }
+            } else {
+                groupMap.computeIfAbsent(columnSet, (k) -> new ArrayList<>()).add(i);
+            }
+        }
+        if (!adjacent) {
+            entryList.addAll(groupMap.entrySet());
+        }
+
+        int[] rowCounts = new int[rowList.size()];
+        long count = 0;
+        boolean canCase = batchUpdateCaseRows > 0 && idIndex.length == 1 && isMysql();
+        for (Map.Entry<BitSet, List<Integer>> entry : entryList) {
+            BitSet columnSet = entry.getKey();
+            List<Integer> indexList = entry.getValue();
+            if (columnSet.isEmpty()) {
+                continue;
+            }
+            List<Object[]> groupList = new ArrayList<>(indexList.size());
+            for (Integer index : indexList) {
+                groupList.add(rowList.get(index));
+            }
+
+            // 同一个 id 出现多次时 CASE 是第一个生效, jdbc 批量是最后一个生效, 这样的组使用 jdbc 批量
+            if (canCase && groupList.size() >= batchUpdateCaseRows && !hasRepeatId(groupList, idIndex)) {
+                // 每行的占位符: 每个更新的列 2 个(WHEN ? THEN ?) + IN 里的 1 个
+                int rows = Math.min(batchPlanner.rowsPerStatement(table, groupList, 0, true),
+                        Math.max(65535 / (columnSet.cardinality() * 2 + 1), 1));
+                int offset = 0;
+                for (List<Object[]> lt : QueryUtil.split(groupList, rows)) {
+                    List<Object> params = new ArrayList<>();
+                    String sql = table.generateCaseUpdateById(columnSet, lt, params);
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("batch update sql: [{}], rows({})", sql, lt.size());
+                    }
+                    long start = System.currentTimeMillis();
+                    int update = jdbcTemplate.update(sql, params.toArray());
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("batch update sql use time {} ms, change({})", (System.currentTimeMillis() - start), update);
+                    }
+                    count += update;
+                    for (int i = 0; i < lt.size(); i++) {
+                        rowCounts[indexList.get(offset + i)] = Statement.SUCCESS_NO_INFO;
+                    }
+                    offset += lt.size();
+                }
+            } else {
+                String sql = table.generateBatchUpdateById(columnSet);
+                int[] setIndex = columnSet.stream().toArray();
+                int[] columnIndex = Arrays.copyOf(setIndex, setIndex.length + idIndex.length);
+                System.arraycopy(idIndex, 0, columnIndex, setIndex.length, idIndex.length);
+
+                int rows = batchPlanner.rowsPerStatement(table, groupList, 0, false);
+                int offset = 0;
+                for (List<Object[]> lt : QueryUtil.split(groupList, rows)) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("batch update sql: [{}], rows({})", sql, lt.size());
+                    }
+                    long start = System.currentTimeMillis();
+                    int[] counts = executeBatch(sql, lt, columnIndex, null, null);
+                    long change = 0;
+                    for (int i = 0; i < counts.length; i++) {
+                        rowCounts[indexList.get(offset + i)] = counts[i];
+                        change += (counts[i] == Statement.SUCCESS_NO_INFO) ? 1 : Math.max(counts[i], 0);
+                    }
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("batch update sql use time {} ms, change({})", (System.currentTimeMillis() - start), change);
+                    }
+                    count += change;
+                    offset += lt.size();
+                }
+            }
+        }
+
+        BatchReturn batchReturn = new BatchReturn();
+        batchReturn.setCount(count);
+        for (int rowCount : rowCounts) {
+            batchReturn.getRowCountList().add(rowCount);
+        }
+        return batchReturn;
+    }
+
+
     public long forceQueryCount(QueryData req) {
         return queryCount(req, true);
     }
     private long queryCount(QueryData req, boolean force) {
-        Map<String, Object> data = QueryJsonUtil.convertData(dynamicQuery(req.toQueryCount(tcInfo), force));
+        Map<String, Object> data = QueryJsonUtil.convertData(dynamicQuery(req.toQueryCount(getTcInfo()), force));
         return QueryUtil.isEmpty(data) ? 0L : QueryUtil.toLong(data.get(QueryConst.COUNT_ALIAS));
     }
     private long queryCount(QueryData req) {
@@ -839,7 +1937,7 @@ public class TableColumnTemplate implements InitializingBean {
         return query(req, clazz, true);
     }
     private <T> List<T> query(QueryData req, Class<T> clazz, boolean force) {
-        return QueryJsonUtil.convertList(dynamicQuery(req.toQueryList(tcInfo), force), clazz);
+        return queryBeanList(req.toQueryList(getTcInfo()), clazz, force);
     }
     public <T> List<T> query(QueryData req, Class<T> clazz) {
         return query(req, clazz, false);
@@ -849,7 +1947,7 @@ public class TableColumnTemplate implements InitializingBean {
         return queryOne(req, clazz, true);
     }
     private <T> T queryOne(QueryData req, Class<T> clazz, boolean force) {
-        return QueryJsonUtil.convert(dynamicQuery(req.toQueryObj(tcInfo), force), clazz);
+        return queryBean(req.toQueryObj(getTcInfo()), clazz, force);
     }
     public <T> T queryOne(QueryData req, Class<T> clazz) {
         return queryOne(req, clazz, false);
@@ -859,7 +1957,10 @@ public class TableColumnTemplate implements InitializingBean {
         return queryPage(req, clazz, true);
     }
     private <T> PageReturn<T> queryPage(QueryData req, Class<T> clazz, boolean force) {
-        return QueryJsonUtil.convertType(dynamicQuery(req.toQueryPage(tcInfo), force), new TypeReference<PageReturn<T>>() {});
+        TableColumnInfo tcInfo = getTcInfo();
+        ReqInfo reqInfo = req.toQueryPage(tcInfo);
+        Table table = tcInfo.findTable(reqInfo.getTable());
+        return toPageReturn(dynamicQuery(reqInfo, force, true), list -> QueryBeanMapper.mapList(clazz, table, list));
     }
     public <T> PageReturn<T> queryPage(QueryData req, Class<T> clazz) {
         return queryPage(req, clazz, false);
@@ -867,11 +1968,38 @@ public class TableColumnTemplate implements InitializingBean {
 
 
 
+    /** 查询出来的数据(不转字符串也不格式化日期)直接映射成对象, 不经过 json 转换 */
+    private <T> List<T> queryBeanList(ReqInfo req, Class<T> clazz, boolean force) {
+        List<Map<String, Object>> dataList = (List<Map<String, Object>>) dynamicQuery(req, force, true);
+        return QueryBeanMapper.mapList(clazz, getTcInfo().findTable(req.getTable()), dataList);
+    }
+    private <T> T queryBean(ReqInfo req, Class<T> clazz, boolean force) {
+        Map<String, Object> data = (Map<String, Object>) dynamicQuery(req, force, true);
+        return QueryBeanMapper.mapOne(clazz, getTcInfo().findTable(req.getTable()), data);
+    }
+    /** 分页查询的结果: { "count": .., "list": [ ... ] } 或 { "hasMore": .., "list": [ ... ] }, 不查总条数时直接是 [ ... ] */
+    private <T> PageReturn<T> toPageReturn(Object obj, Function<List<Map<String, Object>>, List<T>> mapper) {
+        PageReturn<T> pageReturn = new PageReturn<>();
+        if (obj instanceof List<?>) {
+            pageReturn.setList(mapper.apply((List<Map<String, Object>>) obj));
+        } else if (obj instanceof Map<?, ?>) {
+            Map<String, Object> pageInfo = (Map<String, Object>) obj;
+            pageReturn.setCount(QueryUtil.toLong(pageInfo.get("count")));
+            List<Map<String, Object>> list = (List<Map<String, Object>>) pageInfo.get("list");
+            pageReturn.setList(QueryUtil.isEmpty(list) ? new ArrayList<>() : mapper.apply(list));
+            if (pageInfo.containsKey("hasMore")) {
+                pageReturn.setHasMore(QueryUtil.toBool(pageInfo.get("hasMore")));
+            }
+        }
+        return pageReturn;
+    }
+
+
     public List<Map<String, Object>> forceQuery(QueryData req) {
         return query(req, true);
     }
     private List<Map<String, Object>> query(QueryData req, boolean force) {
-        return QueryJsonUtil.convertDataList(dynamicQuery(req.toQueryList(tcInfo), force));
+        return QueryJsonUtil.convertDataList(dynamicQuery(req.toQueryList(getTcInfo()), force));
     }
     public List<Map<String, Object>> query(QueryData req) {
         return query(req, false);
@@ -881,7 +2009,7 @@ public class TableColumnTemplate implements InitializingBean {
         return queryOne(req, false);
     }
     private Map<String, Object> queryOne(QueryData req, boolean force) {
-        return QueryJsonUtil.convertData(dynamicQuery(req.toQueryObj(tcInfo), force));
+        return QueryJsonUtil.convertData(dynamicQuery(req.toQueryObj(getTcInfo()), force));
     }
     public Map<String, Object> queryOne(QueryData req) {
         return queryOne(req, true);
@@ -891,7 +2019,7 @@ public class TableColumnTemplate implements InitializingBean {
         return queryPage(req, true);
     }
     private PageReturn<Map<String, Object>> queryPage(QueryData req, boolean force) {
-        return QueryJsonUtil.convertType(dynamicQuery(req.toQueryPage(tcInfo), force), new TypeReference<PageReturn<Map<String, Object>>>() {});
+        return toPageReturn(dynamicQuery(req.toQueryPage(getTcInfo()), force), list -> list);
     }
     public PageReturn<Map<String, Object>> queryPage(QueryData req) {
         return queryPage(req, false);
@@ -906,7 +2034,7 @@ public class TableColumnTemplate implements InitializingBean {
             return Collections.emptyMap();
         }
 
-        Table tableInfo = tcInfo.findTable(table.trim());
+        Table tableInfo = getTcInfo().findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("query-id: has no table({}) defined", table);
@@ -933,7 +2061,7 @@ public class TableColumnTemplate implements InitializingBean {
             return Collections.emptyList();
         }
 
-        Table tableInfo = tcInfo.findTable(table.trim());
+        Table tableInfo = getTcInfo().findTable(table.trim());
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("query-ids: has no table({}) defined", table);
@@ -957,7 +2085,7 @@ public class TableColumnTemplate implements InitializingBean {
             return null;
         }
 
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("query-id: class({}) has no table defined", clazz.getName());
@@ -967,7 +2095,7 @@ public class TableColumnTemplate implements InitializingBean {
 
         ReqQuery query = ReqQuery.buildId(table.idWhere(false), id);
         ReqInfo req = new ReqInfo(table.getAlias(), new ReqParam(query), ResultType.OBJ, null);
-        return QueryJsonUtil.convert(dynamicQuery(req, force), clazz);
+        return queryBean(req, clazz, force);
     }
     public <T> T queryById(Class<T> clazz, Serializable id) {
         return queryById(clazz, id, false);
@@ -981,7 +2109,7 @@ public class TableColumnTemplate implements InitializingBean {
             return Collections.emptyList();
         }
 
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("query-ids: class({}) no table defined", clazz.getName());
@@ -991,7 +2119,7 @@ public class TableColumnTemplate implements InitializingBean {
 
         ReqQuery query = ReqQuery.buildIds(table.idWhere(false), ids);
         ReqInfo req = new ReqInfo(table.getAlias(), new ReqParam(query), null, null);
-        return QueryJsonUtil.convertList(dynamicQuery(req, force), clazz);
+        return queryBeanList(req, clazz, force);
     }
     public <T> List<T> queryByIds(Class<T> clazz, List<Serializable> ids) {
         return queryByIds(clazz, ids, false);
@@ -1006,7 +2134,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table tableInfo = tcInfo.findTable(table);
+        Table tableInfo = getTcInfo().findTable(table);
         if (QueryUtil.isNull(tableInfo)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("query-count: has no table({}) defined", table);
@@ -1039,7 +2167,7 @@ public class TableColumnTemplate implements InitializingBean {
             return 0;
         }
 
-        Table table = tcInfo.findTableByClass(clazz);
+        Table table = getTcInfo().findTableByClass(clazz);
         if (QueryUtil.isNull(table)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("query: class({}) has no table defined", clazz.getName());
@@ -1062,7 +2190,7 @@ public class TableColumnTemplate implements InitializingBean {
             return null;
         }
 
-        ReqInfo reqInfo = req.handleAlias(alias, queryAliasMap);
+        ReqInfo reqInfo = req.handleCompiledAlias(alias, compiledAliasMap);
         if (QueryUtil.isNull(reqInfo)) {
             if (LOG.isInfoEnabled()) {
                 LOG.info("alias({} + {}) parse to null", alias, QueryJsonUtil.toJson(req));
@@ -1089,31 +2217,20 @@ public class TableColumnTemplate implements InitializingBean {
         return dynamicQuery(req, false);
     }
     private Object dynamicQuery(ReqInfo req, boolean force) {
+        return dynamicQuery(req, force, false);
+    }
+    /** raw 为 true 时查询出来的数据不转字符串也不格式化日期, 用来直接映射成对象 */
+    private Object dynamicQuery(ReqInfo req, boolean force, boolean raw) {
         if (QueryUtil.isNull(req)) {
             return null;
         }
 
-        req.checkTable(tcInfo);
-
-        Set<String> paramTableSet = req.checkParam(notRequiredConditionOrPage, tcInfo, maxListCount);
-        req.checkResult(tcInfo, force);
-        Set<TableJoinRelation> useRelationSet = req.checkRelation(tcInfo, paramTableSet);
-        Set<String> useTableSet = calcTableSet(useRelationSet);
-        req.checkAllTable(tcInfo, useTableSet, paramTableSet);
-
-        String mainTable = req.getTable();
+        // 形态一样的请求只在第一次时校验及生成 sql, 之后只需要校验并绑定条件上的值
+        String shape = req.generateShape(force) + (raw ? "|raw" : "");
+        TableColumnInfo tcInfo = getTcInfo();
+        QueryPlan plan = planCache.get(tcInfo.getVersion(), shape, () -> compilePlan(tcInfo, req, force, raw));
         ReqParam param = req.getParam();
-        ReqResult result = req.getResult();
-        boolean needAlias = QueryUtil.isNotEmpty(useTableSet);
-
-        String fromSql = QuerySqlUtil.toFromSql(tcInfo, mainTable, useRelationSet);
-        List<Object> params = new ArrayList<>();
-        StringBuilder wherePrintSbd = new StringBuilder();
-        String whereSql = param.generateWhereSql(mainTable, tcInfo, needAlias, params, useTableSet, force, wherePrintSbd);
-        String fromAndWhere = fromSql + whereSql;
-        String wherePrint = wherePrintSbd.toString();
-        String fromAndWherePrint = fromSql + wherePrint;
-        boolean hasDistinct = queryHasDistinct(useRelationSet) && QueryUtil.toBool(result.isDistinct());
+        List<Object> params = plan.bindWhere(param, maxListCount);
 
         /*
         plus sign indicate branch
@@ -1134,6 +2251,12 @@ public class TableColumnTemplate implements InitializingBean {
               + query no deep page
                 > SELECT ... FROM ... WHERE ... ORDER BY ... LIMIT x, x
 
+        + query cursor page (no count, no offset)
+          > SELECT ..., sort-columns, id FROM ... WHERE ( ... ) AND ( seek on last row ) ORDER BY sort-columns, id LIMIT x
+
+        + query page (has more, exclusive count)
+          > SELECT ... FROM ... WHERE ... GROUP BY ... HAVING ... ORDER BY ... LIMIT x, (x + 1)
+
         + query page (exclusive count)
           > SELECT ... FROM ... WHERE ... GROUP BY ... HAVING ... ORDER BY ... LIMIT x, x
 
@@ -1146,21 +2269,42 @@ public class TableColumnTemplate implements InitializingBean {
         return data after assembly
         */
 
-        if (param.needQueryPage()) {
-            if (param.needQueryCount()) {
-                return queryCountPage(fromSql, whereSql, wherePrint, mainTable, param, result, needAlias, hasDistinct, params, force);
+        if (param.needCursorPage()) {
+            return queryCursorPage(plan, param, params, force);
+        } else if (param.needQueryPage()) {
+            if (param.needQueryHasMore()) {
+                return queryHasMorePage(plan, param, params, force);
+            } else if (param.needQueryCount()) {
+                return queryCountPage(plan, param, params, force);
             } else {
-                return queryNoCountPage(fromAndWhere, fromAndWherePrint, mainTable, param, result, needAlias, hasDistinct, params, force);
+                return queryNoCountPage(plan, param, params, force);
             }
         } else {
             if (req.getType() == ResultType.OBJ) {
-                return queryObj(fromAndWhere, fromAndWherePrint, mainTable, param, result, needAlias, hasDistinct, params, force);
+                return queryObj(plan, param, params, force);
             } else {
-                return queryList(fromAndWhere, fromAndWherePrint, mainTable, param, result, needAlias, hasDistinct, params, force);
+                return queryList(plan, params, force);
             }
         }
     }
 
+    private QueryPlan compilePlan(TableColumnInfo tcInfo, ReqInfo req, boolean force, boolean raw) {
+        req.checkTable(tcInfo);
+
+        Set<String> paramTableSet = req.checkParam(notRequiredConditionOrPage, tcInfo, maxListCount);
+        req.checkResult(tcInfo, force);
+        Set<TableJoinRelation> useRelationSet = req.checkRelation(tcInfo, paramTableSet);
+        Set<String> useTableSet = calcTableSet(useRelationSet);
+        req.checkAllTable(tcInfo, useTableSet, paramTableSet);
+
+        boolean hasDistinct = queryHasDistinct(tcInfo, useRelationSet) && QueryUtil.toBool(req.getResult().isDistinct());
+        return new QueryPlan(tcInfo, req, useRelationSet, useTableSet, hasDistinct, force, raw);
+    }
+
+    public QueryPlanCache getPlanCache() {
+        return planCache;
+    }
+
     private Set<String> calcTableSet(Set<TableJoinRelation> relationSet) {
         Set<String> tableSet = new HashSet<>();
         if (QueryUtil.isNotEmpty(relationSet)) {
@@ -1171,7 +2315,7 @@ public class TableColumnTemplate implements InitializingBean {
         }
         return tableSet;
     }
-    private boolean queryHasDistinct(Set<TableJoinRelation> paramRelationSet) {
+    private boolean queryHasDistinct(TableColumnInfo tcInfo, Set<TableJoinRelation> paramRelationSet) {
         if (QueryUtil.isNotEmpty(paramRelationSet)) {
             for (TableJoinRelation joinRelation : paramRelationSet) {
                 String masterTableName = joinRelation.getMasterTable().getName();
@@ -1185,40 +2329,24 @@ public class TableColumnTemplate implements InitializingBean {
         return false;
     }
 
-    private Map<String, Object> queryCountPage(String fromSql, String whereSql, String wherePrint, String mainTable,
-                                               ReqParam param, ReqResult result, boolean needAlias,
-                                               boolean hasDistinct, List<Object> params, boolean force) {
-        String fromAndWhere = fromSql + whereSql;
-        String fromAndWherePrint = fromSql + wherePrint;
+    private Map<String, Object> queryCountPage(QueryPlan plan, ReqParam param, List<Object> params, boolean force) {
+        if (plan.isNeedGroup()) {
+            // SELECT COUNT(*) FROM ( SELECT ... FROM ... WHERE ... GROUP BY ... HAVING ... ) tmp
+            params.addAll(plan.getHavingParams());
+        }
+        // else: SELECT COUNT(DISTINCT id) FROM ... WHERE ...
         long count;
         List<Map<String, Object>> pageList;
-        StringBuilder countPrintSql = new StringBuilder();
-        StringBuilder printSql = new StringBuilder();
-        if (result.needGroup()) {
-            // SELECT a.xx, b.yy, COUNT(*) cnt, MAX(a.xxx) max_xxx  FROM a inner join b on ...
-            // WHERE ...  GROUP BY a.xx, b.yy  HAVING cnt > 1 AND max_xxx > 10
-            String selectGroupSql = QuerySqlUtil.toSelectGroupSql(tcInfo, fromAndWhere,
-                    fromAndWherePrint, mainTable, result, needAlias, force, hasDistinct, params, printSql);
-            // SELECT COUNT(*) FROM ( ^^^ SELECT FROM WHERE GROUP BY HAVING ^^^ ) tmp
-            String selectGroupCountSql = QuerySqlUtil.toCountGroupSql(selectGroupSql, printSql.toString(), countPrintSql);
-            count = queryCount(selectGroupCountSql, params, countPrintSql);
-            if (param.needQueryCurrentPage(count)) {
-                // ^^^ SELECT FROM WHERE GROUP BY HAVING ^^^ ORDER BY ... LIMIT ..
-                pageList = queryPageListWithGroup(selectGroupSql, mainTable, needAlias, param, result, params, force, printSql);
-            } else {
-                pageList = Collections.emptyList();
-            }
+        if (parallelCountPage && queryExecutor.canParallel()) {
+            // count 跟 limit 同时查, 都返回后再看是否需要当前页的数据
+            List<Object> countParams = new ArrayList<>(params);
+            Future<Long> countFuture = queryExecutor.submit(() -> queryCount(plan.getCountSql(), countParams));
+            List<Map<String, Object>> list = queryPageList(plan, param, params, force);
+            count = QueryExecutor.get(countFuture);
+            pageList = param.needQueryCurrentPage(count) ? list : Collections.emptyList();
         } else {
-            // SELECT COUNT(DISTINCT id) FROM ... WHERE ...
-            String selectCountSql = QuerySqlUtil.toCountWithoutGroupSql(tcInfo, fromAndWhere,
-                    fromAndWherePrint, mainTable, needAlias, hasDistinct, countPrintSql);
-            count = queryCount(selectCountSql, params, countPrintSql);
-            if (param.needQueryCurrentPage(count)) {
-                pageList = queryLimitList(fromSql, whereSql, wherePrint, mainTable, param, result, needAlias,
-                        hasDistinct, params, force, printSql);
-            } else {
-                pageList = Collections.emptyList();
-            }
+            count = queryCount(plan.getCountSql(), params);
+            pageList = param.needQueryCurrentPage(count) ? queryPageList(plan, param, params, force) : Collections.emptyList();
         }
         Map<String, Object> pageInfo = new LinkedHashMap<>();
         pageInfo.put("count", count);
@@ -1228,9 +2356,48 @@ public class TableColumnTemplate implements InitializingBean {
         return pageInfo;
     }
 
-    private long queryCount(String countSql, List<Object> params, StringBuilder printSql) {
+    private Map<String, Object> queryCursorPage(QueryPlan plan, ReqParam param, List<Object> params, boolean force) {
+        plan.bindCursor(param, params);
+        int limit = param.calcLimit();
+        params.add(limit);
+        List<Map<String, Object>> pageList = assemblyResult(plan, plan.getCursorPageSql() + " LIMIT ?", params, force);
+
+        // 查满一页时用最后一行的排序列及主键生成下一页的 cursor, 不满一页说明没有下一页了
+        List<String> cursorAliasList = plan.getCursorAliasList();
+        String cursor = null;
+        if (pageList.size() >= limit) {
+            Map<String, Object> last = pageList.get(pageList.size() - 1);
+            List<Object> values = new ArrayList<>();
+            for (String alias : cursorAliasList) {
+                Object value = last.get(alias);
+                if (QueryUtil.isNull(value)) {
+                    throw new RuntimeException("param: cursor page need sort column not null");
+                }
+                values.add(value);
+            }
+            cursor = QueryCursor.encode(values);
+        }
+        for (Map<String, Object> data : pageList) {
+            cursorAliasList.forEach(data::remove);
+        }
+        Map<String, Object> pageInfo = new LinkedHashMap<>();
+        pageInfo.put("list", pageList);
+        pageInfo.put("cursor", cursor);
+        return pageInfo;
+    }
+
+    private List<Map<String, Object>> queryPageList(QueryPlan plan, ReqParam param, List<Object> params, boolean force) {
+        if (plan.isNeedGroup()) {
+            // SELECT ... FROM ... WHERE ... GROUP BY ... HAVING ... ORDER BY ... LIMIT ..
+            return queryPageListWithGroup(plan, param, params, force);
+        } else {
+            return queryLimitList(plan, param, params, force);
+        }
+    }
+
+    private long queryCount(String countSql, List<Object> params) {
         if (LOG.isDebugEnabled()) {
-            LOG.debug("query count sql: [{}]", printSql);
+            LOG.debug("query count sql: [{}]", QuerySqlUtil.toPrintSql(countSql, params));
         }
         long start = System.currentTimeMillis();
         Long count = jdbcTemplate.queryForObject(countSql, Long.class, params.toArray());
@@ -1240,19 +2407,14 @@ public class TableColumnTemplate implements InitializingBean {
         return QueryUtil.isNull(count) ? 0L : count;
     }
 
-    private List<Map<String, Object>> queryLimitList(String fromSql, String whereSql, String wherePrint, String mainTable,
-                                                     ReqParam param, ReqResult result, boolean needAlias, boolean hasDistinct,
-                                                     List<Object> params, boolean force, StringBuilder printSql) {
-        String fromAndWhere = fromSql + whereSql;
-        String fromAndWherePrint = fromSql + wherePrint;
+    private List<Map<String, Object>> queryLimitList(QueryPlan plan, ReqParam param, List<Object> params, boolean force) {
         String sql;
         // deep paging(need offset a lot of result), use 「where + order + limit」 to query id, then use id to query specific columns
         if (param.hasDeepPage(deepMaxPageSize)) {
             // SELECT id FROM ... WHERE .?. ORDER BY ... LIMIT ...
-            String idPageSql = QuerySqlUtil.toIdPageSql(tcInfo, fromAndWhere,
-                    fromAndWherePrint, mainTable, needAlias, param, params, hasDistinct, printSql);
+            String idPageSql = plan.getIdPageSql() + param.generatePageSql(params);
             if (LOG.isDebugEnabled()) {
-                LOG.debug("query condition sql: [{}]", printSql);
+                LOG.debug("query condition sql: [{}]", QuerySqlUtil.toPrintSql(idPageSql, params));
             }
             long start = System.currentTimeMillis();
             List<Map<String, Object>> idList = jdbcTemplate.queryForList(idPageSql, params.toArray());
@@ -1262,76 +2424,65 @@ public class TableColumnTemplate implements InitializingBean {
 
             // SELECT ... FROM .?. WHERE id IN (...)
             params.clear();
-            printSql.setLength(0);
-            sql = QuerySqlUtil.toSelectWithIdSql(tcInfo, mainTable, fromSql, result, idList, needAlias, force, params, printSql);
+            List<String> idKey = plan.getTcInfo().findTable(plan.getMainTable()).getIdKey();
+            sql = QuerySqlUtil.toSelectWithIdSql(plan.getSelectWithIdSql(), idKey, idList, params);
         } else {
             // SELECT ... FROM ... WHERE ... ORDER BY ... limit ...
-            sql = QuerySqlUtil.toPageSql(tcInfo, fromAndWhere, fromAndWherePrint, mainTable,
-                    param, result, needAlias, force, params, hasDistinct, printSql);
+            sql = QueryUtil.isEmpty(plan.getPageSql()) ? "" : (plan.getPageSql() + param.generatePageSql(params));
         }
-        return QueryUtil.isEmpty(sql) ? null : assemblyResult(sql, needAlias, params, mainTable, result, force, printSql);
+        return QueryUtil.isEmpty(sql) ? null : assemblyResult(plan, sql, params, force);
     }
 
-    private List<Map<String, Object>> queryPageListWithGroup(String selectGroupSql, String mainTable,
-                                                             boolean needAlias, ReqParam param, ReqResult result,
-                                                             List<Object> params, boolean force, StringBuilder printSql) {
-        String orderSql = param.generateOrderSql(mainTable, needAlias, tcInfo);
-        printSql.append(orderSql);
-        String sql = selectGroupSql + orderSql + param.generatePageSql(params, printSql);
-        return assemblyResult(sql, needAlias, params, mainTable, result, force, printSql);
+    private List<Map<String, Object>> queryPageListWithGroup(QueryPlan plan, ReqParam param,
+                                                             List<Object> params, boolean force) {
+        String sql = plan.getSelectGroupSql() + plan.getOrderSql() + param.generatePageSql(params);
+        return assemblyResult(plan, sql, params, force);
     }
 
-    private List<Map<String, Object>> queryNoCountPage(String fromAndWhere, String fromAndWherePrint, String mainTable,
-                                                       ReqParam param, ReqResult result, boolean needAlias,
-                                                       boolean hasDistinct, List<Object> params, boolean force) {
-        StringBuilder printSql = new StringBuilder();
-        String selectGroupSql = QuerySqlUtil.toSelectGroupSql(tcInfo, fromAndWhere,
-                fromAndWherePrint, mainTable, result, needAlias, force, hasDistinct, params, printSql);
-        String orderSql = param.generateOrderSql(mainTable, needAlias, tcInfo);
-        printSql.append(orderSql);
-        String sql = selectGroupSql + orderSql + param.generatePageSql(params, printSql);
-        return assemblyResult(sql, needAlias, params, mainTable, result, force, printSql);
+    private List<Map<String, Object>> queryNoCountPage(QueryPlan plan, ReqParam param, List<Object> params, boolean force) {
+        params.addAll(plan.getHavingParams());
+        String sql = plan.getSelectGroupSql() + plan.getOrderSql() + param.generatePageSql(params);
+        return assemblyResult(plan, sql, params, force);
     }
 
-    private List<Map<String, Object>> queryList(String fromAndWhere, String fromAndWherePrint, String mainTable,
-                                                ReqParam param, ReqResult result, boolean needAlias,
-                                                boolean hasDistinct, List<Object> params, boolean force) {
-        StringBuilder printSql = new StringBuilder();
-        String selectGroupSql = QuerySqlUtil.toSelectGroupSql(tcInfo, fromAndWhere,
-                fromAndWherePrint, mainTable, result, needAlias, force, hasDistinct, params, printSql);
-        String orderSql = param.generateOrderSql(mainTable, needAlias, tcInfo);
-        String sql = selectGroupSql + orderSql;
-        return assemblyResult(sql, needAlias, params, mainTable, result, force, printSql);
+    private Map<String, Object> queryHasMorePage(QueryPlan plan, ReqParam param, List<Object> params, boolean force) {
+        params.addAll(plan.getHavingParams());
+        String sql = plan.getSelectGroupSql() + plan.getOrderSql() + param.generateMorePageSql(params);
+        List<Map<String, Object>> pageList = assemblyResult(plan, sql, params, force);
+        int limit = param.calcLimit();
+        boolean hasMore = pageList.size() > limit;
+        Map<String, Object> pageInfo = new LinkedHashMap<>();
+        pageInfo.put("hasMore", hasMore);
+        pageInfo.put("list", hasMore ? new ArrayList<>(pageList.subList(0, limit)) : pageList);
+        return pageInfo;
     }
 
-    private Map<String, Object> queryObj(String fromAndWhere, String fromAndWherePrint, String mainTable,
-                                         ReqParam param, ReqResult result, boolean needAlias,
-                                         boolean hasDistinct, List<Object> params, boolean force) {
-        StringBuilder printSql = new StringBuilder();
-        String selectGroupSql = QuerySqlUtil.toSelectGroupSql(tcInfo, fromAndWhere, fromAndWherePrint,
-                mainTable, result, needAlias, force, hasDistinct, params, printSql);
-        String orderSql = param.generateOrderSql(mainTable, needAlias, tcInfo);
-        String sql = selectGroupSql + orderSql + param.generateArrToObjSql(params, printSql);
-        Map<String, Object> obj = QueryUtil.first(assemblyResult(sql, needAlias, params, mainTable, result, force, printSql));
+    private List<Map<String, Object>> queryList(QueryPlan plan, List<Object> params, boolean force) {
+        params.addAll(plan.getHavingParams());
+        String sql = plan.getSelectGroupSql() + plan.getOrderSql();
+        return assemblyResult(plan, sql, params, force);
+    }
+
+    private Map<String, Object> queryObj(QueryPlan plan, ReqParam param, List<Object> params, boolean force) {
+        params.addAll(plan.getHavingParams());
+        String sql = plan.getSelectGroupSql() + plan.getOrderSql() + param.generateArrToObjSql(params);
+        Map<String, Object> obj = QueryUtil.first(assemblyResult(plan, sql, params, force));
         return QueryUtil.isNull(obj) ? Collections.emptyMap() : obj;
     }
 
-    private List<Map<String, Object>> assemblyResult(String mainSql, boolean needAlias, List<Object> params,
-                                                     String mainTable, ReqResult result, boolean force,
-                                                     StringBuilder printSql) {
+    private List<Map<String, Object>> assemblyResult(QueryPlan plan, String mainSql, List<Object> params, boolean force) {
         if (LOG.isInfoEnabled()) {
-            LOG.info("sql: [{}]", printSql);
+            LOG.info("sql: [{}]", QuerySqlUtil.toPrintSql(mainSql, params));
         }
         long start = System.currentTimeMillis();
-        List<Map<String, Object>> dataList = jdbcTemplate.queryForList(mainSql, params.toArray());
+        List<Map<String, Object>> dataList = jdbcTemplate.query(mainSql, plan.newRowMapper(), params.toArray());
         if (LOG.isDebugEnabled()) {
             LOG.debug("sql use time {} ms, size({})", (System.currentTimeMillis() - start), dataList.size());
         }
         if (QueryUtil.isNotEmpty(dataList)) {
-            String mainTableName = tcInfo.findTable(mainTable).getName();
-            handleData(dataList, needAlias, mainTableName, result, force);
+            handleInnerData(plan.getTcInfo(), dataList, plan.getMainTableName(), plan.getResult(), force, plan.isRaw());
 
-            Set<String> removeColumn = result.needRemoveColumn(mainTableName, tcInfo, needAlias, force);
+            Set<String> removeColumn = plan.getRemoveColumn();
             for (Map<String, Object> data : dataList) {
                 removeColumn.forEach(data::remove);
             }
@@ -1339,22 +2490,40 @@ public class TableColumnTemplate implements InitializingBean {
         return dataList;
     }
 
-    private void handleData(List<Map<String, Object>> dataList, boolean needAlias,
-                            String mainTableName, ReqResult result, boolean force) {
-        for (Map<String, Object> data : dataList) {
-            result.handleData(mainTableName, needAlias, data, tcInfo, force);
-        }
+    /** 每一行的数据已经在读取时处理过了, 这里只处理出参里的子表 */
+    private void handleInnerData(TableColumnInfo tcInfo, List<Map<String, Object>> dataList, String mainTableName,
+                                 ReqResult result, boolean force, boolean raw) {
         // order_address.order_id : order.id    +    order_item.code : order.code
         Map<String, ReqResult> innerResultMap = result.innerResult(tcInfo, force);
         if (QueryUtil.isNotEmpty(innerResultMap)) {
+            // 先生成所有子表的 sql, 所有子表的所有 IN 分批一起查询, 查完之后再按原来的顺序组装
+            List<InnerQuery> innerQueryList = new ArrayList<>();
+            List<Supplier<List<Map<String, Object>>>> taskList = new ArrayList<>();
+            for (Map.Entry<String, ReqResult> entry : innerResultMap.entrySet()) {
+                InnerQuery innerQuery = prepareInnerQuery(tcInfo, entry.getKey(), mainTableName, entry.getValue(), force, raw, dataList);
+                if (QueryUtil.isNotNull(innerQuery)) {
+                    innerQueryList.add(innerQuery);
+                    taskList.addAll(innerQuery.taskList);
+                }
+            }
+            List<List<Map<String, Object>>> taskResultList = queryInnerTask(taskList);
+
             // { address : id, items : code }
             Map<String, String> innerColumnMap = new LinkedHashMap<>();
             //  { address : { id1 : { ... },  id2 : { ... } }, items : { code1 : [ ... ], code2 : [ ... ] } }
             Map<String, Map<String, Object>> innerDataMap = new HashMap<>();
-            for (Map.Entry<String, ReqResult> entry : innerResultMap.entrySet()) {
-                String fieldName = entry.getKey();
+            int taskIndex = 0;
+            for (InnerQuery innerQuery : innerQueryList) {
+                List<Map<String, Object>> mapList = new ArrayList<>();
+                for (int i = 0; i < innerQuery.taskList.size(); i++) {
+                    List<Map<String, Object>> idList = taskResultList.get(taskIndex++);
+                    if (QueryUtil.isNotEmpty(idList)) {
+                        mapList.addAll(idList);
+                    }
+                }
+                String fieldName = innerQuery.fieldName;
                 // { id : { id1 : { ... },  id2 : { ... } } }    or    { code : { code1 : [ ... ], code2 : [ ... ] } }
-                Map<String, Map<String, Object>> valueMap = queryInnerData(mainTableName, entry.getValue(), force, dataList);
+                Map<String, Map<String, Object>> valueMap = assemblyInnerData(tcInfo, innerQuery, mapList, force, raw);
                 if (QueryUtil.isNotEmpty(valueMap)) {
                     for (Map.Entry<String, Map<String, Object>> valueEntry : valueMap.entrySet()) {
                         innerColumnMap.put(fieldName, valueEntry.getKey());
@@ -1384,8 +2553,20 @@ public class TableColumnTemplate implements InitializingBean {
         }
     }
 
-    private Map<String, Map<String, Object>> queryInnerData(String tableName, ReqResult result, boolean force,
-                                                            List<Map<String, Object>> dataList) {
+    /** 开启了并行查询子表且当前线程不在事务中时, 并行查询(单个请求同时使用的连接数有上限), 否则依次查询. 返回的顺序跟任务的顺序一致 */
+    private List<List<Map<String, Object>>> queryInnerTask(List<Supplier<List<Map<String, Object>>>> taskList) {
+        if (parallelRelation) {
+            return queryExecutor.invokeAll(taskList, relationParallelism);
+        }
+        List<List<Map<String, Object>>> returnList = new ArrayList<>();
+        for (Supplier<List<Map<String, Object>>> task : taskList) {
+            returnList.add(task.get());
+        }
+        return returnList;
+    }
+
+    private InnerQuery prepareInnerQuery(TableColumnInfo tcInfo, String fieldName, String tableName, ReqResult result, boolean force, boolean raw,
+                                         List<Map<String, Object>> dataList) {
         String innerTable = result.getTable();
         // master-child
         boolean masterChild = true;
@@ -1396,52 +2577,93 @@ public class TableColumnTemplate implements InitializingBean {
             relation = tcInfo.findRelationByMasterChild(innerTable, tableName);
         }
         if (QueryUtil.isNull(relation)) {
-            return Collections.emptyMap();
+            return null;
         }
 
         TableColumn tableColumn = tcInfo.findTableColumn(relation.getOneTable(), relation.getOneColumn());
         String tableColumnAlias = tableColumn.getAlias();
-        List<Object> relationIds = new ArrayList<>();
-        for (Map<String, Object> data : dataList) {
-            relationIds.add(data.get(tableColumnAlias));
-        }
+        List<Object> relationIds = collectRelationIds(dataList, tableColumnAlias);
         if (QueryUtil.isEmpty(relationIds)) {
             if (LOG.isWarnEnabled()) {
                 LOG.warn("data({}) no column({}) info", dataList, tableColumnAlias);
             }
-            return Collections.emptyMap();
+            return null;
         }
 
         boolean needAlias = false;
-        List<Map<String, Object>> mapList = new ArrayList<>();
         String relationColumn = QuerySqlUtil.toSqlField(tableColumn.getName());
         Set<String> removeColumn = new HashSet<>();
         String selectColumn = result.generateInnerSelect(relationColumn, tcInfo, removeColumn, force);
         Table tableInfo = tcInfo.findTable(innerTable);
         String table = QuerySqlUtil.toSqlField(tableInfo.getName());
         String logicDelete = tableInfo.logicDeleteCondition(force, needAlias);
-        List<Object> params = new ArrayList<>();
-        for (List<Object> ids : QueryUtil.split(relationIds, maxListCount)) {
-            params.clear();
+        // 规则只编译一次, 每个分批任务(可能并行)各自 new 一个 QueryRowMapper
+        Map<String, QueryRowMapper.Rule> ruleMap = QueryRowMapper.compile(result, innerTable, needAlias, tcInfo, force, raw);
+        List<List<Object>> idsList = QueryUtil.split(relationIds, maxListCount);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("query inner table({}) rows({}) distinct relation keys/params({}) chunks({})",
+                    innerTable, dataList.size(), relationIds.size(), idsList.size());
+        }
+        List<Supplier<List<Map<String, Object>>>> taskList = new ArrayList<>();
+        for (List<Object> ids : idsList) {
+            List<Object> params = new ArrayList<>();
             StringBuilder printSql = new StringBuilder();
             String innerSql = QuerySqlUtil.toInnerSql(selectColumn, table, relationColumn, ids, params, printSql, logicDelete);
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("query inner sql: [{}]", printSql);
-            }
-            long start = System.currentTimeMillis();
-            List<Map<String, Object>> idList = jdbcTemplate.queryForList(innerSql, params.toArray());
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("query inner sql use time {} ms, size({})", (System.currentTimeMillis() - start), idList.size());
-            }
-            if (QueryUtil.isNotEmpty(idList)) {
-                mapList.addAll(idList);
+            taskList.add(() -> {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("query inner sql: [{}]", printSql);
+                }
+                long start = System.currentTimeMillis();
+                List<Map<String, Object>> idList = jdbcTemplate.query(innerSql, new QueryRowMapper(ruleMap), params.toArray());
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("query inner sql use time {} ms, size({})", (System.currentTimeMillis() - start), idList.size());
+                }
+                return idList;
+            });
+        }
+        return new InnerQuery(fieldName, result, relation, masterChild, tableColumn, removeColumn, taskList);
+    }
+
+    /**
+     * 收集关联的值: 去掉 null 并去重, 值的类型都一样且可以比较时排序(让 IN 查询走索引时的范围更集中), 之后再分批.
+     * 多对一时(比如 5000 条订单项只关联了 300 个商品)只需要 300 个占位符
+     */
+    private List<Object> collectRelationIds(List<Map<String, Object>> dataList, String column) {
+        Set<Object> idSet = new HashSet<>();
+        List<Object> relationIds = new ArrayList<>();
+        Class<?> keyClass = null;
+        boolean sortable = true;
+        for (Map<String, Object> data : dataList) {
+            Object id = data.get(column);
+            if (QueryUtil.isNotNull(id) && idSet.add(id)) {
+                relationIds.add(id);
+                if (sortable) {
+                    if (!(id instanceof Comparable<?>) || (QueryUtil.isNotNull(keyClass) && keyClass != id.getClass())) {
+                        sortable = false;
+                    } else {
+                        keyClass = id.getClass();
+                    }
+                }
             }
         }
+        if (sortable && relationIds.size() > 1) {
+            relationIds.sort((o1, o2) -> ((Comparable<Object>) o1).compareTo(o2));
+        }
+        return relationIds;
+    }
+
+    private Map<String, Map<String, Object>> assemblyInnerData(TableColumnInfo tcInfo, InnerQuery innerQuery, List<Map<String, Object>> mapList,
+                                                               boolean force, boolean raw) {
         if (QueryUtil.isEmpty(mapList)) {
             return Collections.emptyMap();
         }
+        ReqResult result = innerQuery.result;
+        TableColumnRelation relation = innerQuery.relation;
+        boolean masterChild = innerQuery.masterChild;
+        TableColumn tableColumn = innerQuery.tableColumn;
+        Set<String> removeColumn = innerQuery.removeColumn;
 
-        handleData(mapList, needAlias, innerTable, result, force);
+        handleInnerData(tcInfo, mapList, result.getTable(), result, force, raw);
         // { id1 : { ... },  id2 : { ... } }    or    { code1 : [ ... ], code2 : [ ... ] }
         Map<String, Object> innerDataMap = new HashMap<>();
         TableRelationType relationType = relation.getType();
@@ -1494,4 +2716,42 @@ public class TableColumnTemplate implements InitializingBean {
         returnMap.put(tableColumn.getAlias(), innerDataMap);
         return returnMap;
     }
+
+    /** 动态写入时的一行数据: 所属的表, 跟父行的关系及子行 */
+    private static class InsertNode {
+        private final Table table;
+        private final InsertNode parent;
+        /** 跟主表的关联关系, 顶层的行是 null */
+        private final TableColumnRelation relation;
+        private final Map<String, Object> data = new LinkedHashMap<>();
+        private final List<InsertNode> childList = new ArrayList<>();
+
+        private InsertNode(Table table, InsertNode parent, TableColumnRelation relation) {
+            this.table = table;
+            this.parent = parent;
+            this.relation = relation;
+        }
+    }
+
+    /** 一个子表的查询: 每一个 IN 分批是一个任务 */
+    private static class InnerQuery {
+        private final String fieldName;
+        private final ReqResult result;
+        private final TableColumnRelation relation;
+        private final boolean masterChild;
+        private final TableColumn tableColumn;
+        private final Set<String> removeColumn;
+        private final List<Supplier<List<Map<String, Object>>>> taskList;
+
+        private InnerQuery(String fieldName, ReqResult result, TableColumnRelation relation, boolean masterChild,
+                           TableColumn tableColumn, Set<String> removeColumn, List<Supplier<List<Map<String, Object>>>> taskList) {
+            this.fieldName = fieldName;
+            this.result = result;
+            this.relation = relation;
+            this.masterChild = masterChild;
+            this.tableColumn = tableColumn;
+            this.removeColumn = removeColumn;
+            this.taskList = taskList;
+        }
+    }
 }
@@ -225,6 +225,122 @@ public enum ConditionType {
         checkValue(type, column, value, strLen, maxListCount);
     }
 
+    /**
+     * 值在生成 sql 时的形态(跟 generateSql 保持一致), 形态一样则生成的 sql 一样, 只是占位符上的值不同
+     *
+     * is null / is not null : 跟值无关
+     * in / not in           : 非空值的个数向上取到 inBucket 的大小, 不够的占位符用最后一个值补齐
+     * between / not between : 开始和结束是否有值
+     * like                  : 跟值无关
+     * 其他                   : 值是否为空
+     */
+    public String valueShape(Object value) {
+        if (this == $NU || this == $NN) {
+            return "";
+        } else if (MULTI_TYPE_SET.contains(this)) {
+            if (!(value instanceof Collection<?>)) {
+                return "0";
+            }
+            Collection<?> c = (Collection<?>) value;
+            if (QueryUtil.isEmpty(c)) {
+                return "0";
+            }
+            if (this == $BET || this == $NBE) {
+                Object[] arr = c.toArray();
+                boolean hasStart = QueryUtil.isNotNull(arr[0]);
+                boolean hasEnd = arr.length > 1 && QueryUtil.isNotNull(arr[1]);
+                return (hasStart ? "s" : "") + (hasEnd ? "e" : "");
+            } else {
+                int count = 0;
+                for (Object obj : c) {
+                    if (QueryUtil.isNotNull(obj)) {
+                        count++;
+                    }
+                }
+                return String.valueOf(inBucket(count));
+            }
+        } else if (LIKE_TYPE_SET.contains(this)) {
+            return "1";
+        } else {
+            return QueryUtil.isNull(value) ? "0" : "1";
+        }
+    }
+
+    /**
+     * IN 的占位符个数: 8 个及以内是实际个数, 超过时向上取到 2 的幂(16 32 64 ...),
+     * 长度不固定的 IN 只会生成少量不同的 sql, 执行计划的缓存不会被撑满
+     */
+    public static int inBucket(int count) {
+        if (count <= 8) {
+            return count;
+        }
+        return Integer.highestOneBit(count - 1) << 1;
+    }
+
+    /** 只转换并绑定占位符上的值(跟 generateSql 里面添加到 params 的值保持一致), 不生成 sql */
+    public void bindValue(Class<?> type, Object value, List<Object> params) {
+        switch (this) {
+            case $NU:
+            case $NN: {
+                return;
+            }
+            case $IN:
+            case $NI: {
+                if (value instanceof Collection<?>) {
+                    Object last = null;
+                    int count = 0;
+                    for (Object obj : (Collection<?>) value) {
+                        if (QueryUtil.isNotNull(obj)) {
+                            last = QuerySqlUtil.toValue(type, obj);
+                            params.add(last);
+                            count++;
+                        }
+                    }
+                    for (int i = count; i < inBucket(count); i++) {
+                        params.add(last);
+                    }
+                }
+                return;
+            }
+            case $BET:
+            case $NBE: {
+                if (value instanceof Collection<?>) {
+                    Collection<?> c = (Collection<?>) value;
+                    if (QueryUtil.isNotEmpty(c)) {
+                        Object[] arr = c.toArray();
+                        if (QueryUtil.isNotNull(arr[0])) {
+                            params.add(QuerySqlUtil.toValue(type, arr[0]));
+                        }
+                        if (arr.length > 1 && QueryUtil.isNotNull(arr[1])) {
+                            params.add(QuerySqlUtil.toValue(type, arr[1]));
+                        }
+                    }
+                }
+                return;
+            }
+            case $FUZZY:
+            case $NFUZZY: {
+                params.add(QuerySqlUtil.toValue(type, "%" + value + "%"));
+                return;
+            }
+            case $START:
+            case $NSTART: {
+                params.add(QuerySqlUtil.toValue(type, value + "%"));
+                return;
+            }
+            case $END:
+            case $NEND: {
+                params.add(QuerySqlUtil.toValue(type, "%" + value));
+                return;
+            }
+            default: {
+                if (QueryUtil.isNotNull(value)) {
+                    params.add(QuerySqlUtil.toValue(type, value));
+                }
+            }
+        }
+    }
+
 
     protected String generateCondition(String column, StringBuilder printSql) {
         String sqlField = QuerySqlUtil.toSqlField(column);
@@ -280,16 +396,25 @@ public enum ConditionType {
             boolean hasChange = false;
             StringJoiner sj = new StringJoiner(", ");
             StringJoiner printSj = new StringJoiner(", ");
+            Object last = null;
+            int count = 0;
             for (Object obj : c) {
                 if (QueryUtil.isNotNull(obj)) {
                     if (!hasChange) {
                         hasChange = true;
                     }
-                    params.add(QuerySqlUtil.toValue(type, obj));
+                    last = QuerySqlUtil.toValue(type, obj);
+                    params.add(last);
                     printSj.add(QuerySqlUtil.toPrintValue(type, obj));
                     sj.add("?");
+                    count++;
                 }
             }
+            // 补齐到 inBucket 的个数, 重复的值不影响 IN 和 NOT IN 的结果
+            for (int i = count; i < inBucket(count); i++) {
+                params.add(last);
+                sj.add("?");
+            }
             if (hasChange) {
                 printSql.append(String.format("%s %s (%s)", column, getValue(), printSj));
                 return String.format("%s %s (%s)", column, getValue(), sj);
@@ -307,6 +432,15 @@ public enum ConditionType {
             $NBE
     ));
 
+    private static final Set<ConditionType> LIKE_TYPE_SET = new HashSet<>(Arrays.asList(
+            $FUZZY,
+            $NFUZZY,
+            $START,
+            $NSTART,
+            $END,
+            $NEND
+    ));
+
     /**
      * string:
      *   为空(nu)
@@ -424,7 +558,7 @@ public enum ConditionType {
             QueryUtil.toStr(OTHER_TYPE_SET, ConditionType::info));
 
 
-    private void checkType(Class<?> type, String column) {
+    public void checkType(Class<?> type, String column) {
         if (Number.class.isAssignableFrom(type)) {
             if (!NUMBER_TYPE_SET.contains(this)) {
                 throw new RuntimeException(column + ": " + NUMBER_TYPE_INFO);
@@ -0,0 +1,62 @@
+package com.github.liuanxin.query.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/** 批量写入(更新)的返回: 每一行的影响条数, 以及驱动支持时数据库生成的主键 */
+public class BatchReturn implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** 总的影响条数, 驱动只返回成功但不返回条数(SUCCESS_NO_INFO)的行算 1 条 */
+    private long count;
+    /** 跟写入的数据顺序一致, 驱动不返回条数或多行合在一条 sql 里执行时是 -2 */
+    private List<Integer> rowCountList = new ArrayList<>();
+    /** 数据库生成的主键, 跟写入的数据顺序一致, 驱动不支持时为空 */
+    private List<Object> keyList = new ArrayList<>();
+
+    public long getCount() {
+        return count;
+    }
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public List<Integer> getRowCountList() {
+        return rowCountList;
+    }
+    public void setRowCountList(List<Integer> rowCountList) {
+        this.rowCountList = rowCountList;
+    }
+
+    public List<Object> getKeyList() {
+        return keyList;
+    }
+    public void setKeyList(List<Object> keyList) {
+        this.keyList = keyList;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BatchReturn that = (BatchReturn) o;
+        return count == that.count && Objects.equals(rowCountList, that.rowCountList) && Objects.equals(keyList, that.keyList);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(count, rowCountList, keyList);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchReturn{" +
+                "count=" + count +
+                ", rowCountList=" + rowCountList +
+                ", keyList=" + keyList +
+                '}';
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.liuanxin.query.model;
+
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/** 按条件分批删除(更新)时的选项 */
+public class ChunkOption {
+
+    /** 每批的行数, &lt;= 0 时使用配置的 query.chunk-write-size */
+    private int chunkSize;
+    /** 每批之间休眠的毫秒数 */
+    private long sleepMs;
+    /** 获取从库复制延迟的毫秒数, 每批之前调用, 超过 maxLagMs 时等待直到延迟降下来 */
+    private LongSupplier replicationLag;
+    /** 允许的最大复制延迟毫秒数 */
+    private long maxLagMs;
+    /** 每批之前等待复制延迟降下来的最大毫秒数, 超过时抛出异常结束, 默认是 10 分钟 */
+    private long maxLagWaitMs = 600000;
+    /** 每批完成后回调: (当前批影响的行数, 累计影响的行数) */
+    private BiConsumer<Integer, Long> progress;
+
+    public ChunkOption() {}
+    public ChunkOption(int chunkSize, long sleepMs) {
+        this.chunkSize = chunkSize;
+        this.sleepMs = sleepMs;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public long getSleepMs() {
+        return sleepMs;
+    }
+    public void setSleepMs(long sleepMs) {
+        this.sleepMs = sleepMs;
+    }
+
+    public LongSupplier getReplicationLag() {
+        return replicationLag;
+    }
+    public void setReplicationLag(LongSupplier replicationLag) {
+        this.replicationLag = replicationLag;
+    }
+
+    public long getMaxLagMs() {
+        return maxLagMs;
+    }
+    public void setMaxLagMs(long maxLagMs) {
+        this.maxLagMs = maxLagMs;
+    }
+
+    public long getMaxLagWaitMs() {
+        return maxLagWaitMs;
+    }
+    public void setMaxLagWaitMs(long maxLagWaitMs) {
+        this.maxLagWaitMs = maxLagWaitMs;
+    }
+
+    public BiConsumer<Integer, Long> getProgress() {
+        return progress;
+    }
+    public void setProgress(BiConsumer<Integer, Long> progress) {
+        this.progress = progress;
+    }
+
+
+    @Override
+    public String toString() {
+        return "ChunkOption{" +
+                "chunkSize=" + chunkSize +
+                ", sleepMs=" + sleepMs +
+                ", maxLagMs=" + maxLagMs +
+                ", maxLagWaitMs=" + maxLagWaitMs +
+                '}';
+    }
+}
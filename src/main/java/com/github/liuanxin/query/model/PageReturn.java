@@ -14,6 +14,8 @@ public class PageReturn<T> implements Serializable {
 
     private long count;
     private List<T> list;
+    /** 分页时不查总条数而是多查 1 条来判断是否还有下一页时才有值 */
+    private Boolean hasMore;
 
     public PageReturn() {}
     public PageReturn(long count, List<T> list) {
@@ -35,6 +37,13 @@ public class PageReturn<T> implements Serializable {
         this.list = list;
     }
 
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
 
     public static <T> PageReturn<T> page(long count, int index, int limit, Supplier<List<T>> supplier) {
         if (count == 0) {
@@ -53,12 +62,12 @@ public class PageReturn<T> implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         PageReturn<?> that = (PageReturn<?>) o;
-        return count == that.count && Objects.equals(list, that.list);
+        return count == that.count && Objects.equals(list, that.list) && Objects.equals(hasMore, that.hasMore);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(count, list);
+        return Objects.hash(count, list, hasMore);
     }
 
     @Override
@@ -66,6 +75,7 @@ public class PageReturn<T> implements Serializable {
         return "PageReturn{" +
                 "count=" + count +
                 ", list=" + list +
+                ", hasMore=" + hasMore +
                 '}';
     }
 }
@@ -23,6 +23,7 @@ public class QueryData implements Serializable {
     private final Map<String, List<Object>> havingMap;
     private final Map<String, String> sortMap;
     private final List<Integer> pageList;
+    private boolean hasMore;
 
     private QueryData() {
         relationSet = new LinkedHashSet<>();
@@ -44,6 +45,7 @@ public class QueryData implements Serializable {
         havingMap.clear();
         sortMap.clear();
         pageList.clear();
+        hasMore = false;
     }
 
     public QueryData setTable(String table) {
@@ -235,6 +237,12 @@ public class QueryData implements Serializable {
         return this;
     }
 
+    /** 分页时不查总条数, 多查 1 条来判断是否还有下一页 */
+    public QueryData withMorePage(int page, int limit) {
+        hasMore = true;
+        return withPage(page, limit);
+    }
+
     private String toTableAlias(TableColumnInfo tcInfo) {
         if (QueryUtil.isNull(clazz) && QueryUtil.isEmpty(table)) {
             throw new RuntimeException("need table info");
@@ -309,6 +317,9 @@ public class QueryData implements Serializable {
 
     public ReqInfo toQueryPage(TableColumnInfo tcInfo) {
         ReqParam param = new ReqParam(query, sortMap, toRelation(tcInfo), pageList);
+        if (hasMore) {
+            param.setHasMore(true);
+        }
         return new ReqInfo(toTableAlias(tcInfo), param, ResultType.ARR, toResult());
     }
 
@@ -27,6 +27,8 @@ public class ReqAlias implements Serializable {
     private Map<String, String> sort;
     /** 分页信息 [ 当前页, 每页行数 ]. 如: [ 1 ] 表示查询第 1 页且查 10 条; [ 2, 20 ] 表示查第 2 页且查 20 条 */
     private List<String> page;
+    /** 游标分页: 第一页时是空字符串, 之后是上一页返回的 cursor. 不为 null 时表示使用游标分页 */
+    private String cursor;
 
     public ReqAlias() {}
     public ReqAlias(Map<String, Object> query, Map<String, String> sort, List<String> page) {
@@ -56,18 +58,26 @@ public class ReqAlias implements Serializable {
         this.page = page;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ReqAlias that = (ReqAlias) o;
-        return Objects.equals(query, that.query) && Objects.equals(sort, that.sort) && Objects.equals(page, that.page);
+        return Objects.equals(query, that.query) && Objects.equals(sort, that.sort)
+                && Objects.equals(page, that.page) && Objects.equals(cursor, that.cursor);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(query, sort, page);
+        return Objects.hash(query, sort, page, cursor);
     }
 
     @Override
@@ -76,10 +86,12 @@ public class ReqAlias implements Serializable {
                 "query=" + query +
                 ", sort=" + sort +
                 ", page=" + page +
+                ", cursor=" + cursor +
                 '}';
     }
 
 
+    /** 使用别名模板, 每次调用时编译用到的那一个. 启动时已经编译好的使用 handleCompiledAlias */
     public ReqInfo handleAlias(String alias, Map<String, ReqAliasTemplate> requestAliasMap) {
         if (QueryUtil.isEmpty(alias)) {
             throw new RuntimeException("request: required request alias");
@@ -87,24 +99,44 @@ public class ReqAlias implements Serializable {
         if (QueryUtil.isEmpty(requestAliasMap)) {
             throw new RuntimeException("request: no define alias info");
         }
-        ReqAliasTemplate aliasTemplate = requestAliasMap.get(alias);
+        ReqAliasTemplate template = requestAliasMap.get(alias);
+        if (QueryUtil.isNull(template)) {
+            throw new RuntimeException("request: no request alias(" + alias + ") info");
+        }
+        return handleAlias(new ReqAliasCompiled(alias, template));
+    }
+
+    public ReqInfo handleCompiledAlias(String alias, Map<String, ReqAliasCompiled> requestAliasMap) {
+        if (QueryUtil.isEmpty(alias)) {
+            throw new RuntimeException("request: required request alias");
+        }
+        if (QueryUtil.isEmpty(requestAliasMap)) {
+            throw new RuntimeException("request: no define alias info");
+        }
+        ReqAliasCompiled aliasTemplate = requestAliasMap.get(alias);
         if (QueryUtil.isNull(aliasTemplate)) {
             throw new RuntimeException("request: no request alias(" + alias + ") info");
         }
+        return handleAlias(aliasTemplate);
+    }
 
+    private ReqInfo handleAlias(ReqAliasCompiled aliasTemplate) {
         ReqParam param = new ReqParam();
         Boolean notCount = aliasTemplate.getNotCount();
         if (QueryUtil.isNotNull(notCount)) {
             param.setNotCount(notCount);
         }
+        Boolean hasMore = aliasTemplate.getHasMore();
+        if (QueryUtil.isNotNull(hasMore)) {
+            param.setHasMore(hasMore);
+        }
         List<List<String>> relationList = aliasTemplate.getRelationList();
         if (QueryUtil.isNotEmpty(relationList)) {
             param.setRelation(relationList);
         }
 
-        ReqAliasTemplateQuery templateQuery = aliasTemplate.getQuery();
-        if (QueryUtil.isNotEmpty(query) && QueryUtil.isNotNull(templateQuery)) {
-            ReqQuery reqQuery = templateQuery.transfer(query);
+        if (QueryUtil.isNotEmpty(query)) {
+            ReqQuery reqQuery = aliasTemplate.transfer(query);
             if (QueryUtil.isNotNull(reqQuery)) {
                 param.setQuery(reqQuery);
             }
@@ -125,6 +157,9 @@ public class ReqAlias implements Serializable {
                 param.setPage(templatePage);
             }
         }
+        if (QueryUtil.isNotNull(cursor)) {
+            param.setCursor(cursor);
+        }
         return new ReqInfo(aliasTemplate.getTable(), param, aliasTemplate.getType(), aliasTemplate.getResult());
     }
 }
@@ -0,0 +1,146 @@
+package com.github.liuanxin.query.model;
+
+import com.github.liuanxin.query.enums.JoinType;
+import com.github.liuanxin.query.enums.OperateType;
+import com.github.liuanxin.query.enums.ResultType;
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.util.*;
+
+/** 启动时编译好的别名模板, 请求时直接将入参的值放到条件上, 不再解析模板 */
+public final class ReqAliasCompiled {
+
+    private final String alias;
+    private final String table;
+    private final OperateType operate;
+    /** 入参名 -> 条件 */
+    private final Map<String, ReqAliasSlot> slotMap;
+    private final Map<String, String> sort;
+    private final List<String> page;
+    private final Boolean notCount;
+    private final Boolean hasMore;
+    private final List<List<String>> relationList;
+    private final ReqResult result;
+    private final ResultType type;
+
+    public ReqAliasCompiled(String alias, ReqAliasTemplate template) {
+        if (QueryUtil.isNull(template)) {
+            throw new RuntimeException("alias(" + alias + "): no template info");
+        }
+        if (QueryUtil.isEmpty(template.getTable())) {
+            throw new RuntimeException("alias(" + alias + "): need table");
+        }
+        ReqAliasTemplateQuery query = template.getQuery();
+        this.alias = alias;
+        this.table = template.getTable();
+        this.operate = QueryUtil.isNull(query) ? null : query.getOperate();
+        this.slotMap = QueryUtil.isNull(query)
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(query.compile(alias));
+        this.sort = template.getSort();
+        this.page = template.getPage();
+        this.notCount = template.getNotCount();
+        this.hasMore = template.getHasMore();
+        this.relationList = template.getRelationList();
+        this.result = template.getResult();
+        this.type = template.getType();
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+    public String getTable() {
+        return table;
+    }
+    public OperateType getOperate() {
+        return operate;
+    }
+    public Map<String, ReqAliasSlot> getSlotMap() {
+        return slotMap;
+    }
+    public Map<String, String> getSort() {
+        return sort;
+    }
+    public List<String> getPage() {
+        return page;
+    }
+    public Boolean getNotCount() {
+        return notCount;
+    }
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+    public List<List<String>> getRelationList() {
+        return relationList;
+    }
+    public ReqResult getResult() {
+        return result;
+    }
+    public ResultType getType() {
+        return type;
+    }
+
+
+    /** 检查模板里的表、条件、排序及表关系跟表结构是否匹配 */
+    public void check(TableColumnInfo tcInfo) {
+        if (QueryUtil.isNull(tcInfo.findTableWithAlias(table))) {
+            throw new RuntimeException("alias(" + alias + "): table(" + table + ") has no defined");
+        }
+        for (ReqAliasSlot slot : slotMap.values()) {
+            slot.check(alias, table, tcInfo);
+        }
+        if (QueryUtil.isNotEmpty(sort)) {
+            for (String column : sort.keySet()) {
+                Table sortTable = tcInfo.findTableWithAlias(QueryUtil.getTableName(column, table));
+                if (QueryUtil.isNull(sortTable)
+                        || QueryUtil.isNull(tcInfo.findTableColumnWithAlias(sortTable, QueryUtil.getColumnName(column)))) {
+                    throw new RuntimeException("alias(" + alias + "): sort column(" + column + ") has no defined");
+                }
+            }
+        }
+        if (QueryUtil.isNotEmpty(relationList)) {
+            for (List<String> values : relationList) {
+                if (QueryUtil.isEmpty(values) || values.size() < 3 || QueryUtil.isNull(JoinType.deserializer(values.get(1)))
+                        || QueryUtil.isNull(tcInfo.findTable(values.get(0))) || QueryUtil.isNull(tcInfo.findTable(values.get(2)))) {
+                    throw new RuntimeException("alias(" + alias + "): relation(" + values + ") error, for example: [ table1, left, table2 ]");
+                }
+            }
+        }
+    }
+
+    /**
+     * <pre>
+     * 数据
+     * {
+     *   "name": "abc",
+     *   "y": { "province": [ "x", "y", "z" ], "city": "xx" }
+     * }
+     *
+     * 生成
+     * {
+     *   "operate": "and",
+     *   "conditions": [
+     *     [ "name", "$start", "abc" ],
+     *     { "operate": "or", "conditions": [ [ "province", "$in", [ "x", "y", "z" ] ], [ "city", "$fuzzy", "xx" ] ] }
+     *   ]
+     * }
+     * </pre>
+     */
+    public ReqQuery transfer(Map<String, Object> paramMap) {
+        if (QueryUtil.isEmpty(slotMap) || QueryUtil.isEmpty(paramMap)) {
+            return null;
+        }
+
+        List<Object> conditionList = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : paramMap.entrySet()) {
+            String key = entry.getKey();
+            if (QueryUtil.isNotEmpty(key)) {
+                ReqAliasSlot slot = slotMap.get(key);
+                if (QueryUtil.isNotNull(slot)) {
+                    conditionList.add(slot.bind(entry.getValue()));
+                }
+            }
+        }
+        return new ReqQuery(operate, conditionList);
+    }
+}
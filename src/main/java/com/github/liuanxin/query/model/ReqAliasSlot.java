@@ -0,0 +1,113 @@
+package com.github.liuanxin.query.model;
+
+import com.github.liuanxin.query.enums.ConditionType;
+import com.github.liuanxin.query.enums.OperateType;
+import com.github.liuanxin.query.util.QueryJsonUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.util.*;
+
+/**
+ * <pre>
+ * 别名模板里的一个入参(编译后)
+ *
+ * 单个条件: "name": "$start"  或  "startTime": "time:$ge"
+ *   column = name, type = $start  或  column = time, type = $ge
+ *
+ * 组合条件: "y": { "province": "$in", "city": "$fuzzy" }
+ *   operate = or, composeMap = { province: (province, $in), city: (city, $fuzzy) }
+ * </pre>
+ */
+public final class ReqAliasSlot {
+
+    private final String column;
+    private final ConditionType type;
+
+    private final OperateType operate;
+    private final Map<String, ReqAliasSlot> composeMap;
+
+    private ReqAliasSlot(String column, ConditionType type, OperateType operate, Map<String, ReqAliasSlot> composeMap) {
+        this.column = column;
+        this.type = type;
+        this.operate = operate;
+        this.composeMap = composeMap;
+    }
+
+    public static ReqAliasSlot condition(String column, ConditionType type) {
+        return new ReqAliasSlot(column, type, null, null);
+    }
+    public static ReqAliasSlot compose(OperateType operate, Map<String, ReqAliasSlot> composeMap) {
+        return new ReqAliasSlot(null, null, operate, Collections.unmodifiableMap(new LinkedHashMap<>(composeMap)));
+    }
+
+    public String getColumn() {
+        return column;
+    }
+    public ConditionType getType() {
+        return type;
+    }
+    public OperateType getOperate() {
+        return operate;
+    }
+    public Map<String, ReqAliasSlot> getComposeMap() {
+        return composeMap;
+    }
+    public boolean isCompose() {
+        return QueryUtil.isNotNull(composeMap);
+    }
+
+    @Override
+    public String toString() {
+        return isCompose() ? (operate + composeMap.toString()) : (column + ":" + type);
+    }
+
+
+    /**
+     * <pre>
+     * column: name, type: $start, value: abc
+     * return: [ "name", "$start", "abc" ]
+     *
+     * operate: or, composeMap: { province: (province, $in), city: (city, $fuzzy) }
+     * value:  { "province": [ "x", "y", "z" ], "city": "xx" }
+     * return: { "operate": "or", "conditions": [ [ "province", "$in", [ "x", "y", "z" ] ], [ "city", "$fuzzy", "xx" ] ] }
+     * </pre>
+     */
+    public Object bind(Object value) {
+        if (isCompose()) {
+            Map<?, ?> data;
+            if (value instanceof Map<?, ?>) {
+                data = (Map<?, ?>) value;
+            } else if (QueryUtil.isNull(value)) {
+                data = Collections.emptyMap();
+            } else {
+                data = QueryJsonUtil.convertData(value);
+            }
+            List<Object> composeConditionList = new ArrayList<>();
+            for (Map.Entry<String, ReqAliasSlot> entry : composeMap.entrySet()) {
+                composeConditionList.add(entry.getValue().bind(data.get(entry.getKey())));
+            }
+            return new ReqQuery(operate, composeConditionList);
+        } else {
+            return QueryUtil.isNull(value) ? Arrays.asList(column, type) : Arrays.asList(column, type, value);
+        }
+    }
+
+    /** 检查列是否存在及条件类型是否跟列的类型匹配 */
+    public void check(String alias, String mainTable, TableColumnInfo tcInfo) {
+        if (isCompose()) {
+            for (ReqAliasSlot slot : composeMap.values()) {
+                slot.check(alias, mainTable, tcInfo);
+            }
+        } else {
+            Table table = tcInfo.findTableWithAlias(QueryUtil.getTableName(column, mainTable));
+            if (QueryUtil.isNull(table)) {
+                throw new RuntimeException("alias(" + alias + "): condition column(" + column + ") has no table info");
+            }
+            TableColumn tableColumn = tcInfo.findTableColumnWithAlias(table, QueryUtil.getColumnName(column));
+            if (QueryUtil.isNull(tableColumn)) {
+                throw new RuntimeException("alias(" + alias + "): condition column(" + column + ") has no column info");
+            }
+            type.checkType(tableColumn.getFieldType(), column);
+        }
+    }
+}
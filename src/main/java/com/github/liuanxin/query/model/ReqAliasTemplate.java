@@ -26,6 +26,9 @@ public class ReqAliasTemplate implements Serializable {
     /** 别名中入参里面设定不发起 SELECT COUNT(*) 查询. 别名中设定了此值将会覆盖入参上的值 */
     private Boolean notCount;
 
+    /** 别名中入参里面设定分页时查 limit + 1 条来判断是否还有下一页, 不发起 SELECT COUNT(*) 查询 */
+    private Boolean hasMore;
+
     /** 别名中入参里用到的表的关系. 如: [ [ "order", "inner", "orderAddress" ] , [ "order", "left", "orderItem" ] ]. 别名中设定了此值将会覆盖入参上的值 */
     private List<List<String>> relationList;
 
@@ -108,6 +111,13 @@ public class ReqAliasTemplate implements Serializable {
         this.notCount = notCount;
     }
 
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
     public List<List<String>> getRelationList() {
         return relationList;
     }
@@ -136,13 +146,14 @@ public class ReqAliasTemplate implements Serializable {
         ReqAliasTemplate that = (ReqAliasTemplate) o;
         return Objects.equals(table, that.table) && Objects.equals(query, that.query)
                 && Objects.equals(sort, that.sort) && Objects.equals(page, that.page)
-                && Objects.equals(notCount, that.notCount) && Objects.equals(relationList, that.relationList)
+                && Objects.equals(notCount, that.notCount) && Objects.equals(hasMore, that.hasMore)
+                && Objects.equals(relationList, that.relationList)
                 && Objects.equals(result, that.result) && type == that.type;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(table, query, sort, page, notCount, relationList, result, type);
+        return Objects.hash(table, query, sort, page, notCount, hasMore, relationList, result, type);
     }
 
     @Override
@@ -153,6 +164,7 @@ public class ReqAliasTemplate implements Serializable {
                 ", sort=" + sort +
                 ", page=" + page +
                 ", notCount=" + notCount +
+                ", hasMore=" + hasMore +
                 ", relationList=" + relationList +
                 ", result=" + result +
                 ", type=" + type +
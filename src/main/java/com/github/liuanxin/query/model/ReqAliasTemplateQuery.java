@@ -1,6 +1,7 @@
 package com.github.liuanxin.query.model;
 
 import com.github.liuanxin.query.constant.QueryConst;
+import com.github.liuanxin.query.enums.ConditionType;
 import com.github.liuanxin.query.enums.OperateType;
 import com.github.liuanxin.query.util.QueryJsonUtil;
 import com.github.liuanxin.query.util.QueryUtil;
@@ -109,6 +110,8 @@ public class ReqAliasTemplateQuery implements Serializable {
 
     /**
      * <pre>
+     * 启动时编译成 入参名 -> 条件, 请求时直接用入参的值生成条件, 模板有误则抛出异常
+     *
      * 模板
      * {
      *   "operate": "and",
@@ -136,6 +139,16 @@ public class ReqAliasTemplateQuery implements Serializable {
      *   ]
      * }
      *
+     * 编译后
+     * {
+     *   "name": (name, $start),
+     *   "startTime": (time, $ge),
+     *   "endTime": (time, $le),
+     *   "x": or { "gender": (gender, $eq), "age": (age, $bet) },
+     *   "y": or { "province": (province, $in), "city": (city, $fuzzy) },
+     *   "status": (status, $eq)
+     * }
+     *
      * 数据
      * {
      *   "name": "abc",
@@ -146,32 +159,6 @@ public class ReqAliasTemplateQuery implements Serializable {
      *   "status": 1
      * }
      *
-     *
-     * 最终生成
-     * {
-     *   "operate": "and",
-     *   "conditions": [
-     *     [ "name", "$start", "abc" ],
-     *     [ "time", "$ge", "xxxx-xx-xx xx:xx:xx" ],
-     *     [ "time", "$le", "yyyy-yy-yy yy:yy:yy" ],
-     *     {
-     *       "operate": "or",
-     *       "conditions": [
-     *         [ "gender", "$eq", 1 ],
-     *         [ "age", "$bet", [ 18, 40 ] ]
-     *       ]
-     *     },
-     *     {
-     *       "operate": "or",
-     *       "conditions": [
-     *         [ "province", "$in", [ "x", "y", "z" ] ],
-     *         [ "city", "$fuzzy", "xx" ]
-     *       ]
-     *     },
-     *     [ "status", "$eq", 1 ]
-     *   ]
-     * }
-     *
      * 对应的查询是
      * name like 'abc%'
      * and time >= 'xxxx-xx-xx xx:xx:xx'
@@ -181,150 +168,75 @@ public class ReqAliasTemplateQuery implements Serializable {
      * and status = 1
      * </pre>
      */
-    public ReqQuery transfer(Map<String, Object> paramMap) {
-        Map<String, Object> condMap = parse();
-        if (QueryUtil.isEmpty(condMap)) {
-            return null;
+    public Map<String, ReqAliasSlot> compile(String alias) {
+        Map<String, ReqAliasSlot> returnMap = new LinkedHashMap<>();
+        if (QueryUtil.isEmpty(conditions)) {
+            return returnMap;
         }
+        for (Object cond : conditions) {
+            if (QueryUtil.isNull(cond)) {
+                continue;
+            }
+            if (cond instanceof ReqAliasTemplateQuery) {
+                compileCompose(alias, (ReqAliasTemplateQuery) cond, returnMap);
+                continue;
+            }
 
-        List<Object> conditionList = new ArrayList<>();
-        for (Map.Entry<String, Object> entry : paramMap.entrySet()) {
-            String key = entry.getKey();
-            if (QueryUtil.isNotEmpty(key)) {
-                Object cond = condMap.get(key);
-                if (QueryUtil.isNotNull(cond)) {
-                    Object condition = generateCondition(key, entry.getValue(), cond);
-                    if (QueryUtil.isNotNull(condition)) {
-                        conditionList.add(condition);
-                    }
-                }
+            Map<String, Object> condition = QueryJsonUtil.convertData(cond);
+            if (QueryUtil.isEmpty(condition)) {
+                throw new RuntimeException("alias(" + alias + "): condition(" + cond + ") error");
             }
-        }
-        return new ReqQuery(operate, conditionList);
-    }
-    /**
-     * <pre>
-     * key:    name
-     * value:  abc
-     * cond:   $start
-     * return: [ "name", "$start", "abc" ]
-     *
-     * key:    startTime
-     * value:  xxxx-xx-xx xx:xx:xx
-     * cond:   time:$ge
-     * return: [ "time", "$ge", "xxxx-xx-xx xx:xx:xx" ]
-     *
-     * key:    y
-     * value:  { "province": [ "x", "y", "z" ], "city": "xx" }
-     * cond:   { "type": "or", "cons": { "province": "$in", "city": "$fuzzy" } }
-     * return: { "operate": "or", "conditions": [ [ "province", "$in", [ "x", "y", "z" ] ], [ "city", "$fuzzy", "xx" ] ] }
-     * </pre>
-     */
-    private Object generateCondition(String key, Object value, Object cond) {
-        if (QueryUtil.isNotEmpty(key)) {
-            if (cond instanceof String) {
-                // $start    time:$ge
-                String[] arr = QueryUtil.toStr(cond).split(":");
-                int len = arr.length;
-                if (len > 0) {
-                    if (len == 1) {
-                        return QueryUtil.isNull(value) ? Arrays.asList(key, arr[0]) : Arrays.asList(key, arr[0], value);
-                    } else if (len == 2) {
-                        return QueryUtil.isNull(value) ? Arrays.asList(arr[0], arr[1]) : Arrays.asList(arr[0], arr[1], value);
+            int size = condition.size();
+            if (size == 1) {
+                // { "name": "$start" }
+                Map.Entry<String, Object> entry = condition.entrySet().iterator().next();
+                String key = entry.getKey();
+                returnMap.put(key, compileCondition(alias, key, entry.getValue()));
+            } else if (size == 2 && condition.containsKey(QueryConst.TEMPLATE_META_NAME)) {
+                // { "_meta_name_": "startTime", "time": "$ge" }
+                String metaName = QueryUtil.toStr(condition.get(QueryConst.TEMPLATE_META_NAME));
+                if (QueryUtil.isEmpty(metaName)) {
+                    throw new RuntimeException("alias(" + alias + "): condition(" + cond + ") meta name can't be blank");
+                }
+                for (Map.Entry<String, Object> entry : condition.entrySet()) {
+                    if (!QueryConst.TEMPLATE_META_NAME.equals(entry.getKey())) {
+                        returnMap.put(metaName, compileCondition(alias, entry.getKey(), entry.getValue()));
                     }
                 }
             } else {
-                // { "province": [ "x", "y", "z" ], "city": "xx" }
-                Map<String, Object> data = QueryJsonUtil.convertData(value);
-                Map<String, Object> templateQuery = QueryJsonUtil.convertData(cond);
-                if (QueryUtil.isNotEmpty(templateQuery)) {
-                    // or
-                    OperateType type = OperateType.deserializer(templateQuery.get("type"));
-                    // { "province": "$in", "city": "$fuzzy" }
-                    Map<String, Object> composeMap = QueryJsonUtil.convertData(templateQuery.get("cons")); // conditions
-                    if (QueryUtil.isNotNull(type) && QueryUtil.isNotEmpty(composeMap)) {
-                        List<Object> composeConditionList = new ArrayList<>();
-                        for (Map.Entry<String, Object> compose : composeMap.entrySet()) {
-                            // province    city
-                            String composeKey = compose.getKey();
-                            // $in    $fuzzy
-                            Object composeCond = compose.getValue();
-                            if (QueryUtil.isNotEmpty(composeKey) || QueryUtil.isNotNull(composeCond)) {
-                                // [ "x", "y", "z" ]    xx
-                                Object composeValue = data.get(composeKey);
-                                composeConditionList.add(generateCondition(composeKey, composeValue, composeCond));
-                            }
-                        }
-                        return new ReqQuery(type, composeConditionList);
-                    }
+                // { "operate": "or", "name": "x", "conditions": [ ... ] }
+                ReqAliasTemplateQuery templateQuery = QueryJsonUtil.convert(cond, ReqAliasTemplateQuery.class);
+                if (QueryUtil.isNull(templateQuery)) {
+                    throw new RuntimeException("alias(" + alias + "): compose condition(" + cond + ") error");
                 }
+                compileCompose(alias, templateQuery, returnMap);
             }
         }
-        return null;
+        return returnMap;
     }
-    /**
-     * {
-     *   "name": "$start",
-     *   "startTime": "time:$ge",
-     *   "endTime": "time:$le",
-     *   "x": {
-     *     "type": "or",
-     *     "cons": {
-     *       "gender": "$eq",
-     *       "age": "$bet"
-     *     }
-     *   },
-     *   "y": {
-     *     "type": "or",
-     *     "cons": {
-     *       "province": "$in",
-     *       "city": "$fuzzy"
-     *     }
-     *   },
-     *   "status": "$eq"
-     * }
-    */
-    private Map<String, Object> parse() {
-        Map<String, Object> returnMap = new HashMap<>();
-        for (Object cond : conditions) {
-            Map<String, Object> condition = QueryJsonUtil.convertData(cond);
-            if (QueryUtil.isNotNull(condition)) {
-                int size = condition.size();
-                if (size == 1) {
-                    returnMap.putAll(condition);
-                } else if (size == 2) {
-                    String metaNameKey = QueryConst.TEMPLATE_META_NAME;
-                    String metaName = QueryUtil.toStr(condition.get(metaNameKey));
-                    if (QueryUtil.isNotEmpty(metaName)) {
-                        String join = null;
-                        for (Map.Entry<String, Object> entry : condition.entrySet()) {
-                            if (!metaNameKey.equals(entry.getKey())) {
-                                join = entry.getKey() + ":" + entry.getValue();
-                                break;
-                            }
-                        }
-                        if (QueryUtil.isNotEmpty(join)) {
-                            returnMap.put(metaName, join);
-                        }
-                    }
-                } else {
-                    ReqAliasTemplateQuery templateQuery = QueryJsonUtil.convert(cond, ReqAliasTemplateQuery.class);
-                    if (QueryUtil.isNotNull(templateQuery)) {
-                        String composeName = templateQuery.name;
-                        String composeType = templateQuery.operate.name();
-                        if (QueryUtil.isNotEmpty(composeName) && QueryUtil.isNotEmpty(composeType)) {
-                            Map<String, Object> composeMap = templateQuery.parse();
-                            if (QueryUtil.isNotEmpty(composeMap)) {
-                                Map<String, Object> composeTypeMap = new HashMap<>();
-                                composeTypeMap.put("type", composeType);
-                                composeTypeMap.put("cons", composeMap); // conditions
-                                returnMap.put(composeName, composeTypeMap);
-                            }
-                        }
-                    }
-                }
-            }
+    private static ReqAliasSlot compileCondition(String alias, String key, Object value) {
+        // $start    time:$ge
+        String[] arr = (value instanceof String) ? ((String) value).split(":") : new String[0];
+        if (arr.length == 0 || arr.length > 2) {
+            throw new RuntimeException(String.format("alias(%s): condition(%s : %s) error, for example: $eq or column:$eq", alias, key, value));
         }
-        return returnMap;
+        String column = (arr.length == 1) ? key : arr[0].trim();
+        String typeStr = (arr.length == 1) ? arr[0] : arr[1];
+        ConditionType type = ConditionType.deserializer(typeStr);
+        if (QueryUtil.isEmpty(column) || QueryUtil.isNull(type)) {
+            throw new RuntimeException(String.format("alias(%s): condition column(%s) type(%s) error", alias, column, typeStr));
+        }
+        return ReqAliasSlot.condition(column, type);
+    }
+    private static void compileCompose(String alias, ReqAliasTemplateQuery templateQuery, Map<String, ReqAliasSlot> returnMap) {
+        String composeName = templateQuery.name;
+        if (QueryUtil.isEmpty(composeName) || QueryUtil.isNull(templateQuery.operate)) {
+            throw new RuntimeException("alias(" + alias + "): compose condition(" + templateQuery + ") need name and operate");
+        }
+        Map<String, ReqAliasSlot> composeMap = templateQuery.compile(alias);
+        if (QueryUtil.isEmpty(composeMap)) {
+            throw new RuntimeException("alias(" + alias + "): compose condition(" + composeName + ") need conditions");
+        }
+        returnMap.put(composeName, ReqAliasSlot.compose(templateQuery.operate, composeMap));
     }
 }
@@ -82,6 +82,20 @@ public class ReqInfo implements Serializable {
     }
 
 
+    /** 请求的形态: 形态一样的请求, 校验结果及生成的 sql 都是一样的, 只是占位符上绑定的值不同 */
+    public String generateShape(boolean force) {
+        StringBuilder sbd = new StringBuilder();
+        sbd.append(table).append("|").append(type).append("|").append(force).append("|");
+        if (QueryUtil.isNotNull(param)) {
+            param.generateShape(sbd);
+        }
+        sbd.append("|result:");
+        if (QueryUtil.isNotNull(result)) {
+            result.generateShape(sbd);
+        }
+        return sbd.toString();
+    }
+
     public void checkTable(TableColumnInfo tcInfo) {
         String table = getTable();
         if (QueryUtil.isEmpty(table)) {
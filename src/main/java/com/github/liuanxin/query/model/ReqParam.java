@@ -18,6 +18,15 @@ import java.util.*;
  *   "sort": { "createTime" : "desc", "yy.id" : "asc" },
  *   "page": [ 1, 20 ],
  *   "notCount": true  -- 当 page 不为空时, true 表示不发起 SELECT COUNT(*) 查询, 不设置则默认是 false
+ *   "hasMore": true  -- 当 page 不为空时, true 表示查 limit + 1 条来判断是否还有下一页, 不发起 SELECT COUNT(*) 查询, 不设置则默认是 false
+ * }
+ *
+ * 游标分页(不使用 LIMIT 偏移量, 每一页的查询开销都一样, 不查总条数, 不能跟函数(GROUP BY)一起使用)
+ * {
+ *   "query": ...
+ *   "sort": { "createTime" : "desc" },  -- 排序后会再加上主键, 排序的列需要非空
+ *   "page": [ 1, 20 ],  -- 只用每页行数
+ *   "cursor": ""  -- 第一页传空字符串, 之后传上一页返回的 cursor, 返回的 cursor 为空表示没有下一页了
  * }
  * </pre>
  */
@@ -32,6 +41,10 @@ public class ReqParam implements Serializable {
     private List<String> page;
     /** 当上面的分页信息有值且当前值是 true 时表示不发起 SELECT COUNT(*) 查询 */
     private Boolean notCount;
+    /** 当上面的分页信息有值且当前值是 true 时表示查 limit + 1 条, 返回 limit 条及是否还有下一页, 不发起 SELECT COUNT(*) 查询 */
+    private Boolean hasMore;
+    /** 游标分页: 第一页时是空字符串, 之后是上一页返回的 cursor. 不为 null 时表示使用游标分页 */
+    private String cursor;
     /** 入参里用到的表的关系. 如: [ [ "order", "inner", "orderAddress" ] , [ "order", "left", "orderItem" ] , [ "order", "right", "orderLog" ] ] */
     private List<List<String>> relation;
 
@@ -92,6 +105,20 @@ public class ReqParam implements Serializable {
         this.notCount = notCount;
     }
 
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
     public List<List<String>> getRelation() {
         return relation;
     }
@@ -107,12 +134,12 @@ public class ReqParam implements Serializable {
         ReqParam reqParam = (ReqParam) o;
         return Objects.equals(query, reqParam.query) && Objects.equals(sort, reqParam.sort)
                 && Objects.equals(page, reqParam.page) && Objects.equals(notCount, reqParam.notCount)
-                && Objects.equals(relation, reqParam.relation);
+                && Objects.equals(hasMore, reqParam.hasMore) && Objects.equals(cursor, reqParam.cursor) && Objects.equals(relation, reqParam.relation);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(query, sort, page, notCount, relation);
+        return Objects.hash(query, sort, page, notCount, hasMore, cursor, relation);
     }
 
     @Override
@@ -122,6 +149,8 @@ public class ReqParam implements Serializable {
                 ", sort=" + sort +
                 ", page=" + page +
                 ", notCount=" + notCount +
+                ", hasMore=" + hasMore +
+                ", cursor=" + cursor +
                 ", relation=" + relation +
                 '}';
     }
@@ -132,7 +161,7 @@ public class ReqParam implements Serializable {
         if (QueryUtil.isNotNull(query)) {
             paramTableSet.addAll(query.checkCondition(mainTable, tcInfo, maxListCount));
         }
-        if (!notRequiredConditionOrPage && QueryUtil.isEmpty(paramTableSet) && QueryUtil.isEmpty(page)) {
+        if (!notRequiredConditionOrPage && QueryUtil.isEmpty(paramTableSet) && QueryUtil.isEmpty(page) && !needCursorPage()) {
             throw new RuntimeException("param: required condition or page");
         }
 
@@ -160,6 +189,11 @@ public class ReqParam implements Serializable {
             }
         }
 
+        checkPage(maxListCount);
+        return paramTableSet;
+    }
+
+    public void checkPage(int maxListCount) {
         if (needQueryPage()) {
             String index = page.isEmpty() ? null : page.get(0);
             if (QueryUtil.isNotLong(index) || QueryUtil.toInt(index) <= 0) {
@@ -173,7 +207,20 @@ public class ReqParam implements Serializable {
                 }
             }
         }
-        return paramTableSet;
+    }
+
+    /** 入参的形态: 条件(不含值)、排序、是否分页、是否查总条数、表关系 */
+    public void generateShape(StringBuilder sbd) {
+        sbd.append("query:");
+        if (QueryUtil.isNotNull(query)) {
+            query.generateShape(sbd);
+        }
+        sbd.append("|sort:").append(sort);
+        sbd.append("|page:").append(QueryUtil.isNull(page) ? "" : (page.isEmpty() ? "0" : "1"));
+        sbd.append("|count:").append(needQueryCount());
+        sbd.append("|more:").append(needQueryHasMore());
+        sbd.append("|cursor:").append(QueryUtil.isNull(cursor) ? "" : (cursor.isEmpty() ? "0" : "1"));
+        sbd.append("|relation:").append(relation);
     }
 
     public String generateWhereSql(String mainTable, TableColumnInfo tcInfo, boolean needAlias, List<Object> params,
@@ -236,6 +283,16 @@ public class ReqParam implements Serializable {
     public boolean needQueryPage() {
         return QueryUtil.isNotNull(page);
     }
+    public boolean needCursorPage() {
+        return QueryUtil.isNotNull(cursor);
+    }
+    /** 游标分页时, 非第一页才需要在条件上加上一页最后一行的值 */
+    public boolean hasCursorValue() {
+        return QueryUtil.isNotEmpty(cursor);
+    }
+    public boolean needQueryHasMore() {
+        return QueryUtil.isNotNull(hasMore) && hasMore;
+    }
     public boolean needQueryCount() {
         return QueryUtil.isNull(notCount) || !notCount;
     }
@@ -254,30 +311,34 @@ public class ReqParam implements Serializable {
     private int calcIndex() {
         return QueryUtil.toInt(page.get(0));
     }
-    private int calcLimit() {
-        return (page.size() > 1) ? QueryUtil.toInt(page.get(1)) : QueryConst.DEFAULT_LIMIT;
+    public int calcLimit() {
+        return (QueryUtil.isNotNull(page) && page.size() > 1) ? QueryUtil.toInt(page.get(1)) : QueryConst.DEFAULT_LIMIT;
+    }
+    public String generatePageSql(List<Object> params) {
+        return generatePageSql(params, 0);
+    }
+    /** 多查 1 条用来判断是否还有下一页 */
+    public String generateMorePageSql(List<Object> params) {
+        return generatePageSql(params, 1);
     }
-    public String generatePageSql(List<Object> params, StringBuilder printSql) {
+    private String generatePageSql(List<Object> params, int more) {
         if (needQueryPage()) {
             int index = calcIndex();
             int limit = calcLimit();
 
             if (index == 1) {
-                params.add(limit);
-                printSql.append(" LIMIT ").append(limit);
+                params.add(limit + more);
                 return " LIMIT ?";
             } else {
                 params.add((index - 1) * limit);
-                params.add(limit);
-                printSql.append(" LIMIT ").append((index - 1) * limit).append(", ").append(limit);
+                params.add(limit + more);
                 return " LIMIT ?, ?";
             }
         }
         return "";
     }
-    public String generateArrToObjSql(List<Object> params, StringBuilder printSql) {
+    public String generateArrToObjSql(List<Object> params) {
         params.add(1);
-        printSql.append(" LIMIT 1");
         return " LIMIT ?";
     }
 
@@ -3,7 +3,6 @@ package com.github.liuanxin.query.model;
 import com.github.liuanxin.query.enums.ConditionType;
 import com.github.liuanxin.query.enums.OperateType;
 import com.github.liuanxin.query.function.FunctionSerialize;
-import com.github.liuanxin.query.util.QueryJsonUtil;
 import com.github.liuanxin.query.util.QueryLambdaUtil;
 import com.github.liuanxin.query.util.QueryUtil;
 
@@ -106,13 +105,15 @@ public class ReqQuery implements Serializable {
 
     /** 条件拼接类型: 并且(and) 和 或者(or) 两种, 不设置则默认是 and */
     private OperateType operate;
-    /** 条件 */
+    /** 条件, 设置后是只读的 */
     private List<Object> conditions;
+    /** 解析后的条件 */
+    private transient volatile ReqQueryCondition condition;
 
     public ReqQuery() {}
     public ReqQuery(OperateType operate, List<Object> conditions) {
         this.operate = operate;
-        this.conditions = conditions;
+        setConditions(conditions);
     }
 
     public OperateType getOperate() {
@@ -120,13 +121,54 @@ public class ReqQuery implements Serializable {
     }
     public void setOperate(OperateType operate) {
         this.operate = operate;
+        this.condition = parse(operate, conditions);
     }
 
+    /** 只读, 修改条件需要使用 set 或 add 方法 */
     public List<Object> getConditions() {
         return conditions;
     }
+    @SuppressWarnings("unchecked")
     public void setConditions(List<Object> conditions) {
-        this.conditions = conditions;
+        this.conditions = (List<Object>) freeze(conditions);
+        this.condition = parse(operate, this.conditions);
+    }
+
+    /** 设置时(反序列化请求时)就解析, 结构有误时留到校验时再抛出异常 */
+    private static ReqQueryCondition parse(OperateType operate, List<Object> conditions) {
+        try {
+            return ReqQueryCondition.compose(operate, conditions);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    /**
+     * 条件及里面的 list、map 复制成只读的, 嵌套的 ReqQuery 复制一份(它的条件已经是只读的),
+     * 之后调用方修改原来的 list 或者嵌套的 ReqQuery 都不会影响已经解析的条件
+     */
+    private static Object freeze(Object obj) {
+        if (obj instanceof List<?>) {
+            List<Object> list = new ArrayList<>();
+            for (Object o : (List<?>) obj) {
+                list.add(freeze(o));
+            }
+            return Collections.unmodifiableList(list);
+        } else if (obj instanceof Map<?, ?>) {
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) obj).entrySet()) {
+                map.put(entry.getKey(), freeze(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(map);
+        } else if (obj instanceof ReqQuery) {
+            ReqQuery query = (ReqQuery) obj;
+            ReqQuery copy = new ReqQuery();
+            copy.operate = query.operate;
+            copy.conditions = query.conditions;
+            copy.condition = query.condition;
+            return copy;
+        } else {
+            return obj;
+        }
     }
 
 
@@ -152,108 +194,50 @@ public class ReqQuery implements Serializable {
     }
 
 
+    /**
+     * 解析后的条件, 设置 operate 或 conditions 时解析, 之后校验及生成 sql 都直接使用.
+     * conditions 是只读的, 只能通过 set 或 add 方法修改, 修改时会重新解析. 解析失败(或者是 java 反序列化的)时在这里解析并抛出异常
+     */
+    public ReqQueryCondition condition() {
+        ReqQueryCondition cond = condition;
+        if (QueryUtil.isNull(cond)) {
+            cond = ReqQueryCondition.compose(operate, conditions);
+            condition = cond;
+        }
+        return cond;
+    }
+
     public Set<String> checkCondition(String mainTable, TableColumnInfo tcInfo, int maxListCount) {
         if (QueryUtil.isEmpty(conditions)) {
             return Collections.emptySet();
         }
 
         Set<String> queryTableSet = new LinkedHashSet<>();
-        for (Object condition : conditions) {
-            if (QueryUtil.isNotNull(condition)) {
-                if (condition instanceof List<?>) {
-                    List<?> list = (List<?>) condition;
-                    if (QueryUtil.isEmpty(list)) {
-                        throw new RuntimeException("param: condition(" + condition + ") can't be blank");
-                    }
-                    int size = list.size();
-                    if (size < 2) {
-                        throw new RuntimeException("param: condition(" + condition + ") error");
-                    }
-                    String columnAlias = QueryUtil.toStr(list.get(0));
-                    if (QueryUtil.isEmpty(columnAlias)) {
-                        throw new RuntimeException("param: condition(" + condition + ") column can't be blank");
-                    }
-
-                    Table table = tcInfo.findTableWithAlias(QueryUtil.getTableName(columnAlias, mainTable));
-                    if (QueryUtil.isNull(table)) {
-                        throw new RuntimeException("param: condition(" + condition + ") column has no table info");
-                    }
-                    queryTableSet.add(table.getName());
-
-                    ConditionType type = ConditionType.deserializer(list.get(1));
-                    if (QueryUtil.isNull(type)) {
-                        throw new RuntimeException(String.format("param: condition column(%s) type(%s) error", columnAlias, list.get(1)));
-                    }
-
-                    TableColumn tableColumn = tcInfo.findTableColumnWithAlias(table, QueryUtil.getColumnName(columnAlias));
-                    if (QueryUtil.isNull(tableColumn)) {
-                        throw new RuntimeException(String.format("param: condition column(%s) has no column info", columnAlias));
-                    }
-                    type.checkTypeAndValue(tableColumn.getFieldType(), columnAlias,
-                            ((size > 2) ? list.get(2) : null), tableColumn.getStrLen(), maxListCount);
-                } else {
-                    ReqQuery compose = QueryJsonUtil.convert(condition, ReqQuery.class);
-                    if (QueryUtil.isNull(compose)) {
-                        throw new RuntimeException("param: compose condition(" + condition + ") error");
-                    }
-                    compose.checkCondition(mainTable, tcInfo, maxListCount);
-                }
-            }
-        }
+        condition().checkCondition(mainTable, tcInfo, maxListCount, queryTableSet);
         return queryTableSet;
     }
 
     public String generateSql(String mainTable, TableColumnInfo tcInfo, boolean needAlias,
                               List<Object> params, StringBuilder printSql) {
-        // noinspection DuplicatedCode
         if (QueryUtil.isEmpty(conditions)) {
             return "";
         }
+        return condition().generateSql(mainTable, tcInfo, needAlias, params, printSql);
+    }
 
-        String operateType = (QueryUtil.isNull(operate) ? OperateType.AND : operate).name().toUpperCase();
-        StringJoiner sj = new StringJoiner(" " + operateType + " ");
-        StringJoiner printSj = new StringJoiner(" " + operateType + " ");
-        for (Object condition : conditions) {
-            if (QueryUtil.isNotNull(condition)) {
-                if (condition instanceof List<?>) {
-                    List<?> list = (List<?>) condition;
-                    if (QueryUtil.isNotEmpty(list)) {
-                        int size = list.size();
-                        String column = QueryUtil.toStr(list.get(0));
+    /** 条件的形态: 只有列、条件类型及值的形态, 没有具体的值. 形态一样的条件生成的 sql 是一样的 */
+    public void generateShape(StringBuilder sbd) {
+        condition().generateShape(sbd);
+    }
 
-                        ConditionType type = ConditionType.deserializer(list.get(1));
-                        Object value = (size > 2) ? list.get(2) : null;
+    /** 按生成 sql 时的顺序收集条件里的列 */
+    public void collectColumn(String mainTable, TableColumnInfo tcInfo, List<TableColumn> columnList) {
+        condition().collectColumn(mainTable, tcInfo, columnList);
+    }
 
-                        String tableName = QueryUtil.getTableName(column, mainTable);
-                        String columnName = QueryUtil.getColumnName(column);
-                        Class<?> fieldType = tcInfo.findTableColumn(tableName, columnName).getFieldType();
-                        String useColumn = QueryUtil.getQueryColumn(needAlias, column, mainTable, tcInfo);
-                        StringBuilder print = new StringBuilder();
-                        String sql = type.generateSql(useColumn, fieldType, value, params, print);
-                        if (QueryUtil.isNotEmpty(sql)) {
-                            sj.add(sql);
-                            printSj.add(print);
-                        }
-                    }
-                } else {
-                    ReqQuery compose = QueryJsonUtil.convert(condition, ReqQuery.class);
-                    if (QueryUtil.isNotNull(compose)) {
-                        StringBuilder print = new StringBuilder();
-                        String innerWhereSql = compose.generateSql(mainTable, tcInfo, needAlias, params, print);
-                        if (QueryUtil.isNotEmpty(innerWhereSql)) {
-                            sj.add("( " + innerWhereSql + " )");
-                            printSj.add("( " + print + " )");
-                        }
-                    }
-                }
-            }
-        }
-        if (sj.length() == 0) {
-            return "";
-        } else {
-            printSql.append(printSj);
-            return sj.toString().trim();
-        }
+    /** 用 collectColumn 收集到的列, 按顺序校验并绑定条件上的值, 不生成 sql */
+    public void bindParam(Iterator<TableColumn> columns, int maxListCount, List<Object> params) {
+        condition().bindParam(columns, maxListCount, params);
     }
 
 
@@ -262,25 +246,31 @@ public class ReqQuery implements Serializable {
             operate = null;
         }
         if (QueryUtil.isNotEmpty(conditions)) {
-            conditions.clear();
+            conditions = Collections.emptyList();
         }
+        condition = null;
+    }
+    private void add(Object obj) {
+        List<Object> list = new ArrayList<>(conditions);
+        list.add(obj);
+        setConditions(list);
     }
 
     public <T> void addCondition(FunctionSerialize<T,?> column, ConditionType type, Object value) {
         if (QueryUtil.isNotEmpty(conditions)) {
             String c = QueryLambdaUtil.toTableName(column) + "." + QueryLambdaUtil.toColumnName(column);
-            conditions.add(Arrays.asList(c, type.name().toLowerCase(), value));
+            add(Arrays.asList(c, type.name().toLowerCase(), value));
         }
     }
     public void addCondition(String column, ConditionType type, Object value) {
         if (QueryUtil.isNotEmpty(conditions)) {
-            conditions.add(Arrays.asList(column, type.name().toLowerCase(), value));
+            add(Arrays.asList(column, type.name().toLowerCase(), value));
         }
     }
 
     public void addComposeCondition(ReqQuery composeCondition) {
         if (QueryUtil.isNotEmpty(conditions)) {
-            conditions.add(composeCondition);
+            add(composeCondition);
         }
     }
 
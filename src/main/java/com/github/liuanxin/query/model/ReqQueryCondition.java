@@ -0,0 +1,204 @@
+package com.github.liuanxin.query.model;
+
+import com.github.liuanxin.query.enums.ConditionType;
+import com.github.liuanxin.query.enums.OperateType;
+import com.github.liuanxin.query.util.QueryJsonUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.util.*;
+
+/**
+ * <pre>
+ * ReqQuery 里的条件解析后的结构, 解析一次之后校验及生成 sql 都直接使用, 不再做 json 转换
+ *
+ * 单个条件: [ "name", "$start", "abc" ]               ->  column = name, type = $start, value = abc
+ * 组合条件: { "operate": "or", "conditions": [ ... ] } ->  operate = or, children = [ ... ]
+ * </pre>
+ */
+public final class ReqQueryCondition {
+
+    private final OperateType operate;
+    private final List<ReqQueryCondition> children;
+
+    private final String column;
+    private final ConditionType type;
+    private final Object value;
+
+    private ReqQueryCondition(OperateType operate, List<ReqQueryCondition> children,
+                              String column, ConditionType type, Object value) {
+        this.operate = operate;
+        this.children = children;
+        this.column = column;
+        this.type = type;
+        this.value = value;
+    }
+
+    public OperateType getOperate() {
+        return operate;
+    }
+    public List<ReqQueryCondition> getChildren() {
+        return children;
+    }
+    public String getColumn() {
+        return column;
+    }
+    public ConditionType getType() {
+        return type;
+    }
+    public Object getValue() {
+        return value;
+    }
+    public boolean isCompose() {
+        return QueryUtil.isNotNull(children);
+    }
+
+    @Override
+    public String toString() {
+        return isCompose() ? (operate + children.toString()) : ("[" + column + ", " + type + ", " + value + "]");
+    }
+
+
+    /** 解析条件, 结构有误(没有列、条件类型不对等)则抛出异常 */
+    public static ReqQueryCondition compose(OperateType operate, List<?> conditions) {
+        List<ReqQueryCondition> children = new ArrayList<>();
+        if (QueryUtil.isNotEmpty(conditions)) {
+            for (Object condition : conditions) {
+                if (QueryUtil.isNotNull(condition)) {
+                    children.add(parse(condition));
+                }
+            }
+        }
+        return new ReqQueryCondition(QueryUtil.isNull(operate) ? OperateType.AND : operate,
+                Collections.unmodifiableList(children), null, null, null);
+    }
+    private static ReqQueryCondition parse(Object condition) {
+        if (condition instanceof List<?>) {
+            List<?> list = (List<?>) condition;
+            if (QueryUtil.isEmpty(list)) {
+                throw new RuntimeException("param: condition(" + condition + ") can't be blank");
+            }
+            int size = list.size();
+            if (size < 2) {
+                throw new RuntimeException("param: condition(" + condition + ") error");
+            }
+            String column = QueryUtil.toStr(list.get(0));
+            if (QueryUtil.isEmpty(column)) {
+                throw new RuntimeException("param: condition(" + condition + ") column can't be blank");
+            }
+            ConditionType type = ConditionType.deserializer(list.get(1));
+            if (QueryUtil.isNull(type)) {
+                throw new RuntimeException(String.format("param: condition column(%s) type(%s) error", column, list.get(1)));
+            }
+            return new ReqQueryCondition(null, null, column, type, (size > 2) ? list.get(2) : null);
+        } else if (condition instanceof ReqQuery) {
+            return ((ReqQuery) condition).condition();
+        } else if (condition instanceof Map<?, ?>) {
+            // 反序列化时嵌套的组合条件是 Map
+            Map<?, ?> map = (Map<?, ?>) condition;
+            Object conditions = map.get("conditions");
+            if (QueryUtil.isNotNull(conditions) && !(conditions instanceof List<?>)) {
+                throw new RuntimeException("param: compose condition(" + condition + ") error");
+            }
+            return compose(OperateType.deserializer(map.get("operate")), (List<?>) conditions);
+        } else {
+            ReqQuery compose = QueryJsonUtil.convert(condition, ReqQuery.class);
+            if (QueryUtil.isNull(compose)) {
+                throw new RuntimeException("param: compose condition(" + condition + ") error");
+            }
+            return compose.condition();
+        }
+    }
+
+
+    public void checkCondition(String mainTable, TableColumnInfo tcInfo, int maxListCount, Set<String> queryTableSet) {
+        if (isCompose()) {
+            for (ReqQueryCondition child : children) {
+                child.checkCondition(mainTable, tcInfo, maxListCount, queryTableSet);
+            }
+            return;
+        }
+
+        Table table = tcInfo.findTableWithAlias(QueryUtil.getTableName(column, mainTable));
+        if (QueryUtil.isNull(table)) {
+            throw new RuntimeException("param: condition(" + this + ") column has no table info");
+        }
+        queryTableSet.add(table.getName());
+
+        TableColumn tableColumn = tcInfo.findTableColumnWithAlias(table, QueryUtil.getColumnName(column));
+        if (QueryUtil.isNull(tableColumn)) {
+            throw new RuntimeException(String.format("param: condition column(%s) has no column info", column));
+        }
+        type.checkTypeAndValue(tableColumn.getFieldType(), column, value, tableColumn.getStrLen(), maxListCount);
+    }
+
+    public String generateSql(String mainTable, TableColumnInfo tcInfo, boolean needAlias,
+                              List<Object> params, StringBuilder printSql) {
+        if (isCompose()) {
+            String operateType = " " + operate.name().toUpperCase() + " ";
+            StringJoiner sj = new StringJoiner(operateType);
+            StringJoiner printSj = new StringJoiner(operateType);
+            for (ReqQueryCondition child : children) {
+                StringBuilder print = new StringBuilder();
+                String sql = child.generateSql(mainTable, tcInfo, needAlias, params, print);
+                if (QueryUtil.isNotEmpty(sql)) {
+                    if (child.isCompose()) {
+                        sj.add("( " + sql + " )");
+                        printSj.add("( " + print + " )");
+                    } else {
+                        sj.add(sql);
+                        printSj.add(print);
+                    }
+                }
+            }
+            if (sj.length() == 0) {
+                return "";
+            }
+            printSql.append(printSj);
+            return sj.toString().trim();
+        }
+
+        String tableName = QueryUtil.getTableName(column, mainTable);
+        Class<?> fieldType = tcInfo.findTableColumn(tableName, QueryUtil.getColumnName(column)).getFieldType();
+        String useColumn = QueryUtil.getQueryColumn(needAlias, column, mainTable, tcInfo);
+        return type.generateSql(useColumn, fieldType, value, params, printSql);
+    }
+
+    /** 条件的形态: 只有列、条件类型及值的形态, 没有具体的值. 形态一样的条件生成的 sql 是一样的 */
+    public void generateShape(StringBuilder sbd) {
+        if (isCompose()) {
+            sbd.append(operate).append("(");
+            for (ReqQueryCondition child : children) {
+                child.generateShape(sbd);
+            }
+            sbd.append(")");
+        } else {
+            sbd.append("[").append(column).append(",").append(type.name()).append(",").append(type.valueShape(value)).append("]");
+        }
+    }
+
+    /** 按生成 sql 时的顺序收集条件里的列 */
+    public void collectColumn(String mainTable, TableColumnInfo tcInfo, List<TableColumn> columnList) {
+        if (isCompose()) {
+            for (ReqQueryCondition child : children) {
+                child.collectColumn(mainTable, tcInfo, columnList);
+            }
+        } else {
+            String tableName = QueryUtil.getTableName(column, mainTable);
+            columnList.add(tcInfo.findTableColumn(tableName, QueryUtil.getColumnName(column)));
+        }
+    }
+
+    /** 用 collectColumn 收集到的列, 按顺序校验并绑定条件上的值, 不生成 sql */
+    public void bindParam(Iterator<TableColumn> columns, int maxListCount, List<Object> params) {
+        if (isCompose()) {
+            for (ReqQueryCondition child : children) {
+                child.bindParam(columns, maxListCount, params);
+            }
+        } else {
+            TableColumn tableColumn = columns.next();
+            Class<?> fieldType = tableColumn.getFieldType();
+            type.checkTypeAndValue(fieldType, column, value, tableColumn.getStrLen(), maxListCount);
+            type.bindValue(fieldType, value, params);
+        }
+    }
+}
@@ -2,11 +2,9 @@ package com.github.liuanxin.query.model;
 
 import com.github.liuanxin.query.enums.ConditionType;
 import com.github.liuanxin.query.enums.ResultGroup;
-import com.github.liuanxin.query.util.QueryJsonUtil;
 import com.github.liuanxin.query.util.QueryUtil;
 
 import java.io.Serializable;
-import java.time.temporal.TemporalAccessor;
 import java.util.*;
 
 /**
@@ -76,6 +74,8 @@ public class ReqResult implements Serializable {
     private List<Object> columns;
     /** true 表示将查询数据去重, 不设置则默认是 false */
     private Boolean distinct;
+    /** columns 解析后的结构 */
+    private transient volatile List<ReqResultColumn> projection;
 
     public ReqResult() {}
     public ReqResult(List<Object> columns) {
@@ -100,6 +100,7 @@ public class ReqResult implements Serializable {
     }
     public void setTable(String table) {
         this.table = table;
+        this.projection = null;
     }
 
     public List<Object> getColumns() {
@@ -107,6 +108,7 @@ public class ReqResult implements Serializable {
     }
     public void setColumns(List<Object> columns) {
         this.columns = columns;
+        this.projection = null;
     }
 
     public Boolean isDistinct() {
@@ -141,6 +143,11 @@ public class ReqResult implements Serializable {
     }
 
 
+    /** 出参的形态, 出参里没有需要绑定的值, 因此直接使用全部的信息 */
+    public void generateShape(StringBuilder sbd) {
+        sbd.append(table).append(":").append(columns).append(":").append(distinct);
+    }
+
     private List<Object> handleColumn(String mainTable, TableColumnInfo tcInfo, boolean force) {
         if (QueryUtil.isNotEmpty(columns)) {
             return columns;
@@ -155,6 +162,23 @@ public class ReqResult implements Serializable {
         return Collections.emptyList();
     }
 
+    /** columns 解析后的结构, 没有设置 columns 时是表里的所有列 */
+    public List<ReqResultColumn> projection(String mainTable, TableColumnInfo tcInfo, boolean force) {
+        if (QueryUtil.isNotEmpty(columns)) {
+            List<ReqResultColumn> list = projection;
+            if (QueryUtil.isNull(list)) {
+                list = ReqResultColumn.parse(columns, QueryUtil.defaultIfBlank(table, mainTable));
+                projection = list;
+            }
+            return list;
+        }
+        List<ReqResultColumn> list = new ArrayList<>();
+        for (Object obj : handleColumn(mainTable, tcInfo, force)) {
+            list.add(ReqResultColumn.column(QueryUtil.toStr(obj)));
+        }
+        return list;
+    }
+
     public void checkResult(String mainTable, TableColumnInfo tcInfo, boolean force) {
         String currentTable;
         if (QueryUtil.isEmpty(table)) {
@@ -168,75 +192,23 @@ public class ReqResult implements Serializable {
         }
 
         Set<String> columnCheckRepeatedSet = new HashSet<>();
-        List<Object> innerList = new ArrayList<>();
+        List<ReqResultColumn> innerList = new ArrayList<>();
         boolean hasColumnOrFunction = false;
-        for (Object obj : handleColumn(mainTable, tcInfo, force)) {
-            if (QueryUtil.isNotNull(obj)) {
-                if (obj instanceof String) {
-                    String column = (String) obj;
-                    checkColumn(column, currentTable, tcInfo, columnCheckRepeatedSet);
+        for (ReqResultColumn resultColumn : projection(mainTable, tcInfo, force)) {
+            switch (resultColumn.getType()) {
+                case COLUMN:
+                case DATE: {
+                    checkColumn(resultColumn.getColumn(), currentTable, tcInfo, columnCheckRepeatedSet);
                     hasColumnOrFunction = true;
-                } else if (obj instanceof List<?>) {
-                    List<?> groups = (List<?>) obj;
-                    if (QueryUtil.isEmpty(groups)) {
-                        throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") error");
-                    }
-                    int size = groups.size();
-                    if (size < 3) {
-                        throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") data error");
-                    }
-                    ResultGroup group = ResultGroup.deserializer(QueryUtil.toStr(groups.get(1)));
-                    if (QueryUtil.isNull(group)) {
-                        throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") type error");
-                    }
-                    String column = QueryUtil.toStr(groups.get(2));
-                    if (QueryUtil.isEmpty(column)) {
-                        throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") column error");
-                    }
-
-                    if (group == ResultGroup.COUNT_DISTINCT) {
-                        for (String col : column.split(",")) {
-                            checkFunctionColumn(tcInfo, col, currentTable, groups);
-                        }
-                    } else {
-                        if (group.needCheckColumn(column)) {
-                            checkFunctionColumn(tcInfo, column, currentTable, groups);
-                        }
-                    }
-
-                    String functionAlias = group.generateAlias(column);
-                    if (columnCheckRepeatedSet.contains(functionAlias)) {
-                        throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") has repeated");
-                    }
-                    columnCheckRepeatedSet.add(functionAlias);
-
-                    if (size > 4) {
-                        // 先右移 1 位除以 2, 再左移 1 位乘以 2, 变成偶数
-                        int evenSize = size >> 1 << 1;
-                        for (int i = 3; i < evenSize; i += 2) {
-                            if (QueryUtil.isNull(ConditionType.deserializer(groups.get(i)))) {
-                                throw new RuntimeException("result: table(" + currentTable + ") function("
-                                        + groups + ") having condition error");
-                            }
-
-                            Object value = groups.get(i + 1);
-                            if (group.checkNotHavingValue(value)) {
-                                throw new RuntimeException("result: table(" + currentTable + ") function("
-                                        + groups + ") having condition value(" + value + ") type error");
-                            }
-                        }
-                    }
+                    break;
+                }
+                case FUNCTION: {
+                    checkFunction(resultColumn, currentTable, tcInfo, columnCheckRepeatedSet);
                     hasColumnOrFunction = true;
-                } else {
-                    Map<String, List<String>> dateColumn = QueryJsonUtil.convertDateResult(obj);
-                    if (QueryUtil.isNotNull(dateColumn)) {
-                        for (String column : dateColumn.keySet()) {
-                            checkColumn(column, currentTable, tcInfo, columnCheckRepeatedSet);
-                        }
-                        hasColumnOrFunction = true;
-                    } else {
-                        innerList.add(obj);
-                    }
+                    break;
+                }
+                default: {
+                    innerList.add(resultColumn);
                 }
             }
         }
@@ -244,12 +216,8 @@ public class ReqResult implements Serializable {
             throw new RuntimeException("result: table(" + currentTable + ") no columns");
         }
 
-        for (Object obj : innerList) {
-            Map<String, ReqResult> inner = QueryJsonUtil.convertInnerResult(obj);
-            if (QueryUtil.isNull(inner)) {
-                throw new RuntimeException("result: table(" + currentTable + ") relation(" + obj + ") error");
-            }
-            for (Map.Entry<String, ReqResult> entry : inner.entrySet()) {
+        for (ReqResultColumn resultColumn : innerList) {
+            for (Map.Entry<String, ReqResult> entry : resultColumn.getInnerMap().entrySet()) {
                 String innerColumn = entry.getKey();
                 ReqResult innerResult = entry.getValue();
                 if (QueryUtil.isNull(innerResult)) {
@@ -281,13 +249,41 @@ public class ReqResult implements Serializable {
         }
     }
 
-    private static void checkFunctionColumn(TableColumnInfo tcInfo, String column, String currentTable, List<?> groups) {
+    private static void checkFunction(ReqResultColumn function, String currentTable,
+                                      TableColumnInfo tcInfo, Set<String> columnCheckRepeatedSet) {
+        ResultGroup group = function.getGroup();
+        String column = function.getColumn();
+        if (group == ResultGroup.COUNT_DISTINCT) {
+            for (String col : column.split(",")) {
+                checkFunctionColumn(tcInfo, col, currentTable, function);
+            }
+        } else {
+            if (group.needCheckColumn(column)) {
+                checkFunctionColumn(tcInfo, column, currentTable, function);
+            }
+        }
+
+        String functionAlias = group.generateAlias(column);
+        if (columnCheckRepeatedSet.contains(functionAlias)) {
+            throw new RuntimeException("result: table(" + currentTable + ") function(" + function.getReturnColumn() + ") has repeated");
+        }
+        columnCheckRepeatedSet.add(functionAlias);
+
+        for (Object value : function.getHavingValues()) {
+            if (group.checkNotHavingValue(value)) {
+                throw new RuntimeException("result: table(" + currentTable + ") function("
+                        + function.getReturnColumn() + ") having condition value(" + value + ") type error");
+            }
+        }
+    }
+
+    private static void checkFunctionColumn(TableColumnInfo tcInfo, String column, String currentTable, ReqResultColumn function) {
         Table table = tcInfo.findTableWithAlias(QueryUtil.getTableName(column, currentTable));
         if (QueryUtil.isNull(table)) {
-            throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") has no defined table");
+            throw new RuntimeException("result: table(" + currentTable + ") function(" + function.getReturnColumn() + ") has no defined table");
         }
         if (QueryUtil.isNull(tcInfo.findTableColumnWithAlias(table, QueryUtil.getColumnName(column)))) {
-            throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") has no defined column");
+            throw new RuntimeException("result: table(" + currentTable + ") function(" + function.getReturnColumn() + ") has no defined column");
         }
     }
 
@@ -313,41 +309,31 @@ public class ReqResult implements Serializable {
     public String generateAllSelectSql(String mainTable, TableColumnInfo tcInfo, boolean needAlias, boolean force) {
         Set<String> columnNameSet = new LinkedHashSet<>();
         columnNameSet.addAll(selectColumn(mainTable, tcInfo, needAlias, force));
-        columnNameSet.addAll(innerColumn(mainTable, tcInfo, needAlias));
+        columnNameSet.addAll(innerColumn(mainTable, tcInfo, needAlias, force));
         return String.join(", ", columnNameSet);
     }
 
     private Set<String> selectColumn(String mainTable, TableColumnInfo tcInfo, boolean needAlias, boolean force) {
         Set<String> columnNameSet = new LinkedHashSet<>();
         String currentTableName = QueryUtil.isEmpty(table) ? mainTable : table;
-        for (Object obj : handleColumn(mainTable, tcInfo, force)) {
-            if (obj instanceof String) {
-                String col = (String) obj;
-                columnNameSet.add(QueryUtil.getQueryColumnAndAlias(needAlias, col, currentTableName, tcInfo));
-            } else {
-                Map<String, List<String>> dateColumn = QueryJsonUtil.convertDateResult(obj);
-                if (QueryUtil.isNotEmpty(dateColumn)) {
-                    for (String column : dateColumn.keySet()) {
-                        columnNameSet.add(QueryUtil.getQueryColumnAndAlias(needAlias, column, currentTableName, tcInfo));
-                    }
-                }
+        for (ReqResultColumn resultColumn : projection(mainTable, tcInfo, force)) {
+            ReqResultColumn.Type type = resultColumn.getType();
+            if (type == ReqResultColumn.Type.COLUMN || type == ReqResultColumn.Type.DATE) {
+                columnNameSet.add(QueryUtil.getQueryColumnAndAlias(needAlias, resultColumn.getColumn(), currentTableName, tcInfo));
             }
         }
         return columnNameSet;
     }
 
-    private Set<String> innerColumn(String mainTable, TableColumnInfo tcInfo, boolean needAlias) {
+    private Set<String> innerColumn(String mainTable, TableColumnInfo tcInfo, boolean needAlias, boolean force) {
         Set<String> columnNameSet = new LinkedHashSet<>();
         if (QueryUtil.isNotEmpty(columns)) {
             String currentTable = QueryUtil.isEmpty(table) ? mainTable : table;
 
             Set<String> innerTableSet = new LinkedHashSet<>();
-            for (Object obj : columns) {
-                if (!(obj instanceof String) && !(obj instanceof List<?>)) {
-                    Map<String, ReqResult> inner = QueryJsonUtil.convertInnerResult(obj);
-                    if (QueryUtil.isNotEmpty(inner)) {
-                        innerTableSet.addAll(inner.keySet());
-                    }
+            for (ReqResultColumn resultColumn : projection(mainTable, tcInfo, force)) {
+                if (resultColumn.getType() == ReqResultColumn.Type.INNER) {
+                    innerTableSet.addAll(resultColumn.getInnerMap().keySet());
                 }
             }
 
@@ -369,7 +355,7 @@ public class ReqResult implements Serializable {
     public Set<String> needRemoveColumn(String mainTable, TableColumnInfo tcInfo, boolean needAlias, boolean force) {
         Set<String> selectColumnSet = selectColumn(mainTable, tcInfo, needAlias, force);
         Set<String> removeColumnSet = new HashSet<>();
-        for (String ic : innerColumn(mainTable, tcInfo, needAlias)) {
+        for (String ic : innerColumn(mainTable, tcInfo, needAlias, force)) {
             if (!selectColumnSet.contains(ic)) {
                 removeColumnSet.add(calcRemoveColumn(ic));
             }
@@ -380,18 +366,15 @@ public class ReqResult implements Serializable {
     public Map<String, ReqResult> innerResult(TableColumnInfo tcInfo, boolean force) {
         Map<String, ReqResult> returnMap = new LinkedHashMap<>();
         if (QueryUtil.isNotEmpty(columns)) {
-            for (Object obj : columns) {
-                if (!(obj instanceof String) && !(obj instanceof List<?>)) {
-                    Map<String, ReqResult> inner = QueryJsonUtil.convertInnerResult(obj);
-                    if (QueryUtil.isNotEmpty(inner)) {
-                        for (Map.Entry<String, ReqResult> entry : inner.entrySet()) {
-                            ReqResult innerResult = entry.getValue();
-                            if (QueryUtil.isNotNull(innerResult)) {
-                                if (QueryUtil.isEmpty(innerResult.getColumns())) {
-                                    innerResult.setColumns(innerResult.handleColumn(null, tcInfo, force));
-                                }
-                                returnMap.put(entry.getKey(), innerResult);
+            for (ReqResultColumn resultColumn : projection(null, tcInfo, force)) {
+                if (resultColumn.getType() == ReqResultColumn.Type.INNER) {
+                    for (Map.Entry<String, ReqResult> entry : resultColumn.getInnerMap().entrySet()) {
+                        ReqResult innerResult = entry.getValue();
+                        if (QueryUtil.isNotNull(innerResult)) {
+                            if (QueryUtil.isEmpty(innerResult.getColumns())) {
+                                innerResult.setColumns(innerResult.handleColumn(null, tcInfo, force));
                             }
+                            returnMap.put(entry.getKey(), innerResult);
                         }
                     }
                 }
@@ -402,16 +385,16 @@ public class ReqResult implements Serializable {
 
     public String generateFunctionSql(String mainTable, boolean needAlias, TableColumnInfo tcInfo, boolean force) {
         StringJoiner sj = new StringJoiner(", ");
-        for (Object obj : handleColumn(mainTable, tcInfo, force)) {
-            if (obj instanceof List<?>) {
-                sj.add(generateFunctionColumn((List<?>) obj, mainTable, needAlias, tcInfo));
+        for (ReqResultColumn resultColumn : projection(mainTable, tcInfo, force)) {
+            if (resultColumn.getType() == ReqResultColumn.Type.FUNCTION) {
+                sj.add(generateFunctionColumn(resultColumn, mainTable, needAlias, tcInfo));
             }
         }
         return sj.toString();
     }
-    private String generateFunctionColumn(List<?> groups, String mainTable, boolean needAlias, TableColumnInfo tcInfo) {
-        String column = QueryUtil.toStr(groups.get(2));
-        ResultGroup group = ResultGroup.deserializer(QueryUtil.toStr(groups.get(1)));
+    private String generateFunctionColumn(ReqResultColumn function, String mainTable, boolean needAlias, TableColumnInfo tcInfo) {
+        String column = function.getColumn();
+        ResultGroup group = function.getGroup();
         String columnInfo;
         if (group == ResultGroup.COUNT_DISTINCT) {
             StringJoiner funSj = new StringJoiner(", ");
@@ -473,28 +456,21 @@ public class ReqResult implements Serializable {
         // 只支持 AND 条件过滤, 复杂的嵌套暂没有想到好的抽象方式
         StringJoiner groupSj = new StringJoiner(" AND ");
         if (QueryUtil.isNotEmpty(columns)) {
-            for (Object obj : columns) {
-                if (obj instanceof List<?>) {
-                    List<?> groups = (List<?>) obj;
-                    int size = groups.size();
-                    if (size > 4) {
-                        String column = QueryUtil.toStr(groups.get(2));
-                        ResultGroup group = ResultGroup.deserializer(QueryUtil.toStr(groups.get(1)));
-                        String groupAlias = group.generateAlias(QueryUtil.getQueryColumn(needAlias, column, mainTable, tcInfo));
-
-                        String tableName = QueryUtil.getTableName(column, mainTable);
-                        String columnName = QueryUtil.getColumnName(column);
-                        Class<?> fieldType = tcInfo.findTableColumn(tableName, columnName).getFieldType();
-                        // 先右移 1 位除以 2, 再左移 1 位乘以 2, 变成偶数
-                        int evenSize = size >> 1 << 1;
-                        for (int i = 3; i < evenSize; i += 2) {
-                            ConditionType conditionType = ConditionType.deserializer(groups.get(i));
-                            Object value = groups.get(i + 1);
-
-                            String sql = conditionType.generateSql(groupAlias, fieldType, value, params, printSql);
-                            if (QueryUtil.isNotEmpty(sql)) {
-                                groupSj.add(sql);
-                            }
+            for (ReqResultColumn resultColumn : projection(mainTable, tcInfo, false)) {
+                if (resultColumn.getType() == ReqResultColumn.Type.FUNCTION && QueryUtil.isNotEmpty(resultColumn.getHavingTypes())) {
+                    String column = resultColumn.getColumn();
+                    ResultGroup group = resultColumn.getGroup();
+                    String groupAlias = group.generateAlias(QueryUtil.getQueryColumn(needAlias, column, mainTable, tcInfo));
+
+                    String tableName = QueryUtil.getTableName(column, mainTable);
+                    String columnName = QueryUtil.getColumnName(column);
+                    Class<?> fieldType = tcInfo.findTableColumn(tableName, columnName).getFieldType();
+                    List<ConditionType> havingTypes = resultColumn.getHavingTypes();
+                    List<Object> havingValues = resultColumn.getHavingValues();
+                    for (int i = 0; i < havingTypes.size(); i++) {
+                        String sql = havingTypes.get(i).generateSql(groupAlias, fieldType, havingValues.get(i), params, printSql);
+                        if (QueryUtil.isNotEmpty(sql)) {
+                            groupSj.add(sql);
                         }
                     }
                 }
@@ -507,33 +483,34 @@ public class ReqResult implements Serializable {
         String innerTableName = table;
 
         Set<String> columnSet = new LinkedHashSet<>();
-        for (Object obj : handleColumn(null, tcInfo, force)) {
-            if (obj instanceof String) {
-                columnSet.add(QueryUtil.getQueryColumnAndAlias(false, (String) obj, innerTableName, tcInfo));
-            } else if (obj instanceof List<?>) {
-                columnSet.add(generateFunctionColumn((List<?>) obj, innerTableName, false, tcInfo));
-            } else {
-                Map<String, List<String>> dateColumn = QueryJsonUtil.convertDateResult(obj);
-                if (QueryUtil.isNotEmpty(dateColumn)) {
-                    for (String column : dateColumn.keySet()) {
-                        String tableName = QueryUtil.getTableName(column, innerTableName);
-                        if (tableName.equals(innerTableName)) {
-                            columnSet.add(QueryUtil.getQueryColumnAndAlias(false, column, innerTableName, tcInfo));
-                        }
+        for (ReqResultColumn resultColumn : projection(null, tcInfo, force)) {
+            switch (resultColumn.getType()) {
+                case COLUMN: {
+                    columnSet.add(QueryUtil.getQueryColumnAndAlias(false, resultColumn.getColumn(), innerTableName, tcInfo));
+                    break;
+                }
+                case FUNCTION: {
+                    columnSet.add(generateFunctionColumn(resultColumn, innerTableName, false, tcInfo));
+                    break;
+                }
+                case DATE: {
+                    String column = resultColumn.getColumn();
+                    String tableName = QueryUtil.getTableName(column, innerTableName);
+                    if (tableName.equals(innerTableName)) {
+                        columnSet.add(QueryUtil.getQueryColumnAndAlias(false, column, innerTableName, tcInfo));
                     }
-                } else {
-                    Map<String, ReqResult> inner = QueryJsonUtil.convertInnerResult(obj);
-                    if (QueryUtil.isNotNull(inner)) {
-                        for (ReqResult innerInnerResult : inner.values()) {
-                            String innerInnerTable = innerInnerResult.getTable();
-                            TableColumnRelation relation = tcInfo.findRelationByMasterChild(innerTableName, innerInnerTable);
-                            if (QueryUtil.isNull(relation)) {
-                                relation = tcInfo.findRelationByMasterChild(innerInnerTable, innerTableName);
-                            }
-                            if (QueryUtil.isNotNull(relation)) {
-                                String column = relation.getOneColumn();
-                                columnSet.add(QueryUtil.getQueryColumnAndAlias(false, column, innerTableName, tcInfo));
-                            }
+                    break;
+                }
+                default: {
+                    for (ReqResult innerInnerResult : resultColumn.getInnerMap().values()) {
+                        String innerInnerTable = innerInnerResult.getTable();
+                        TableColumnRelation relation = tcInfo.findRelationByMasterChild(innerTableName, innerInnerTable);
+                        if (QueryUtil.isNull(relation)) {
+                            relation = tcInfo.findRelationByMasterChild(innerInnerTable, innerTableName);
+                        }
+                        if (QueryUtil.isNotNull(relation)) {
+                            String column = relation.getOneColumn();
+                            columnSet.add(QueryUtil.getQueryColumnAndAlias(false, column, innerTableName, tcInfo));
                         }
                     }
                 }
@@ -564,83 +541,4 @@ public class ReqResult implements Serializable {
             }
         }
     }
-
-
-    public void handleData(String mainTable, boolean needAlias, Map<String, Object> data, TableColumnInfo tcInfo, boolean force) {
-        String currentTable = QueryUtil.isEmpty(table) ? mainTable : table;
-        for (Object obj : handleColumn(mainTable, tcInfo, force)) {
-            if (QueryUtil.isNotNull(obj)) {
-                if (obj instanceof String) {
-                    String column = (String) obj;
-                    String tableName = QueryUtil.getTableName(column, currentTable);
-                    String columnName = QueryUtil.getColumnName(column);
-                    Class<?> fieldType = tcInfo.findTableColumn(tableName, columnName).getFieldType();
-                    if (QueryUtil.serializableToStr(fieldType)) {
-                        String str = QueryUtil.toStr(data.get(column));
-                        if (QueryUtil.isNotEmpty(str)) {
-                            data.put(columnName, str);
-                        }
-                    } else if (Date.class.isAssignableFrom(fieldType)) {
-                        Date date = QueryUtil.toDate(data.get(columnName));
-                        if (QueryUtil.isNotNull(date)) {
-                            data.put(columnName, QueryUtil.format(date));
-                        }
-                    } else if (TemporalAccessor.class.isAssignableFrom(fieldType)) {
-                        TemporalAccessor date = QueryUtil.toLocalDate(data.get(columnName));
-                        if (QueryUtil.isNotNull(date)) {
-                            data.put(columnName, QueryUtil.format(date));
-                        }
-                    }
-                } else if (obj instanceof List<?>) {
-                    List<?> groups = (List<?>) obj;
-                    ResultGroup group = ResultGroup.deserializer(QueryUtil.toStr(groups.get(1)));
-                    String column = QueryUtil.toStr(groups.get(2));
-                    String useColumn;
-                    if (group.needCheckColumn(column)) {
-                        useColumn = QueryUtil.getQueryColumn(needAlias, column, mainTable, tcInfo);
-                    } else {
-                        useColumn = column;
-                    }
-                    Object groupInfo = data.remove(group.generateAlias(useColumn));
-                    if (QueryUtil.isNotNull(groupInfo)) {
-                        String returnColumn = QueryUtil.toStr(groups.get(0));
-                        TemporalAccessor date = QueryUtil.toLocalDate(groupInfo);
-                        if (QueryUtil.isNotNull(date)) {
-                            String dateInfo = null;
-                            int size = groups.size();
-                            if (size > 3) {
-                                List<String> values = QueryJsonUtil.convertList(groups.get(size - 1), String.class);
-                                if (QueryUtil.isNotEmpty(values)) {
-                                    String pattern = values.get(0);
-                                    String timezone = (values.size() > 1) ? values.get(1) : null;
-                                    dateInfo = QueryUtil.format(date, pattern, timezone);
-                                }
-                            }
-                            if (QueryUtil.isEmpty(dateInfo)) {
-                                dateInfo = QueryUtil.format(date);
-                            }
-                            data.put(returnColumn, dateInfo);
-                        } else {
-                            data.put(returnColumn, groupInfo);
-                        }
-                    }
-                } else {
-                    Map<String, List<String>> dateColumn = QueryJsonUtil.convertDateResult(obj);
-                    if (QueryUtil.isNotEmpty(dateColumn)) {
-                        for (Map.Entry<String, List<String>> entry : dateColumn.entrySet()) {
-                            List<String> values = entry.getValue();
-                            if (QueryUtil.isNotEmpty(values)) {
-                                TemporalAccessor date = QueryUtil.toLocalDate(data.get(entry.getKey()));
-                                if (QueryUtil.isNotNull(date)) {
-                                    String pattern = values.get(0);
-                                    String timezone = (values.size() > 1) ? values.get(1) : null;
-                                    data.put(entry.getKey(), QueryUtil.format(date, pattern, timezone));
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-    }
 }
@@ -0,0 +1,192 @@
+package com.github.liuanxin.query.model;
+
+import com.github.liuanxin.query.enums.ConditionType;
+import com.github.liuanxin.query.enums.ResultGroup;
+import com.github.liuanxin.query.util.QueryJsonUtil;
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * <pre>
+ * ReqResult 里 columns 的每一项解析后的结构, 解析一次之后生成 sql 及处理每一行数据时都直接使用, 不再做 json 转换
+ *
+ * "id"                                              ->  COLUMN
+ * { "create_time" : [ "yyyy-MM-dd HH:mm", "GMT+8" ] } ->  DATE(每个列一项, 格式化器提前生成)
+ * [ "ghi", "sum", "price", "gt", 100.5 ]            ->  FUNCTION(含 HAVING 条件)
+ * { "address": { "table": "orderAddress", ... } }    ->  INNER
+ * </pre>
+ */
+public final class ReqResultColumn {
+
+    public enum Type { COLUMN, DATE, FUNCTION, INNER }
+
+    private final Type type;
+    /** COLUMN DATE 时是列, FUNCTION 时是函数里的列 */
+    private final String column;
+    /** DATE 时的格式, FUNCTION 的结果是日期时的格式, 为空则使用默认格式 */
+    private final DateTimeFormatter formatter;
+
+    /** FUNCTION 时接口响应回去时的属性 */
+    private final String returnColumn;
+    private final ResultGroup group;
+    private final List<ConditionType> havingTypes;
+    private final List<Object> havingValues;
+
+    private final Map<String, ReqResult> innerMap;
+
+    private ReqResultColumn(Type type, String column, DateTimeFormatter formatter, String returnColumn, ResultGroup group,
+                            List<ConditionType> havingTypes, List<Object> havingValues, Map<String, ReqResult> innerMap) {
+        this.type = type;
+        this.column = column;
+        this.formatter = formatter;
+        this.returnColumn = returnColumn;
+        this.group = group;
+        this.havingTypes = havingTypes;
+        this.havingValues = havingValues;
+        this.innerMap = innerMap;
+    }
+
+    public Type getType() {
+        return type;
+    }
+    public String getColumn() {
+        return column;
+    }
+    public DateTimeFormatter getFormatter() {
+        return formatter;
+    }
+    public String getReturnColumn() {
+        return returnColumn;
+    }
+    public ResultGroup getGroup() {
+        return group;
+    }
+    public List<ConditionType> getHavingTypes() {
+        return havingTypes;
+    }
+    public List<Object> getHavingValues() {
+        return havingValues;
+    }
+    public Map<String, ReqResult> getInnerMap() {
+        return innerMap;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + (type == Type.INNER ? innerMap : column) + ")";
+    }
+
+
+    public static ReqResultColumn column(String column) {
+        return new ReqResultColumn(Type.COLUMN, column, null, null, null, null, null, null);
+    }
+
+    /** 解析 columns, 结构有误则抛出异常 */
+    public static List<ReqResultColumn> parse(List<?> columns, String currentTable) {
+        List<ReqResultColumn> returnList = new ArrayList<>();
+        for (Object obj : columns) {
+            if (QueryUtil.isNotNull(obj)) {
+                if (obj instanceof String) {
+                    returnList.add(column((String) obj));
+                } else if (obj instanceof List<?>) {
+                    returnList.add(parseFunction((List<?>) obj, currentTable));
+                } else {
+                    parseDateOrInner(obj, currentTable, returnList);
+                }
+            }
+        }
+        return Collections.unmodifiableList(returnList);
+    }
+
+    private static ReqResultColumn parseFunction(List<?> groups, String currentTable) {
+        if (QueryUtil.isEmpty(groups)) {
+            throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") error");
+        }
+        int size = groups.size();
+        if (size < 3) {
+            throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") data error");
+        }
+        ResultGroup group = ResultGroup.deserializer(QueryUtil.toStr(groups.get(1)));
+        if (QueryUtil.isNull(group)) {
+            throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") type error");
+        }
+        String column = QueryUtil.toStr(groups.get(2));
+        if (QueryUtil.isEmpty(column)) {
+            throw new RuntimeException("result: table(" + currentTable + ") function(" + groups + ") column error");
+        }
+
+        List<ConditionType> havingTypes = new ArrayList<>();
+        List<Object> havingValues = new ArrayList<>();
+        if (size > 4) {
+            // 先右移 1 位除以 2, 再左移 1 位乘以 2, 变成偶数
+            int evenSize = size >> 1 << 1;
+            for (int i = 3; i < evenSize; i += 2) {
+                ConditionType conditionType = ConditionType.deserializer(groups.get(i));
+                if (QueryUtil.isNull(conditionType)) {
+                    throw new RuntimeException("result: table(" + currentTable + ") function("
+                            + groups + ") having condition error");
+                }
+                havingTypes.add(conditionType);
+                havingValues.add(groups.get(i + 1));
+            }
+        }
+
+        // 最后一个参数如果是数组, 则用于给 date 类型做转换: [ "格式", "时区" ]
+        DateTimeFormatter formatter = null;
+        if (size > 3) {
+            Object last = groups.get(size - 1);
+            if (last instanceof List<?>) {
+                formatter = toFormatter((List<?>) last);
+            }
+        }
+        return new ReqResultColumn(Type.FUNCTION, column, formatter, QueryUtil.toStr(groups.get(0)), group,
+                Collections.unmodifiableList(havingTypes), Collections.unmodifiableList(havingValues), null);
+    }
+
+    private static void parseDateOrInner(Object obj, String currentTable, List<ReqResultColumn> returnList) {
+        Map<?, ?> map = (obj instanceof Map<?, ?>) ? (Map<?, ?>) obj : QueryJsonUtil.convertData(obj);
+        if (QueryUtil.isEmpty(map)) {
+            throw new RuntimeException("result: table(" + currentTable + ") relation(" + obj + ") error");
+        }
+
+        boolean allDate = true;
+        for (Object value : map.values()) {
+            if (QueryUtil.isNotNull(value) && !(value instanceof List<?>)) {
+                allDate = false;
+                break;
+            }
+        }
+        if (allDate) {
+            // { "create_time" : [ "yyyy-MM-dd HH:mm", "GMT+8" ] }
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                DateTimeFormatter formatter = QueryUtil.isNull(entry.getValue()) ? null : toFormatter((List<?>) entry.getValue());
+                returnList.add(new ReqResultColumn(Type.DATE, QueryUtil.toStr(entry.getKey()), formatter,
+                        null, null, null, null, null));
+            }
+        } else {
+            // { "address": { "table": "orderAddress", "columns": [ ... ] } }
+            Map<String, ReqResult> innerMap = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                Object value = entry.getValue();
+                ReqResult innerResult = (value instanceof ReqResult) ? (ReqResult) value : QueryJsonUtil.convert(value, ReqResult.class);
+                if (QueryUtil.isNull(innerResult)) {
+                    throw new RuntimeException("result: table(" + currentTable + ") relation(" + obj + ") error");
+                }
+                innerMap.put(QueryUtil.toStr(entry.getKey()), innerResult);
+            }
+            returnList.add(new ReqResultColumn(Type.INNER, null, null, null, null, null, null,
+                    Collections.unmodifiableMap(innerMap)));
+        }
+    }
+
+    private static DateTimeFormatter toFormatter(List<?> values) {
+        if (QueryUtil.isEmpty(values)) {
+            return null;
+        }
+        String pattern = QueryUtil.toStr(values.get(0));
+        String timezone = (values.size() > 1) ? QueryUtil.toStr(values.get(1)) : null;
+        return QueryUtil.isEmpty(pattern) ? null : QueryUtil.toFormatter(pattern, timezone);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.liuanxin.query.model;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+
+/** 刷新表结构后发布的事件: 新旧版本及新增、重新加载、删除的表 */
+public class SchemaChangeEvent implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** 刷新之前的表结构版本 */
+    private final long oldVersion;
+    /** 刷新之后的表结构版本 */
+    private final long version;
+    /** true 表示全量加载(之前没有每个表的签名), 此时 changeTableList 是前后都有的所有表 */
+    private final boolean full;
+    private final List<String> addTableList;
+    private final List<String> changeTableList;
+    private final List<String> removeTableList;
+
+    public SchemaChangeEvent(long oldVersion, long version, boolean full, List<String> addTableList,
+                             List<String> changeTableList, List<String> removeTableList) {
+        this.oldVersion = oldVersion;
+        this.version = version;
+        this.full = full;
+        this.addTableList = addTableList;
+        this.changeTableList = changeTableList;
+        this.removeTableList = removeTableList;
+    }
+
+    public long getOldVersion() {
+        return oldVersion;
+    }
+    public long getVersion() {
+        return version;
+    }
+    public boolean isFull() {
+        return full;
+    }
+    public List<String> getAddTableList() {
+        return addTableList;
+    }
+    public List<String> getChangeTableList() {
+        return changeTableList;
+    }
+    public List<String> getRemoveTableList() {
+        return removeTableList;
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SchemaChangeEvent that = (SchemaChangeEvent) o;
+        return oldVersion == that.oldVersion && version == that.version && full == that.full
+                && Objects.equals(addTableList, that.addTableList) && Objects.equals(changeTableList, that.changeTableList)
+                && Objects.equals(removeTableList, that.removeTableList);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(oldVersion, version, full, addTableList, changeTableList, removeTableList);
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaChangeEvent{" +
+                "oldVersion=" + oldVersion +
+                ", version=" + version +
+                ", full=" + full +
+                ", addTableList=" + addTableList +
+                ", changeTableList=" + changeTableList +
+                ", removeTableList=" + removeTableList +
+                '}';
+    }
+}
@@ -4,8 +4,9 @@ import com.github.liuanxin.query.util.QuerySqlUtil;
 import com.github.liuanxin.query.util.QueryUtil;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 @SuppressWarnings("DuplicatedCode")
 public class Table implements Serializable {
@@ -35,6 +36,17 @@ public class Table implements Serializable {
     /** primary key */
     private List<String> idKey;
 
+    /** 写入用的 sql 缓存的最大数量, 超出时清空重新缓存 */
+    private static final int WRITE_SQL_CACHE_SIZE = 64;
+    /** 写入的列(columnMap 中的下标) -> INSERT INTO t(a, b) VALUES (?, ?) */
+    private transient volatile Map<BitSet, String> insertSqlCache;
+    /** 更新的列(columnMap 中的下标) -> UPDATE t SET a = ?, b = ? */
+    private transient volatile Map<BitSet, String> updateSqlCache;
+    /** 数据库 + 冲突时更新的列 -> ON DUPLICATE KEY UPDATE ... 或 ON CONFLICT (...) DO UPDATE ... */
+    private transient volatile Map<String, String> upsertSqlCache;
+    /** 按 columnMap 顺序处理过关键字的列名 */
+    private transient volatile String[] sqlColumns;
+
     public Table() {}
     public Table(String name, String desc, String alias, String logicColumn, String logicValue,
                  String logicDeleteValue, Map<String, TableColumn> columnMap) {
@@ -63,6 +75,7 @@ public class Table implements Serializable {
     }
     public void setName(String name) {
         this.name = name;
+        clearWriteCache();
     }
 
     public String getDesc() {
@@ -105,6 +118,7 @@ public class Table implements Serializable {
     }
     public void setColumnMap(Map<String, TableColumn> columnMap) {
         this.columnMap = columnMap;
+        clearWriteCache();
     }
 
     public List<String> getIdKey() {
@@ -190,10 +204,12 @@ public class Table implements Serializable {
     }
     private String firstInsertMap(Map<String, Object> data, boolean generateNullField, List<String> placeholderList,
                                   List<Object> params, StringBuilder printSql) {
-        StringJoiner sj = new StringJoiner(", ");
+        BitSet columnSet = new BitSet(columnMap.size());
         Map<String, String> charLengthMap = new LinkedHashMap<>();
         List<String> printList = new ArrayList<>();
+        int index = 0;
         for (TableColumn column : columnMap.values()) {
+            int i = index++;
             Object obj = data.get(column.getAlias());
             if (QueryUtil.isNotNull(obj) || generateNullField) {
                 if (column.getFieldType() == String.class) {
@@ -203,7 +219,7 @@ public class Table implements Serializable {
                         charLengthMap.put(column.getAlias(), String.format("max(%s) current(%s)", charLen, dataLen));
                     }
                 }
-                sj.add(QuerySqlUtil.toSqlField(column.getName()));
+                columnSet.set(i);
                 placeholderList.add("?");
                 printList.add(QuerySqlUtil.toPrintValue(column.getFieldType(), obj));
                 params.add(obj);
@@ -212,14 +228,7 @@ public class Table implements Serializable {
         if (QueryUtil.isNotEmpty(charLengthMap)) {
             throw new RuntimeException(String.format("table(%s) data length error -> %s", alias, QueryUtil.toStr(charLengthMap)));
         }
-        if (sj.length() == 0) {
-            return "";
-        }
-        String table = QuerySqlUtil.toSqlField(name);
-        String values = String.join(", ", placeholderList);
-        String print = String.join(", ", printList);
-        printSql.append("INSERT INTO ").append(table).append("(").append(sj).append(") VALUES (").append(print).append(")");
-        return "INSERT INTO " + table + "(" + sj + ") VALUES (" + values + ")";
+        return insertSql(columnSet, printList, printSql);
     }
     public String generateBatchInsertMap(List<Map<String, Object>> list, boolean generateNullField,
                                          List<Object> params, StringBuilder printSql) {
@@ -285,90 +294,100 @@ public class Table implements Serializable {
         }
     }
 
+    /** 按 (类, 当前的列) 生成的字段取值器, 取出的值跟 columnMap 的顺序一致 */
+    public TableFieldAccessor fieldAccessor(Class<?> clazz) {
+        return TableFieldAccessor.of(clazz, columnMap.values());
+    }
+
     public <T> String generateInsert(T obj, boolean generateNullField, List<Object> params, StringBuilder printSql) {
-        return firstInsert(obj, obj.getClass(), generateNullField, new ArrayList<>(), params, printSql);
+        Object[] values = fieldAccessor(obj.getClass()).read(obj);
+        return generateInsertValues(values, generateNullField, params, printSql);
     }
-    private <T> String firstInsert(T obj, Class<?> clazz, boolean generateNullField,
-                                   List<String> placeholderList, List<Object> params, StringBuilder printSql) {
-        StringJoiner sj = new StringJoiner(", ");
+    /** values 是使用 fieldAccessor 读出来的字段值 */
+    public String generateInsertValues(Object[] values, boolean generateNullField, List<Object> params, StringBuilder printSql) {
+        return firstInsert(values, generateNullField, new ArrayList<>(), params, printSql);
+    }
+    private String firstInsert(Object[] values, boolean generateNullField,
+                               List<String> placeholderList, List<Object> params, StringBuilder printSql) {
+        BitSet columnSet = new BitSet(values.length);
         List<String> printList = new ArrayList<>();
-        List<String> errorList = new ArrayList<>();
         Map<String, String> charLengthMap = new LinkedHashMap<>();
+        int index = 0;
         for (TableColumn column : columnMap.values()) {
-            String fieldName = column.getFieldName();
-            try {
-                Object fieldData = QueryUtil.getFieldData(clazz, fieldName, obj);
-                if (QueryUtil.isNotNull(fieldData) || generateNullField) {
-                    if (column.getFieldType() == String.class) {
-                        int dataLen = QueryUtil.toString(fieldData).length();
-                        int charLen = QueryUtil.toInt(column.getStrLen());
-                        if (charLen > 0 && dataLen > charLen) {
-                            charLengthMap.put(column.getAlias(), String.format("column(%s) max(%s) current(%s)", column.getName(), charLen, dataLen));
-                        }
+            int i = index++;
+            Object fieldData = values[i];
+            if (QueryUtil.isNotNull(fieldData) || generateNullField) {
+                if (column.getFieldType() == String.class) {
+                    int dataLen = QueryUtil.toString(fieldData).length();
+                    int charLen = QueryUtil.toInt(column.getStrLen());
+                    if (charLen > 0 && dataLen > charLen) {
+                        charLengthMap.put(column.getAlias(), String.format("column(%s) max(%s) current(%s)", column.getName(), charLen, dataLen));
                     }
-                    sj.add(QuerySqlUtil.toSqlField(column.getName()));
-                    placeholderList.add("?");
-                    printList.add(QuerySqlUtil.toPrintValue(column.getFieldType(), fieldData));
-                    params.add(fieldData);
                 }
-            } catch (IllegalAccessException e) {
-                errorList.add(fieldName);
+                columnSet.set(i);
+                placeholderList.add("?");
+                printList.add(QuerySqlUtil.toPrintValue(column.getFieldType(), fieldData));
+                params.add(fieldData);
             }
         }
-        if (QueryUtil.isNotEmpty(errorList)) {
-            throw new RuntimeException(String.format("table(%s) get field data error -> %s", alias, QueryUtil.toStr(errorList)));
-        }
         if (QueryUtil.isNotEmpty(charLengthMap)) {
             throw new RuntimeException(String.format("table(%s) data length error -> %s", alias, QueryUtil.toStr(charLengthMap)));
         }
-        if (sj.length() == 0) {
+        return insertSql(columnSet, printList, printSql);
+    }
+    private String insertSql(BitSet columnSet, List<String> printList, StringBuilder printSql) {
+        String sql = generateSingleInsert(columnSet);
+        if (QueryUtil.isEmpty(sql)) {
             return "";
         }
-        String table = QuerySqlUtil.toSqlField(name);
-        String values = String.join(", ", placeholderList);
-        String print = String.join(", ", printList);
-        printSql.append("INSERT INTO ").append(table).append("(").append(sj).append(") VALUES (").append(print).append(")");
-        return "INSERT INTO " + table + "(" + sj + ") VALUES (" + values + ")";
+        // INSERT INTO t(a, b) VALUES (?, ?)  ->  INSERT INTO t(a, b) VALUES (1, 'x')
+        int valuesIndex = sql.lastIndexOf(" VALUES (");
+        printSql.append(sql, 0, valuesIndex).append(" VALUES (").append(String.join(", ", printList)).append(")");
+        return sql;
     }
     public <T> String generateBatchInsert(List<T> list, boolean generateNullField, List<Object> params, StringBuilder printSql) {
         T first = QueryUtil.first(list);
         if (QueryUtil.isNull(first)) {
             return "";
         }
-        Class<?> clazz = first.getClass();
+        List<Object[]> rowList = fieldAccessor(first.getClass()).readAll(list);
+        return generateBatchInsertValues(rowList, generateNullField, params, printSql);
+    }
+    /** rowList 里的每一项是使用 fieldAccessor 读出来的一行的字段值 */
+    public String generateBatchInsertValues(List<Object[]> rowList, boolean generateNullField,
+                                            List<Object> params, StringBuilder printSql) {
+        Object[] first = QueryUtil.first(rowList);
+        if (QueryUtil.isNull(first)) {
+            return "";
+        }
         List<String> placeholderList = new ArrayList<>();
-        String sql = firstInsert(first, clazz, generateNullField, placeholderList, params, printSql);
+        String sql = firstInsert(first, generateNullField, placeholderList, params, printSql);
         if (QueryUtil.isEmpty(sql)) {
             return "";
         }
 
         StringJoiner sj = new StringJoiner(", ");
-        if (list.size() > 1) {
-            Map<Integer, List<String>> errorMap = new LinkedHashMap<>();
+        if (rowList.size() > 1) {
             Map<Integer, Map<String, String>> dataLengthMap = new LinkedHashMap<>();
             List<String> countErrorList = new ArrayList<>();
             int ps = placeholderList.size();
-            for (int i = 1; i < list.size(); i++) {
-                T obj = list.get(i);
+            for (int i = 1; i < rowList.size(); i++) {
+                Object[] row = rowList.get(i);
                 List<String> values = new ArrayList<>();
+                int index = 0;
                 for (TableColumn column : columnMap.values()) {
-                    String fieldName = column.getFieldName();
-                    try {
-                        Object fieldData = QueryUtil.getFieldData(clazz, fieldName, obj);
-                        if (QueryUtil.isNotNull(fieldData) || generateNullField) {
-                            if (column.getFieldType() == String.class) {
-                                int dataLen = QueryUtil.toString(fieldData).length();
-                                int maxLen = QueryUtil.toInt(column.getStrLen());
-                                if (maxLen > 0 && dataLen > maxLen) {
-                                    String msg = String.format("column(%s) max(%s) current(%s)", column.getName(), maxLen, dataLen);
-                                    dataLengthMap.computeIfAbsent(i, (k) -> new LinkedHashMap<>()).put(column.getAlias(), msg);
-                                }
+                    Object fieldData = row[index++];
+                    if (QueryUtil.isNotNull(fieldData) || generateNullField) {
+                        if (column.getFieldType() == String.class) {
+                            int dataLen = QueryUtil.toString(fieldData).length();
+                            int maxLen = QueryUtil.toInt(column.getStrLen());
+                            if (maxLen > 0 && dataLen > maxLen) {
+                                String msg = String.format("column(%s) max(%s) current(%s)", column.getName(), maxLen, dataLen);
+                                dataLengthMap.computeIfAbsent(i, (k) -> new LinkedHashMap<>()).put(column.getAlias(), msg);
                             }
-                            values.add("?");
-                            params.add(fieldData);
                         }
-                    } catch (IllegalAccessException e) {
-                        errorMap.computeIfAbsent(i, (k) -> new ArrayList<>()).add(fieldName);
+                        values.add("?");
+                        params.add(fieldData);
                     }
                 }
                 int vs = values.size();
@@ -379,9 +398,6 @@ public class Table implements Serializable {
                     sj.add("( " + String.join(", ", values) + " )");
                 }
             }
-            if (QueryUtil.isNotEmpty(errorMap)) {
-                throw new RuntimeException(String.format("table(%s) get field data error -> %s", alias, QueryUtil.toStr(errorMap)));
-            }
             if (QueryUtil.isNotEmpty(dataLengthMap)) {
                 throw new RuntimeException(String.format("table(%s) data length error -> %s", alias, QueryUtil.toStr(dataLengthMap)));
             }
@@ -398,6 +414,243 @@ public class Table implements Serializable {
     }
 
 
+    /** 按 columnMap 的顺序取出 map 里的值 */
+    public Object[] mapValues(Map<String, Object> data) {
+        Object[] values = new Object[columnMap.size()];
+        int index = 0;
+        for (TableColumn column : columnMap.values()) {
+            values[index++] = data.get(column.getAlias());
+        }
+        return values;
+    }
+
+    /** 一行数据需要写入的列(有值或 generateNullField 为 true)在 columnMap 中的下标 */
+    public BitSet insertColumnSet(Object[] row, boolean generateNullField) {
+        BitSet columnSet = new BitSet(row.length);
+        for (int i = 0; i < row.length; i++) {
+            if (QueryUtil.isNotNull(row[i]) || generateNullField) {
+                columnSet.set(i);
+            }
+        }
+        return columnSet;
+    }
+
+    /** 单行的 INSERT INTO t(a, b) VALUES (?, ?), 用于 jdbc 批量写入 */
+    public String generateSingleInsert(BitSet columnSet) {
+        Map<BitSet, String> cache = insertSqlCache;
+        if (QueryUtil.isNull(cache)) {
+            cache = new ConcurrentHashMap<>();
+            insertSqlCache = cache;
+        }
+        return cacheWriteSql(cache, columnSet, () -> {
+            String[] columns = sqlColumns();
+            StringJoiner sj = new StringJoiner(", ");
+            StringJoiner values = new StringJoiner(", ");
+            for (int i = columnSet.nextSetBit(0); i >= 0; i = columnSet.nextSetBit(i + 1)) {
+                sj.add(columns[i]);
+                values.add("?");
+            }
+            if (sj.length() == 0) {
+                return "";
+            }
+            return "INSERT INTO " + QuerySqlUtil.toSqlField(name) + "(" + sj + ") VALUES (" + values + ")";
+        });
+    }
+
+    /**
+     * 写入的列一样时 sql 也一样, 高频的单行写入不再每次拼接列名及处理关键字,
+     * 同样的 sql 文本也能让驱动端的预编译缓存命中. generateNullField 为 true 时所有列都写入, 也在 key 里体现
+     */
+    @SuppressWarnings("unchecked")
+    private static <K> String cacheWriteSql(Map<K, String> cache, K key, Supplier<String> generator) {
+        String sql = cache.get(key);
+        if (QueryUtil.isNull(sql)) {
+            sql = generator.get();
+            if (cache.size() >= WRITE_SQL_CACHE_SIZE) {
+                cache.clear();
+            }
+            cache.put((key instanceof BitSet) ? (K) ((BitSet) key).clone() : key, sql);
+        }
+        return sql;
+    }
+    private String[] sqlColumns() {
+        String[] columns = sqlColumns;
+        if (QueryUtil.isNull(columns)) {
+            columns = new String[columnMap.size()];
+            int index = 0;
+            for (TableColumn column : columnMap.values()) {
+                columns[index++] = QuerySqlUtil.toSqlField(column.getName());
+            }
+            sqlColumns = columns;
+        }
+        return columns;
+    }
+    private void clearWriteCache() {
+        insertSqlCache = null;
+        updateSqlCache = null;
+        upsertSqlCache = null;
+        sqlColumns = null;
+    }
+
+    /** 字符串的长度超过了列定义的长度则抛出异常 */
+    public void checkDataLength(List<Object[]> rowList) {
+        Map<Integer, Map<String, String>> dataLengthMap = new LinkedHashMap<>();
+        for (int i = 0; i < rowList.size(); i++) {
+            Object[] row = rowList.get(i);
+            int index = 0;
+            for (TableColumn column : columnMap.values()) {
+                Object fieldData = row[index++];
+                if (QueryUtil.isNotNull(fieldData) && column.getFieldType() == String.class) {
+                    int dataLen = QueryUtil.toString(fieldData).length();
+                    int maxLen = QueryUtil.toInt(column.getStrLen());
+                    if (maxLen > 0 && dataLen > maxLen) {
+                        String msg = String.format("column(%s) max(%s) current(%s)", column.getName(), maxLen, dataLen);
+                        dataLengthMap.computeIfAbsent(i, (k) -> new LinkedHashMap<>()).put(column.getAlias(), msg);
+                    }
+                }
+            }
+        }
+        if (QueryUtil.isNotEmpty(dataLengthMap)) {
+            throw new RuntimeException(String.format("table(%s) data length error -> %s", alias, QueryUtil.toStr(dataLengthMap)));
+        }
+    }
+
+
+    /** 列名、别名或字段名对应的列在 columnMap 中的下标, 对应不上的忽略 */
+    public BitSet columnSet(Collection<String> names) {
+        BitSet columnSet = new BitSet(columnMap.size());
+        if (QueryUtil.isNotEmpty(names)) {
+            int index = 0;
+            for (TableColumn column : columnMap.values()) {
+                if (names.contains(column.getName()) || names.contains(column.getAlias()) || names.contains(column.getFieldName())) {
+                    columnSet.set(index);
+                }
+                index++;
+            }
+        }
+        return columnSet;
+    }
+
+    /**
+     * 多行写入, 主键(mysql 是任意唯一键)冲突时更新 updateSet 里的列(只能是写入了的列, 不含主键):
+     *   mysql: INSERT INTO t(a, b) VALUES (?, ?), (?, ?) ON DUPLICATE KEY UPDATE b = VALUES(b)
+     *   postgresql: INSERT INTO t(a, b) VALUES (?, ?), (?, ?) ON CONFLICT (id) DO UPDATE SET b = EXCLUDED.b
+     * 没有要更新的列时冲突的行忽略
+     */
+    public String generateUpsert(BitSet insertSet, BitSet updateSet, int rows, boolean mysql) {
+        String insert = generateSingleInsert(insertSet);
+        if (QueryUtil.isEmpty(insert)) {
+            return "";
+        }
+        BitSet columnSet = (BitSet) updateSet.clone();
+        columnSet.and(insertSet);
+        for (int i : idIndex()) {
+            columnSet.clear(i);
+        }
+
+        String upsertKey = (mysql ? "mysql" : "postgresql") + columnSet;
+        Map<String, String> cache = upsertSqlCache;
+        if (QueryUtil.isNull(cache)) {
+            cache = new ConcurrentHashMap<>();
+            upsertSqlCache = cache;
+        }
+        String upsert = cacheWriteSql(cache, upsertKey, () -> {
+            String[] columns = sqlColumns();
+            StringJoiner sj = new StringJoiner(", ");
+            for (int i = columnSet.nextSetBit(0); i >= 0; i = columnSet.nextSetBit(i + 1)) {
+                sj.add(columns[i] + (mysql ? (" = VALUES(" + columns[i] + ")") : (" = EXCLUDED." + columns[i])));
+            }
+            if (mysql) {
+                if (sj.length() == 0) {
+                    // 没有要更新的列时更新成自己, 相当于忽略
+                    String id = QuerySqlUtil.toSqlField(idKey.get(0));
+                    return " ON DUPLICATE KEY UPDATE " + id + " = " + id;
+                }
+                return " ON DUPLICATE KEY UPDATE " + sj;
+            } else {
+                String conflict = " ON CONFLICT (" + idSelect(false) + ")";
+                return (sj.length() == 0) ? (conflict + " DO NOTHING") : (conflict + " DO UPDATE SET " + sj);
+            }
+        });
+
+        // INSERT INTO t(a, b) VALUES (?, ?)  ->  (?, ?)
+        String values = insert.substring(insert.lastIndexOf(" VALUES (") + 8);
+        StringBuilder sbd = new StringBuilder(insert);
+        for (int i = 1; i < rows; i++) {
+            sbd.append(", ").append(values);
+        }
+        return sbd.append(upsert).toString();
+    }
+
+    /** 主键列在 columnMap 中的下标 */
+    public int[] idIndex() {
+        int[] indexes = new int[idKey.size()];
+        int index = 0;
+        for (TableColumn column : columnMap.values()) {
+            int i = idKey.indexOf(column.getName());
+            if (i >= 0) {
+                indexes[i] = index;
+            }
+            index++;
+        }
+        return indexes;
+    }
+
+    /** 按主键更新时一行数据需要更新的列(有值或 generateNullField 为 true, 不含主键)在 columnMap 中的下标 */
+    public BitSet updateColumnSet(Object[] row, boolean generateNullField) {
+        BitSet columnSet = insertColumnSet(row, generateNullField);
+        for (int i : idIndex()) {
+            columnSet.clear(i);
+        }
+        return columnSet;
+    }
+
+    /** UPDATE t SET a = ?, b = ? WHERE id = ? AND deleted = 0, 用于 jdbc 批量按主键更新, 参数是更新的列再加上主键 */
+    public String generateBatchUpdateById(BitSet columnSet) {
+        if (columnSet.isEmpty()) {
+            return "";
+        }
+        StringJoiner where = new StringJoiner(" AND ");
+        for (String id : idKey) {
+            where.add(QuerySqlUtil.toSqlField(id) + " = ?");
+        }
+        return updateSetSql(columnSet) + " WHERE " + where + logicDeleteCondition(false, false);
+    }
+
+    /**
+     * 单主键时把多行不同的值放进一条 sql:
+     * UPDATE t SET a = CASE id WHEN ? THEN ? WHEN ? THEN ? END, b = CASE id ... END WHERE id IN (?, ?) AND deleted = 0
+     * 参数按列依次是 (主键, 值) 对, 最后是 IN 里的主键
+     */
+    public String generateCaseUpdateById(BitSet columnSet, List<Object[]> rowList, List<Object> params) {
+        if (columnSet.isEmpty() || idKey.size() != 1 || QueryUtil.isEmpty(rowList)) {
+            return "";
+        }
+        int idIndex = idIndex()[0];
+        String id = QuerySqlUtil.toSqlField(idKey.get(0));
+        String[] columns = sqlColumns();
+        StringBuilder when = new StringBuilder();
+        for (int j = 0; j < rowList.size(); j++) {
+            when.append(" WHEN ? THEN ?");
+        }
+        StringJoiner set = new StringJoiner(", ");
+        for (int i = columnSet.nextSetBit(0); i >= 0; i = columnSet.nextSetBit(i + 1)) {
+            set.add(columns[i] + " = CASE " + id + when + " END");
+            for (Object[] row : rowList) {
+                params.add(row[idIndex]);
+                params.add(row[i]);
+            }
+        }
+        StringJoiner in = new StringJoiner(", ");
+        for (Object[] row : rowList) {
+            in.add("?");
+            params.add(row[idIndex]);
+        }
+        return "UPDATE " + QuerySqlUtil.toSqlField(name) + " SET " + set
+                + " WHERE " + id + " IN (" + in + ")" + logicDeleteCondition(false, false);
+    }
+
+
     public String generateDelete(ReqQuery query, TableColumnInfo tcInfo,
                                  List<Object> params, StringBuilder printSql, boolean force) {
         StringBuilder wherePrint = new StringBuilder();
@@ -419,6 +672,19 @@ public class Table implements Serializable {
     }
 
 
+    /** SELECT id FROM t WHERE ... ORDER BY id LIMIT ?(绑定的 limit 在 params 最后), 分批删除(更新)时按主键从小到大取一批 */
+    public String generateIdChunkSelect(ReqQuery query, TableColumnInfo tcInfo, boolean force, int limit, List<Object> params) {
+        String where = query.generateSql(name, tcInfo, false, params, new StringBuilder());
+        if (QueryUtil.isEmpty(where)) {
+            return "";
+        }
+        String id = idSelect(false);
+        params.add(limit);
+        return "SELECT " + id + " FROM " + QuerySqlUtil.toSqlField(name) + " WHERE " + where
+                + logicDeleteCondition(force, false) + " ORDER BY " + id + " LIMIT ?";
+    }
+
+
     public String logicDeleteCondition(boolean force, boolean needAlias) {
         if (!force && QueryUtil.isNotEmpty(logicColumn) && QueryUtil.isNotEmpty(logicValue)) {
             String tableAlias = needAlias ? (QuerySqlUtil.toSqlField(alias) + ".") : "";
@@ -432,53 +698,62 @@ public class Table implements Serializable {
 
     public String generateUpdateMap(Map<String, Object> updateObj, boolean generateNullField, ReqQuery query,
                                     TableColumnInfo tcInfo, List<Object> params, StringBuilder printSql) {
-        List<String> setList = new ArrayList<>();
+        String[] columns = sqlColumns();
+        BitSet columnSet = new BitSet(columns.length);
         List<String> setPrintList = new ArrayList<>();
+        int index = 0;
         for (TableColumn column : columnMap.values()) {
+            int i = index++;
             Object data = updateObj.get(column.getAlias());
             if (QueryUtil.isNotNull(data) || generateNullField) {
-                setList.add(QuerySqlUtil.toSqlField(column.getName()) + " = ?");
-                setPrintList.add(QuerySqlUtil.toSqlField(column.getName()) + " = "
-                        + QuerySqlUtil.toPrintValue(column.getFieldType(), data));
+                columnSet.set(i);
+                setPrintList.add(columns[i] + " = " + QuerySqlUtil.toPrintValue(column.getFieldType(), data));
                 params.add(data);
             }
         }
-        return update(query, tcInfo, params, printSql, setList, setPrintList);
+        return update(query, tcInfo, params, printSql, columnSet, setPrintList);
     }
 
     public <T> String generateUpdate(T updateObj, boolean generateNullField, ReqQuery query,
                                      TableColumnInfo tcInfo, List<Object> params, StringBuilder printSql) {
-        List<String> setList = new ArrayList<>();
+        String[] columns = sqlColumns();
+        BitSet columnSet = new BitSet(columns.length);
         List<String> setPrintList = new ArrayList<>();
-        Class<?> clazz = updateObj.getClass();
-        List<String> errorColumnList = new ArrayList<>();
+        TableFieldAccessor accessor = fieldAccessor(updateObj.getClass());
+        Object[] values = accessor.read(updateObj);
+        int index = 0;
         for (TableColumn column : columnMap.values()) {
-            String fieldName = column.getFieldName();
-            Field field = QueryUtil.getField(clazz, fieldName);
-            if (QueryUtil.isNotNull(field)) {
-                try {
-                    field.setAccessible(true);
-                    Object fieldInfo = field.get(updateObj);
-                    if (QueryUtil.isNotNull(fieldInfo) || generateNullField) {
-                        setList.add(QuerySqlUtil.toSqlField(column.getName()) + " = ?");
-                        setPrintList.add(QuerySqlUtil.toSqlField(column.getName()) + " = "
-                                + QuerySqlUtil.toPrintValue(column.getFieldType(), fieldInfo));
-                        params.add(fieldInfo);
-                    }
-                } catch (IllegalAccessException e) {
-                    errorColumnList.add(fieldName);
+            int i = index++;
+            if (accessor.hasField(i)) {
+                Object fieldInfo = values[i];
+                if (QueryUtil.isNotNull(fieldInfo) || generateNullField) {
+                    columnSet.set(i);
+                    setPrintList.add(columns[i] + " = " + QuerySqlUtil.toPrintValue(column.getFieldType(), fieldInfo));
+                    params.add(fieldInfo);
                 }
             }
         }
-        if (QueryUtil.isNotEmpty(errorColumnList)) {
-            throw new RuntimeException(String.format("obj(%s) get field(%s) exception", updateObj, errorColumnList));
-        }
-        return update(query, tcInfo, params, printSql, setList, setPrintList);
+        return update(query, tcInfo, params, printSql, columnSet, setPrintList);
     }
 
+    private String updateSetSql(BitSet columnSet) {
+        Map<BitSet, String> cache = updateSqlCache;
+        if (QueryUtil.isNull(cache)) {
+            cache = new ConcurrentHashMap<>();
+            updateSqlCache = cache;
+        }
+        return cacheWriteSql(cache, columnSet, () -> {
+            String[] columns = sqlColumns();
+            StringJoiner sj = new StringJoiner(", ");
+            for (int i = columnSet.nextSetBit(0); i >= 0; i = columnSet.nextSetBit(i + 1)) {
+                sj.add(columns[i] + " = ?");
+            }
+            return "UPDATE " + QuerySqlUtil.toSqlField(name) + " SET " + sj;
+        });
+    }
     private String update(ReqQuery query, TableColumnInfo tcInfo, List<Object> params,
-                          StringBuilder printSql, List<String> setList, List<String> setPrintList) {
-        if (QueryUtil.isEmpty(setList)) {
+                          StringBuilder printSql, BitSet columnSet, List<String> setPrintList) {
+        if (columnSet.isEmpty()) {
             return "";
         }
 
@@ -488,10 +763,10 @@ public class Table implements Serializable {
             return "";
         }
 
-        String set = String.join(", ", setList);
-        String setPrint = String.join(", ", setPrintList);
-        String table = QuerySqlUtil.toSqlField(name);
-        printSql.append("UPDATE ").append(table).append(" SET ").append(setPrint).append(" WHERE ").append(print);
-        return "UPDATE " + table + " SET " + set + " WHERE " + where;
+        String update = updateSetSql(columnSet);
+        // UPDATE t SET a = ?, b = ?  ->  UPDATE t SET a = 1, b = 'x'
+        int setIndex = update.indexOf(" SET ");
+        printSql.append(update, 0, setIndex).append(" SET ").append(String.join(", ", setPrintList)).append(" WHERE ").append(print);
+        return update + " WHERE " + where;
     }
 }
@@ -27,6 +27,9 @@ public class TableColumn implements Serializable {
     /** true: column has default value */
     private boolean hasDefault;
 
+    /** true: column is auto increment(mysql auto_increment, postgresql identity or serial) */
+    private boolean autoIncrement;
+
     private Class<?> fieldType;
 
     private String fieldName;
@@ -44,6 +47,11 @@ public class TableColumn implements Serializable {
         this.fieldType = fieldType;
         this.fieldName = fieldName;
     }
+    public TableColumn(String name, String desc, String alias, boolean primary, Integer strLen, boolean notNull,
+                       boolean hasDefault, boolean autoIncrement, Class<?> fieldType, String fieldName) {
+        this(name, desc, alias, primary, strLen, notNull, hasDefault, fieldType, fieldName);
+        this.autoIncrement = autoIncrement;
+    }
 
     public String getName() {
         return name;
@@ -97,6 +105,13 @@ public class TableColumn implements Serializable {
         this.hasDefault = hasDefault;
     }
 
+    public boolean isAutoIncrement() {
+        return autoIncrement;
+    }
+    public void setAutoIncrement(boolean autoIncrement) {
+        this.autoIncrement = autoIncrement;
+    }
+
     public Class<?> getFieldType() {
         return fieldType;
     }
@@ -118,7 +133,7 @@ public class TableColumn implements Serializable {
         if (o == null || getClass() != o.getClass()) return false;
         TableColumn that = (TableColumn) o;
         return primary == that.primary && notNull == that.notNull
-                && hasDefault == that.hasDefault && Objects.equals(name, that.name)
+                && hasDefault == that.hasDefault && autoIncrement == that.autoIncrement && Objects.equals(name, that.name)
                 && Objects.equals(desc, that.desc) && Objects.equals(alias, that.alias)
                 && Objects.equals(strLen, that.strLen) && Objects.equals(fieldType, that.fieldType)
                 && Objects.equals(fieldName, that.fieldName);
@@ -126,7 +141,7 @@ public class TableColumn implements Serializable {
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, desc, alias, primary, strLen, notNull, hasDefault, fieldType, fieldName);
+        return Objects.hash(name, desc, alias, primary, strLen, notNull, hasDefault, autoIncrement, fieldType, fieldName);
     }
 
     @Override
@@ -139,6 +154,7 @@ public class TableColumn implements Serializable {
                 ", strLen=" + strLen +
                 ", notNull=" + notNull +
                 ", hasDefault=" + hasDefault +
+                ", autoIncrement=" + autoIncrement +
                 ", fieldType=" + fieldType +
                 ", fieldName='" + fieldName + '\'' +
                 '}';
@@ -19,6 +19,9 @@ public class TableColumnInfo implements Serializable {
     private Map<String, Map<String, TableColumnRelation>> childRelationMap;
     private Map<String, Map<String, TableColumnRelation>> masterChildTableMap;
 
+    /** 发布前设置, 每次刷新表结构加 1, 依赖表结构的缓存按此失效 */
+    private long version;
+
     public TableColumnInfo(Map<String, String> aliasMap, Map<String, String> tableClassMap, Map<String, Table> tableMap) {
         this.aliasMap = aliasMap;
         this.tableClassMap = tableClassMap;
@@ -43,6 +46,13 @@ public class TableColumnInfo implements Serializable {
     }
 
 
+    public long getVersion() {
+        return version;
+    }
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public Collection<Table> allTable() {
         return tableMap.values();
     }
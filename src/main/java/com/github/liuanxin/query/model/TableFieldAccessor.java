@@ -0,0 +1,85 @@
+package com.github.liuanxin.query.model;
+
+import com.github.liuanxin.query.util.QueryUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * 写入(insert update)时从对象上取字段值用: 按 (类, 表的字段) 生成一次, 字段的 getter 按表的列顺序放在数组里.
+ * getter 使用 MethodHandle, 生成时处理一次访问权限, 之后取值不再反射及 setAccessible
+ * </pre>
+ */
+public final class TableFieldAccessor {
+
+    /** 类名 -> { 以逗号隔开的字段 -> 取值器 } */
+    private static final Map<Class<?>, Map<String, TableFieldAccessor>> ACCESSOR_CACHE = new ConcurrentHashMap<>();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Class<?> clazz;
+    private final String[] fieldNames;
+    /** 类里没有对应字段时为 null */
+    private final MethodHandle[] getters;
+
+    private TableFieldAccessor(Class<?> clazz, List<String> fieldNameList) {
+        this.clazz = clazz;
+        this.fieldNames = fieldNameList.toArray(new String[0]);
+        this.getters = new MethodHandle[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            Field field = QueryUtil.getField(clazz, fieldNames[i]);
+            if (QueryUtil.isNotNull(field) && !Modifier.isStatic(field.getModifiers())) {
+                try {
+                    field.setAccessible(true);
+                    getters[i] = MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+                } catch (Exception e) {
+                    throw new RuntimeException("class(" + clazz.getName() + ") field(" + fieldNames[i] + ") can't get value", e);
+                }
+            }
+        }
+    }
+
+    public static TableFieldAccessor of(Class<?> clazz, Collection<TableColumn> columns) {
+        List<String> fieldNameList = new ArrayList<>(columns.size());
+        for (TableColumn column : columns) {
+            fieldNameList.add(column.getFieldName());
+        }
+        Map<String, TableFieldAccessor> accessorMap = ACCESSOR_CACHE.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>());
+        return accessorMap.computeIfAbsent(String.join(",", fieldNameList), k -> new TableFieldAccessor(clazz, fieldNameList));
+    }
+
+    /** 类里是否有第 index 列对应的字段 */
+    public boolean hasField(int index) {
+        return QueryUtil.isNotNull(getters[index]);
+    }
+
+    /** 按列的顺序一次读出对象的所有字段值, 类里没有的字段值为 null */
+    public Object[] read(Object obj) {
+        Object[] values = new Object[getters.length];
+        for (int i = 0; i < getters.length; i++) {
+            MethodHandle getter = getters[i];
+            if (QueryUtil.isNotNull(getter)) {
+                try {
+                    values[i] = (Object) getter.invokeExact(obj);
+                } catch (Throwable e) {
+                    throw new RuntimeException("class(" + clazz.getName() + ") get field(" + fieldNames[i] + ") data error", e);
+                }
+            }
+        }
+        return values;
+    }
+
+    public List<Object[]> readAll(List<?> list) {
+        List<Object[]> returnList = new ArrayList<>(list.size());
+        for (Object obj : list) {
+            returnList.add(read(obj));
+        }
+        return returnList;
+    }
+}
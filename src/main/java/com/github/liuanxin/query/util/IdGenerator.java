@@ -0,0 +1,182 @@
+package com.github.liuanxin.query.util;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * <pre>
+ * https://github.com/mongodb/mongo-java-driver/blob/master/bson/src/main/org/bson/types/ObjectId.java
+ *
+ * https://github.com/callicoder/java-snowflake/blob/master/src/main/java/com/callicoder/snowflake/Snowflake.java
+ *
+ * 1. 时间部分(当前时间 - 某个起始时间)
+ * 2. 节点 id(10 位, 0 ~ 1023), 配置 query.id-node 或者从数据库租用, 都没有时由 mac 及进程数据计算
+ * 3. 自增数据
+ *
+ * 当 1 毫秒内自增达到了最大则使用下一毫秒; 如果时钟回拨, 在指定间隔内时休眠, 否则拒绝;
+ *
+ * 时间和序列放在同一个 AtomicLong 里用 CAS 更新, 不加锁; getIds(n) 一次 CAS 预留一段连续的序列.
+ * 时间在生成时才读取, 没有后台线程
+ * </pre>
+ */
+public class IdGenerator {
+
+    /** 起始时间截 */
+    private static final long START_MS = 1391371506897L;
+
+    /** 处理时钟回拨的毫秒数, 间隔在这个范围内则休眠, 休眠后依然有回拨情况则拒绝生成, 如果超过这个时间直接拒绝生成 */
+    public static final int CLOCK_BACK_MS = 5;
+
+    /** 节点 id 所占的位数, 高 5 位原先是 mac 地址 id, 低 5 位是进程 id */
+    private static final long NODE_ID_BITS = 10L;
+    /** 序列在 id 中占的位数 */
+    private static final long SEQUENCE_BITS = 12L;
+
+    /** 最大节点 id */
+    public static final long MAX_NODE_ID = ~(-1L << NODE_ID_BITS);
+
+    /** 时间截向左移位数 */
+    private static final long TIMESTAMP_LEFT_SHIFT = SEQUENCE_BITS + NODE_ID_BITS;
+    /** 节点 id 的左移位数 */
+    private static final long NODE_ID_SHIFT = SEQUENCE_BITS;
+
+    /** 同一毫秒内的最大自增序列, 达到了将会使用下一毫秒 */
+    private static final long SEQUENCE_MASK = ~(-1L << SEQUENCE_BITS);
+
+    private final long nodeId;
+    /** 当前毫秒数, 测试时可以替换 */
+    private final LongSupplier clock;
+    /** 节点的有效期(本机的毫秒数), 到了之后拒绝生成. 租用的节点续约不上时避免跟之后拿到这个节点的实例生成重复的 id */
+    private volatile long expireMs = Long.MAX_VALUE;
+
+    /** (上次生成 id 的时间截 - 起始时间截) 左移序列的位数 | 上次用到的序列, 初始时间截为 0 */
+    private final AtomicLong state = new AtomicLong(0L);
+
+    public IdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+    IdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new RuntimeException(String.format("id node(%d) need between 0 and %d", nodeId, MAX_NODE_ID));
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    /** 由 mac 地址(高 5 位)及进程(低 5 位)计算的节点 id, 多个容器之间可能会重复, 只在没有配置时使用 */
+    public static long localNodeId() {
+        long maxId = ~(-1L << (NODE_ID_BITS / 2));
+        long datacenterId = 0L;
+        try {
+            byte[] mac = NetworkInterface.getByInetAddress(InetAddress.getLocalHost()).getHardwareAddress();
+            if (mac != null) {
+                datacenterId = ((0x000000FF & (long) mac[mac.length - 2]) | (0x0000FF00 & (((long) mac[mac.length - 1]) << 8))) >> 6;
+                datacenterId = datacenterId % (maxId + 1);
+            }
+        } catch (Exception ignore) {
+            datacenterId = ThreadLocalRandom.current().nextLong(maxId + 1);
+        }
+
+        StringBuilder sbd = new StringBuilder();
+        sbd.append(datacenterId);
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        if (name != null && !name.isEmpty()) {
+            sbd.append(name.split("@")[0]);
+        }
+        long workerId = (sbd.toString().hashCode() & 0xffff) % (maxId + 1);
+        return (datacenterId << (NODE_ID_BITS / 2)) | workerId;
+    }
+
+    public long getNodeId() {
+        return nodeId;
+    }
+    public long getExpireMs() {
+        return expireMs;
+    }
+    public void setExpireMs(long expireMs) {
+        this.expireMs = expireMs;
+    }
+
+    public long getId() {
+        return getIds(1)[0];
+    }
+
+    /** 一次生成 n 个 id, 同一毫秒内的序列一次预留, 返回的 id 是递增的 */
+    public long[] getIds(int n) {
+        long[] ids = new long[Math.max(n, 0)];
+        int index = 0;
+        while (index < ids.length) {
+            long current = state.get();
+            long lastTimestamp = (current >>> SEQUENCE_BITS) + START_MS;
+            long sequence = current & SEQUENCE_MASK;
+
+            long timestamp = clock.getAsLong();
+            if (timestamp >= expireMs) {
+                throw new RuntimeException(String.format("id node(%d) expired, refuse to generate id", nodeId));
+            }
+            if (timestamp < lastTimestamp) {
+                timestamp = waitClockBack(lastTimestamp, timestamp);
+            }
+
+            long first;
+            long count;
+            if (timestamp == lastTimestamp) {
+                // 同毫秒时序列号自增, 达到最大时等到下一毫秒
+                if (sequence == SEQUENCE_MASK) {
+                    nextMillis(lastTimestamp);
+                    continue;
+                }
+                first = sequence + 1;
+                count = Math.min(ids.length - index, SEQUENCE_MASK - sequence);
+            } else {
+                // 不同毫秒序列号随机 1 或 2
+                first = ThreadLocalRandom.current().nextLong(1, 3);
+                count = Math.min(ids.length - index, SEQUENCE_MASK - first + 1);
+            }
+            long next = ((timestamp - START_MS) << SEQUENCE_BITS) | (first + count - 1);
+            if (state.compareAndSet(current, next)) {
+                // 移位 及 或运算 组成 64 位 id
+                long prefix = ((timestamp - START_MS) << TIMESTAMP_LEFT_SHIFT) | (nodeId << NODE_ID_SHIFT);
+                for (long i = 0; i < count; i++) {
+                    ids[index++] = prefix | (first + i);
+                }
+            }
+        }
+        return ids;
+    }
+    /** 时钟回拨在指定间隔内时当前线程休眠(不影响其他线程), 休眠后依然有回拨情况则拒绝, 超过间隔直接拒绝 */
+    private long waitClockBack(long lastTimestamp, long timestamp) {
+        long offset = lastTimestamp - timestamp;
+        if (offset > CLOCK_BACK_MS) {
+            throw new RuntimeException(String.format("生成 id 时时钟回拨. %d 毫秒内拒绝生成 id", offset));
+        }
+        try {
+            Thread.sleep(offset);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(String.format("生成 id 时时钟回拨. 等待 %d 毫秒时异常", offset), e);
+        }
+        long now = clock.getAsLong();
+        if (now < lastTimestamp) {
+            throw new RuntimeException(String.format("生成 id 时再次时钟回拨. %d 毫秒内拒绝生成 id", (lastTimestamp - now)));
+        }
+        return now;
+    }
+    private void nextMillis(long lastTimestamp) {
+        long timestamp = clock.getAsLong();
+        while (timestamp <= lastTimestamp) {
+            timestamp = clock.getAsLong();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IdGenerator{" +
+                "nodeId=" + nodeId +
+                '}';
+    }
+}
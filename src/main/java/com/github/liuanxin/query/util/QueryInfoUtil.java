@@ -129,7 +129,7 @@ public class QueryInfoUtil {
                 String columnName, columnDesc, columnAlias, fieldName = field.getName();
                 boolean primary;
                 Integer strLen;
-                boolean notNull, hasDefault;
+                boolean notNull, hasDefault, autoIncrement;
                 if (QueryUtil.isNotNull(columnInfo)) {
                     columnName = QueryUtil.defaultIfBlank(columnInfo.value(), QueryUtil.fieldToColumnName(fieldName));
                     columnDesc = columnInfo.desc();
@@ -139,6 +139,7 @@ public class QueryInfoUtil {
                     strLen = columnInfo.strLen();
                     notNull = columnInfo.notNull();
                     hasDefault = columnInfo.hasDefault();
+                    autoIncrement = columnInfo.autoIncrement();
 
                     RelationInfo ri = field.getAnnotation(RelationInfo.class);
                     if (QueryUtil.isNotNull(ri)) {
@@ -153,6 +154,7 @@ public class QueryInfoUtil {
                     strLen = null;
                     notNull = false;
                     hasDefault = false;
+                    autoIncrement = false;
                 }
 
                 LogicDelete logicDelete = field.getAnnotation(LogicDelete.class);
@@ -180,7 +182,7 @@ public class QueryInfoUtil {
 
                 aliasMap.put(QueryConst.COLUMN_PREFIX + tableAlias + "-" + columnAlias, columnName);
                 columnMap.put(columnName, new TableColumn(columnName, columnDesc, columnAlias, primary,
-                        (QueryUtil.greater0(strLen) ? strLen : null), notNull, hasDefault, fieldType, fieldName));
+                        (QueryUtil.greater0(strLen) ? strLen : null), notNull, hasDefault, autoIncrement, fieldType, fieldName));
             }
             if (QueryUtil.isEmpty(logicColumn)) {
                 TableColumn tableColumn = columnMap.get(globalLogicColumn);
@@ -326,7 +328,7 @@ public class QueryInfoUtil {
 
                 aliasMap.put(QueryConst.COLUMN_PREFIX + tableAlias + "-" + columnAlias, columnName);
                 columnMap.put(columnName, new TableColumn(columnName, columnDesc, columnAlias, primary,
-                        (QueryUtil.greater0(strLen) ? strLen : null), notNull, hasDefault, fieldType, fieldName));
+                        (QueryUtil.greater0(strLen) ? strLen : null), notNull, hasDefault, primaryIncrement, fieldType, fieldName));
             }
             String logicColumn = null, logicValue = null, logicDeleteValue = null;
             TableColumn tableColumn = columnMap.get(globalLogicColumn);
@@ -350,6 +352,21 @@ public class QueryInfoUtil {
         return new TableColumnInfo(aliasMap, new HashMap<>(), tableMap);
     }
 
+    /** 用已经构建好的表(增量刷新时未变化的表直接复用)组装表结构, 只重新生成别名 */
+    public static TableColumnInfo infoWithTable(Map<String, Table> tableMap) {
+        Map<String, String> aliasMap = new HashMap<>();
+        for (Table table : tableMap.values()) {
+            String tableAlias = table.getAlias();
+            if (QueryUtil.isNotNull(aliasMap.put(QueryConst.TABLE_PREFIX + tableAlias, table.getName()))) {
+                throw new RuntimeException(String.format("table alias(%s) has repeated", tableAlias));
+            }
+            for (TableColumn column : table.getColumnMap().values()) {
+                aliasMap.put(QueryConst.COLUMN_PREFIX + tableAlias + "-" + column.getAlias(), column.getName());
+            }
+        }
+        return new TableColumnInfo(aliasMap, new HashMap<>(), tableMap);
+    }
+
     private static Map<String, List<Map<String, Object>>> tableColumnListToMap(List<Map<String, Object>> tableColumnList) {
         Map<String, List<Map<String, Object>>> tableColumnMap = new HashMap<>();
         if (QueryUtil.isNotEmpty(tableColumnList)) {
@@ -435,6 +452,9 @@ public class QueryInfoUtil {
                 if (hasDefault) {
                     columnInfoList.add("hasDefault = true");
                 }
+                if (primaryIncrement) {
+                    columnInfoList.add("autoIncrement = true");
+                }
                 if (QueryUtil.isNotEmpty(columnInfoList)) {
                     importSet.add("import " + ColumnInfo.class.getName() + ";");
                     fieldSbd.append("    ").append("@ColumnInfo(").append(String.join(", ", columnInfoList)).append(")\n");
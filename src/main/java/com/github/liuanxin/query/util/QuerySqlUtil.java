@@ -9,21 +9,31 @@ import java.util.*;
 public class QuerySqlUtil {
 
     public static String getTableSql(String dialect) {
+        return getTableSql(dialect, 0);
+    }
+    /** tableCount &gt; 0 时只查这些表, 表名用占位符 */
+    public static String getTableSql(String dialect, int tableCount) {
         if ("postgresql".equalsIgnoreCase(dialect)) {
             // relname 是 pg_class 中表的名称, description 是 pg_description 中的注释内容, relkind = 'r' 表示普通表 (regular table)
             // NOT IN 用于排除系统模式, 获取当前数据库中所有用户创建的表
             return "SELECT c.relname AS tn, d.description AS tc " +
                     "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
                     "LEFT JOIN pg_description d ON d.objoid = c.oid AND d.objsubid = 0 " +
-                    "WHERE c.relkind = 'r' AND n.nspname NOT IN ('pg_catalog', 'information_schema')";
+                    "WHERE c.relkind = 'r' AND n.nspname NOT IN ('pg_catalog', 'information_schema')" +
+                    tableInSql("c.relname", tableCount);
         } else /* if ("mysql".equalsIgnoreCase(dialect)) */ {
             return "SELECT `TABLE_NAME` tn, `TABLE_COMMENT` tc " +
                     "FROM `information_schema`.`TABLES` " +
-                    "WHERE `TABLE_SCHEMA` = DATABASE()";
+                    "WHERE `TABLE_SCHEMA` = DATABASE()" +
+                    tableInSql("`TABLE_NAME`", tableCount);
         }
     }
 
     public static String getColumnSql(String dialect) {
+        return getColumnSql(dialect, 0);
+    }
+    /** tableCount &gt; 0 时只查这些表的列, 表名用占位符 */
+    public static String getColumnSql(String dialect, int tableCount) {
         if ("postgresql".equalsIgnoreCase(dialect)) {
             return "SELECT " +
                     "    c.table_name AS tn, c.column_name AS cn, c.data_type AS ct, d.description AS cc, " +
@@ -41,16 +51,80 @@ public class QuerySqlUtil {
                     "    ON tc.constraint_name = kcu.constraint_name AND tc.table_schema = kcu.table_schema AND tc.table_name = kcu.table_name " +
                     "    WHERE tc.constraint_type = 'PRIMARY KEY' " +
                     ") pk ON pk.table_schema = c.table_schema AND pk.table_name = c.table_name AND pk.column_name = c.column_name " +
-                    "WHERE c.table_schema NOT IN ('pg_catalog', 'information_schema') " +
-                    "ORDER BY c.table_name, c.ordinal_position";
+                    "WHERE c.table_schema NOT IN ('pg_catalog', 'information_schema')" +
+                    tableInSql("c.table_name", tableCount) +
+                    " ORDER BY c.table_name, c.ordinal_position";
         } else /* if ("mysql".equalsIgnoreCase(dialect)) */ {
             // ck 是 PRI 则表示是主键列, ext 是 auto_increment 表示是自增列, cd 是列的默认值(目前用来判断此列是否有默认值)
             return "SELECT `TABLE_NAME` tn, `COLUMN_NAME` cn, `COLUMN_TYPE` ct, " +
                     "`COLUMN_COMMENT` cc, `COLUMN_KEY` ck, `CHARACTER_MAXIMUM_LENGTH` cml, " +
                     "`IS_NULLABLE` ine, `EXTRA` ext, `COLUMN_DEFAULT` cd " +
                     "FROM `information_schema`.`COLUMNS` " +
-                    "WHERE `TABLE_SCHEMA` = DATABASE() " +
-                    "ORDER BY `TABLE_NAME`, `ORDINAL_POSITION`";
+                    "WHERE `TABLE_SCHEMA` = DATABASE()" +
+                    tableInSql("`TABLE_NAME`", tableCount) +
+                    " ORDER BY `TABLE_NAME`, `ORDINAL_POSITION`";
+        }
+    }
+    private static String tableInSql(String column, int tableCount) {
+        if (tableCount <= 0) {
+            return "";
+        }
+        StringJoiner sj = new StringJoiner(", ", " AND " + column + " IN (", ")");
+        for (int i = 0; i < tableCount; i++) {
+            sj.add("?");
+        }
+        return sj.toString();
+    }
+
+    /**
+     * 每个表的签名(tn: 表名, ts: 签名), 表的注释、列或主键有变化时签名会不一样, 刷新表结构时只重新加载签名变了的表.
+     * 不使用 UPDATE_TIME: 它是数据(而不是表结构)的修改时间
+     */
+    public static String getTableSignSql(String dialect) {
+        if ("postgresql".equalsIgnoreCase(dialect)) {
+            return "SELECT c.table_name AS tn, COUNT(*) || '-' || md5(string_agg(c.column_name || '|' || c.data_type || '|' || " +
+                    "    c.is_nullable || '|' || COALESCE(c.character_maximum_length::text, '') || '|' || COALESCE(c.column_default, '') || '|' || " +
+                    "    CASE WHEN pk.column_name IS NULL THEN '' ELSE 'PRI' END, ';' ORDER BY c.ordinal_position)) AS ts " +
+                    "FROM information_schema.columns c LEFT JOIN (" +
+                    "    SELECT kcu.table_schema, kcu.table_name, kcu.column_name " +
+                    "    FROM information_schema.table_constraints tc JOIN information_schema.key_column_usage kcu " +
+                    "    ON tc.constraint_name = kcu.constraint_name AND tc.table_schema = kcu.table_schema AND tc.table_name = kcu.table_name " +
+                    "    WHERE tc.constraint_type = 'PRIMARY KEY'" +
+                    ") pk ON pk.table_schema = c.table_schema AND pk.table_name = c.table_name AND pk.column_name = c.column_name " +
+                    "WHERE c.table_schema NOT IN ('pg_catalog', 'information_schema') " +
+                    "GROUP BY c.table_name ORDER BY c.table_name";
+        } else /* if ("mysql".equalsIgnoreCase(dialect)) */ {
+            return "SELECT t.`TABLE_NAME` tn, CONCAT(COALESCE(t.`CREATE_TIME`, ''), '-', CRC32(COALESCE(t.`TABLE_COMMENT`, '')), '-', " +
+                    "COUNT(c.`COLUMN_NAME`), '-', COALESCE(SUM(CRC32(CONCAT_WS('|', c.`COLUMN_NAME`, c.`ORDINAL_POSITION`, " +
+                    "c.`COLUMN_TYPE`, c.`COLUMN_COMMENT`, c.`COLUMN_KEY`, c.`CHARACTER_MAXIMUM_LENGTH`, c.`IS_NULLABLE`, c.`EXTRA`, " +
+                    "c.`COLUMN_DEFAULT` IS NULL))), 0)) ts " +
+                    "FROM `information_schema`.`TABLES` t LEFT JOIN `information_schema`.`COLUMNS` c " +
+                    "ON c.`TABLE_SCHEMA` = t.`TABLE_SCHEMA` AND c.`TABLE_NAME` = t.`TABLE_NAME` " +
+                    "WHERE t.`TABLE_SCHEMA` = DATABASE() " +
+                    "GROUP BY t.`TABLE_NAME`, t.`CREATE_TIME`, t.`TABLE_COMMENT` ORDER BY t.`TABLE_NAME`";
+        }
+    }
+
+    /** 表结构的指纹: 表及列的个数和校验和, 只返回一行, 表或列有变化时会不一样 */
+    public static String getSchemaFingerprintSql(String dialect) {
+        if ("postgresql".equalsIgnoreCase(dialect)) {
+            return "SELECT " +
+                    "    (SELECT COUNT(*) || '-' || md5(COALESCE(string_agg(c.table_name || '|' || c.column_name || '|' || c.data_type || '|' || " +
+                    "        c.is_nullable || '|' || COALESCE(c.character_maximum_length::text, '') || '|' || COALESCE(c.column_default, ''), " +
+                    "        ';' ORDER BY c.table_name, c.ordinal_position), '')) " +
+                    "     FROM information_schema.columns c WHERE c.table_schema NOT IN ('pg_catalog', 'information_schema')) || '-' || " +
+                    "    (SELECT md5(COALESCE(string_agg(kcu.table_name || '|' || kcu.column_name, ';' ORDER BY kcu.table_name, kcu.column_name), '')) " +
+                    "     FROM information_schema.table_constraints tc JOIN information_schema.key_column_usage kcu " +
+                    "     ON tc.constraint_name = kcu.constraint_name AND tc.table_schema = kcu.table_schema AND tc.table_name = kcu.table_name " +
+                    "     WHERE tc.constraint_type = 'PRIMARY KEY' AND tc.table_schema NOT IN ('pg_catalog', 'information_schema'))";
+        } else /* if ("mysql".equalsIgnoreCase(dialect)) */ {
+            return "SELECT CONCAT(" +
+                    "(SELECT CONCAT(COUNT(*), '-', COALESCE(SUM(CRC32(CONCAT_WS('|', `TABLE_NAME`, `TABLE_COMMENT`))), 0)) " +
+                    "FROM `information_schema`.`TABLES` WHERE `TABLE_SCHEMA` = DATABASE()), '-', " +
+                    "(SELECT CONCAT(COUNT(*), '-', COALESCE(SUM(CRC32(CONCAT_WS('|', `TABLE_NAME`, `COLUMN_NAME`, `ORDINAL_POSITION`, " +
+                    "`COLUMN_TYPE`, `COLUMN_COMMENT`, `COLUMN_KEY`, `CHARACTER_MAXIMUM_LENGTH`, `IS_NULLABLE`, `EXTRA`, " +
+                    "`COLUMN_DEFAULT` IS NULL))), 0)) " +
+                    "FROM `information_schema`.`COLUMNS` WHERE `TABLE_SCHEMA` = DATABASE()))";
         }
     }
 
@@ -107,147 +181,120 @@ public class QuerySqlUtil {
         return sbd.toString();
     }
 
-    public static String toCountGroupSql(String selectSql, String selectPrint, StringBuilder printSql) {
-        printSql.append("SELECT COUNT(*) FROM ( ").append(selectPrint).append(" ) TMP");
+    public static String toCountGroupSql(String selectSql) {
         return "SELECT COUNT(*) FROM ( " + selectSql + " ) TMP";
     }
 
-    public static String toSelectGroupSql(TableColumnInfo tcInfo, String fromAndWhere, String fromAndWherePrint,
-                                          String mainTable, ReqResult result, boolean needAlias, boolean force,
-                                          boolean hasDistinct, List<Object> params, StringBuilder printSql) {
+    public static String toSelectGroupSql(TableColumnInfo tcInfo, String fromAndWhere, String mainTable,
+                                          ReqResult result, boolean needAlias, boolean force,
+                                          boolean hasDistinct, List<Object> params) {
         String selectField = result.generateAllSelectSql(mainTable, tcInfo, needAlias, force);
         boolean emptySelect = QueryUtil.isEmpty(selectField);
 
-        String distinct = hasDistinct ? "DISTINCT " : "";
         // SELECT ... FROM ... WHERE ... GROUP BY ... HAVING ...
         StringBuilder sbd = new StringBuilder();
-        sbd.append("SELECT ").append(distinct);
-        printSql.append("SELECT ").append(distinct);
+        sbd.append("SELECT ").append(hasDistinct ? "DISTINCT " : "");
         if (!emptySelect) {
             sbd.append(selectField);
-            printSql.append(selectField);
         }
 
         String functionSql = result.generateFunctionSql(mainTable, needAlias, tcInfo, force);
         if (QueryUtil.isNotEmpty(functionSql)) {
             if (!emptySelect) {
                 sbd.append(", ");
-                printSql.append(", ");
             }
             sbd.append(functionSql);
-            printSql.append(functionSql);
         }
 
         sbd.append(fromAndWhere);
-        printSql.append(fromAndWherePrint);
-
-        String group = result.generateGroupSql(mainTable, needAlias, tcInfo);
-        sbd.append(group);
-        printSql.append(group);
-
-        StringBuilder havingPrint = new StringBuilder();
-        String having = result.generateHavingSql(mainTable, needAlias, tcInfo, params, havingPrint);
-        sbd.append(having);
-        printSql.append(havingPrint);
+        sbd.append(result.generateGroupSql(mainTable, needAlias, tcInfo));
+        sbd.append(result.generateHavingSql(mainTable, needAlias, tcInfo, params, new StringBuilder()));
         return sbd.toString();
     }
 
-    public static String toCountWithoutGroupSql(TableColumnInfo tcInfo, String fromAndWhere,
-                                                String fromAndWherePrint, String mainTable, boolean needAlias,
-                                                boolean hasDistinct, StringBuilder printSql) {
+    public static String toCountWithoutGroupSql(TableColumnInfo tcInfo, String fromAndWhere, String mainTable,
+                                                boolean needAlias, boolean hasDistinct) {
         if (hasDistinct) {
             // SELECT COUNT(DISTINCT xx.id) FROM ...
             String select = tcInfo.findTable(mainTable).idSelect(needAlias);
-            printSql.append(String.format("SELECT COUNT(DISTINCT %s)%s", select, fromAndWherePrint));
             return String.format("SELECT COUNT(DISTINCT %s)%s", select, fromAndWhere);
         } else {
-            printSql.append("SELECT COUNT(*)").append(fromAndWherePrint);
             return "SELECT COUNT(*)" + fromAndWhere;
         }
     }
 
-    public static String toPageSql(TableColumnInfo tcInfo, String fromAndWhere, String fromAndWherePrint,
-                                   String mainTable, ReqParam param, ReqResult result, boolean needAlias,
-                                   boolean force, List<Object> params, boolean hasDistinct, StringBuilder printSql) {
-        String selectColumn = result.generateAllSelectSql(mainTable, tcInfo, needAlias, force);
-        if (QueryUtil.isEmpty(selectColumn)) {
-            return "";
-        }
-        // SELECT ... FROM ... WHERE ... ORDER BY ... limit ...
-        return toAppendSql(tcInfo, fromAndWhere, fromAndWherePrint, mainTable, param, needAlias,
-                selectColumn, params, hasDistinct, printSql);
-    }
-
-    private static String toAppendSql(TableColumnInfo tcInfo, String fromAndWhere, String fromAndWherePrint,
-                                      String mainTable, ReqParam param, boolean needAlias, String selectColumn,
-                                      List<Object> params, boolean hasDistinct, StringBuilder printSql) {
-        String orderSql = param.generateOrderSql(mainTable, needAlias, tcInfo);
-        StringBuilder pagePrint = new StringBuilder();
-        String pageSql = param.generatePageSql(params, pagePrint);
+    /** SELECT ... FROM ... WHERE ... ORDER BY ... (后面再拼 LIMIT) */
+    public static String toOrderSelectSql(String selectColumn, String fromAndWhere, String orderSql, boolean hasDistinct) {
         if (hasDistinct) {
             StringBuilder appendOrder = new StringBuilder();
             String os = orderSql.trim();
-            for (String order : os.substring("ORDER BY ".length()).split(",")) {
-                String or;
-                String str = order.toLowerCase();
-                if (str.endsWith(" asc")) {
-                    or = order.substring(0, order.length() - " asc".length());
-                } else if (str.endsWith(" desc")) {
-                    or = order.substring(0, order.length() - " desc".length());
-                } else {
-                    or = order;
-                }
-                if (!selectColumn.contains(or.trim())) {
-                    appendOrder.append(", ").append(or.trim());
+            if (QueryUtil.isNotEmpty(os)) {
+                for (String order : os.substring("ORDER BY ".length()).split(",")) {
+                    String or;
+                    String str = order.toLowerCase();
+                    if (str.endsWith(" asc")) {
+                        or = order.substring(0, order.length() - " asc".length());
+                    } else if (str.endsWith(" desc")) {
+                        or = order.substring(0, order.length() - " desc".length());
+                    } else {
+                        or = order;
+                    }
+                    if (!selectColumn.contains(or.trim())) {
+                        appendOrder.append(", ").append(or.trim());
+                    }
                 }
             }
-            printSql.append("SELECT DISTINCT ").append(selectColumn).append(appendOrder).append(fromAndWherePrint).append(orderSql).append(pagePrint);
-            return "SELECT DISTINCT " + selectColumn + appendOrder + fromAndWhere + orderSql + pageSql;
+            return "SELECT DISTINCT " + selectColumn + appendOrder + fromAndWhere + orderSql;
         } else {
-            printSql.append("SELECT ").append(selectColumn).append(fromAndWherePrint).append(orderSql).append(pagePrint);
-            return "SELECT " + selectColumn + fromAndWhere + orderSql + pageSql;
+            return "SELECT " + selectColumn + fromAndWhere + orderSql;
         }
     }
 
-    public static String toIdPageSql(TableColumnInfo tcInfo, String fromAndWhere, String fromAndWherePrint, String mainTable,
-                                     boolean needAlias, ReqParam param, List<Object> params, boolean hasDistinct, StringBuilder printSql) {
-        String idSelect = tcInfo.findTable(mainTable).idSelect(needAlias);
-        // SELECT id FROM ... WHERE ... ORDER BY ... LIMIT ...
-        return toAppendSql(tcInfo, fromAndWhere, fromAndWherePrint, mainTable, param, needAlias, idSelect, params, hasDistinct, printSql);
-    }
-    public static String toSelectWithIdSql(TableColumnInfo tcInfo, String mainTable, String fromSql,
-                                           ReqResult result, List<Map<String, Object>> idList, boolean needAlias,
-                                           boolean force, List<Object> params, StringBuilder printSql) {
+    /** selectWithIdSql 是 SELECT ... FROM ... WHERE id IN ( , 拼上 id 的占位符 */
+    public static String toSelectWithIdSql(String selectWithIdSql, List<String> idKey,
+                                           List<Map<String, Object>> idList, List<Object> params) {
         // SELECT ... FROM ... WHERE id IN (x, y, z)
-        String selectColumn = result.generateAllSelectSql(mainTable, tcInfo, needAlias, force);
-        Table table = tcInfo.findTable(mainTable);
-        String idColumn = table.idWhere(needAlias);
-        List<String> idKey = table.getIdKey();
         StringJoiner sj = new StringJoiner(", ");
-        StringJoiner print = new StringJoiner(", ");
         for (Map<String, Object> idMap : idList) {
             if (idKey.size() > 1) {
                 // WHERE ( id1, id2 ) IN ( (X, XX), (Y, YY) )
                 StringJoiner innerJoiner = new StringJoiner(", ");
-                StringJoiner innerPrint = new StringJoiner(", ");
                 for (String id : idKey) {
-                    Object data = idMap.get(id);
                     innerJoiner.add("?");
-                    innerPrint.add(QuerySqlUtil.toPrintValue(data.getClass(), data));
-                    params.add(data);
+                    params.add(idMap.get(id));
                 }
                 sj.add("( " + innerJoiner + " )");
-                print.add("( " + innerPrint + " )");
             } else {
                 // WHERE id IN (x, y, z)
-                Object data = idMap.get(idKey.get(0));
                 sj.add("?");
-                print.add(QuerySqlUtil.toPrintValue(data.getClass(), data));
-                params.add(data);
+                params.add(idMap.get(idKey.get(0)));
+            }
+        }
+        return selectWithIdSql + sj + ")";
+    }
+
+    /** 将 sql 中的占位符替换成值, 只用来打印日志 */
+    public static String toPrintSql(String sql, List<Object> params) {
+        if (QueryUtil.isEmpty(params)) {
+            return sql;
+        }
+        StringBuilder sbd = new StringBuilder();
+        int index = 0;
+        int size = params.size();
+        boolean inQuote = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inQuote = !inQuote;
+            }
+            if (c == '?' && !inQuote && index < size) {
+                Object param = params.get(index++);
+                sbd.append(QueryUtil.isNull(param) ? "NULL" : toPrintValue(param.getClass(), param));
+            } else {
+                sbd.append(c);
             }
         }
-        printSql.append("SELECT ").append(selectColumn).append(fromSql).append(" WHERE ").append(idColumn).append(" IN (").append(print).append(")");
-        return "SELECT " + selectColumn + fromSql + " WHERE " + idColumn + " IN (" + sj + ")";
+        return sbd.toString();
     }
 
     public static String toInnerSql(String selectColumn, String table, String relationColumn, List<Object> relationIds,
@@ -46,6 +46,17 @@ public class QueryUtil {
             return formatter;
         });
     }
+    /** 提前生成好格式化器, 每次格式化时不再查找 */
+    public static DateTimeFormatter toFormatter(String type, String timezone) {
+        DateTimeFormatter formatter = getFormatter(type);
+        if (isNotEmpty(timezone)) {
+            TimeZone timeZone = TimeZone.getTimeZone(timezone);
+            if (isNotNull(timeZone)) {
+                formatter = formatter.withZone(timeZone.toZoneId());
+            }
+        }
+        return formatter;
+    }
 
 
     /** UserInfo --> user_info */
@@ -542,6 +553,9 @@ public class QueryUtil {
         return isNull(date) ? "" : format(LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()));
     }
 
+    public static String format(TemporalAccessor date, DateTimeFormatter formatter) {
+        return (isNull(date) || isNull(formatter)) ? "" : formatter.format(date);
+    }
     public static String format(TemporalAccessor date, String type, String timezone) {
         return (isNull(date) || isEmpty(type)) ? "" : getFormatter(type, timezone).format(date);
     }
@@ -0,0 +1,167 @@
+package com.github.liuanxin.query.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+public class IdGeneratorTest {
+
+    /** 时间截在 id 中左移的位数(序列 12 位 + 节点 10 位) */
+    private static final int TIMESTAMP_SHIFT = 22;
+    /** 跟 IdGenerator 的起始时间截一样 */
+    private static final long START_MS = 1391371506897L;
+    /** 假时钟的起始毫秒数, 要大于起始时间截 */
+    private static final long BASE_MS = 1700000000000L;
+
+    @Test
+    public void multiThreadUniqueAndIncrease() throws Exception {
+        IdGenerator generator = new IdGenerator(1);
+        int threads = 8, count = 50000;
+        List<long[]> resultList = runParallel(threads, () -> {
+            long[] ids = new long[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = generator.getId();
+            }
+            return ids;
+        });
+
+        Set<Long> idSet = new HashSet<>();
+        for (long[] ids : resultList) {
+            assertIncrease(ids);
+            for (long id : ids) {
+                idSet.add(id);
+            }
+        }
+        Assert.assertEquals(threads * count, idSet.size());
+    }
+
+    @Test
+    public void batchSpanMultipleMillis() {
+        IdGenerator generator = new IdGenerator(2);
+        // 超过 4095 个, 一毫秒内的序列不够用, 要跨多个毫秒
+        long[] ids = generator.getIds(20000);
+        Assert.assertEquals(20000, ids.length);
+        assertIncrease(ids);
+        Assert.assertTrue((ids[ids.length - 1] >>> TIMESTAMP_SHIFT) - (ids[0] >>> TIMESTAMP_SHIFT) >= 4);
+
+        // 后面生成的比前面一批的都大
+        Assert.assertTrue(generator.getId() > ids[ids.length - 1]);
+    }
+
+    @Test
+    public void multiThreadBatchUniqueAndIncrease() throws Exception {
+        IdGenerator generator = new IdGenerator(3);
+        int threads = 6, rounds = 20, size = 5000;
+        List<long[]> resultList = runParallel(threads, () -> {
+            long[] all = new long[rounds * size];
+            for (int i = 0; i < rounds; i++) {
+                long[] ids = (i % 2 == 0) ? generator.getIds(size) : singles(generator, size);
+                System.arraycopy(ids, 0, all, i * size, size);
+            }
+            return all;
+        });
+
+        Set<Long> idSet = new HashSet<>();
+        for (long[] ids : resultList) {
+            assertIncrease(ids);
+            for (long id : ids) {
+                idSet.add(id);
+            }
+        }
+        Assert.assertEquals(threads * rounds * size, idSet.size());
+    }
+
+    @Test
+    public void clockBackInRangeWait() {
+        // 第二次回拨 2 毫秒(在 CLOCK_BACK_MS 内), 休眠后时钟已经追上
+        IdGenerator generator = new IdGenerator(4, clock(BASE_MS, BASE_MS - 2, BASE_MS + 1));
+        long first = generator.getId();
+        long second = generator.getId();
+        Assert.assertTrue(second > first);
+        Assert.assertEquals(BASE_MS + 1, timestamp(second));
+    }
+
+    @Test
+    public void clockBackAgainRefuse() {
+        // 休眠后依然比上次的时间早
+        IdGenerator generator = new IdGenerator(5, clock(BASE_MS, BASE_MS - 2, BASE_MS - 1));
+        generator.getId();
+        assertRefuse(generator);
+    }
+
+    @Test
+    public void clockBackOutOfRangeRefuse() {
+        IdGenerator generator = new IdGenerator(6, clock(BASE_MS, BASE_MS - IdGenerator.CLOCK_BACK_MS - 1, BASE_MS + 1));
+        long first = generator.getId();
+        assertRefuse(generator);
+        // 时钟追上之后恢复
+        Assert.assertTrue(generator.getId() > first);
+    }
+
+    @Test
+    public void expiredRefuse() {
+        IdGenerator generator = new IdGenerator(7, clock(BASE_MS));
+        generator.setExpireMs(BASE_MS);
+        assertRefuse(generator);
+    }
+
+
+    private static List<long[]> runParallel(int threads, Callable<long[]> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futureList = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futureList.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<long[]> resultList = new ArrayList<>();
+            for (Future<long[]> future : futureList) {
+                resultList.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return resultList;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long[] singles(IdGenerator generator, int size) {
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = generator.getId();
+        }
+        return ids;
+    }
+
+    /** 依次返回给定的时间, 用完之后一直返回最后一个 */
+    private static LongSupplier clock(long... times) {
+        AtomicInteger index = new AtomicInteger();
+        return () -> times[Math.min(index.getAndIncrement(), times.length - 1)];
+    }
+
+    private static long timestamp(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + START_MS;
+    }
+
+    private static void assertIncrease(long[] ids) {
+        for (int i = 1; i < ids.length; i++) {
+            Assert.assertTrue("id not increase at " + i, ids[i] > ids[i - 1]);
+        }
+    }
+
+    private static void assertRefuse(IdGenerator generator) {
+        try {
+            generator.getId();
+            Assert.fail("need refuse to generate id");
+        } catch (RuntimeException e) {
+            Assert.assertNotNull(e.getMessage());
+        }
+    }
+}